@@ -0,0 +1,191 @@
+package com.weatherapi.cache;
+
+import com.weatherapi.model.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory spatial index of known locations, resolving a coordinate to the nearest location within
+ * {@code weather.geo.radius-km}, so that requests from nearby coordinates share one cached report.
+ * <p>
+ * Points live in a grid of cells two radii of latitude high and about as wide, keyed by row and
+ * column; columns are narrowed slightly to tile the 360 degrees exactly. A lookup searches the cells
+ * overlapping the bounding box of the circle of the radius around the coordinate, one to four away
+ * from the poles: the box widens in longitude with latitude as meridians converge, up to every column
+ * when the circle reaches a pole. Distances are great-circle distances on a spherical earth, compared
+ * by their haversine so that lookups take no roots. Each cell keeps its points in arrays that are
+ * copied on write, so lookups never lock; writes are rare next to lookups.
+ * <p>
+ * A location may be indexed at several points, e.g. its own coordinates and those of requests that
+ * resolved to it, but at most one point per cell.
+ */
+@Component
+public class LocationGridIndex {
+
+    /**
+     * The mean earth radius.
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.toRadians(EARTH_RADIUS_KM);
+    // Cell side in radii: the bounding box of a lookup, two radii wide, then overlaps about
+    // (1 + 2 / CELL_RADII)^2 cells.
+    private static final double CELL_RADII = 2;
+
+    // The points of a cell, with the coordinates of point i at 3i: latitude in radians, longitude in
+    // degrees and the latitude's cosine, so that a lookup reads them from one array.
+    private record Cell(double[] coordinates, Location[] locations) {}
+
+    // The haversine of the radius's central angle; points within the radius do not exceed it.
+    private final double maxHaversine;
+    private final double radiusDegrees;
+    private final double cellDegrees;
+    private final double columnDegrees;
+    private final long rows;
+    private final long columns;
+    private final ConcurrentMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public LocationGridIndex(@Value("${weather.geo.radius-km:10}") double radiusKm) {
+        if (!(radiusKm > 0) || radiusKm > KM_PER_DEGREE * 90) {
+            throw new IllegalArgumentException("Radius must be positive and reach at most 90 degrees");
+        }
+        double halfAngle = Math.sin(radiusKm / EARTH_RADIUS_KM / 2);
+        this.maxHaversine = halfAngle * halfAngle;
+        this.radiusDegrees = radiusKm / KM_PER_DEGREE;
+        this.cellDegrees = Math.min(90, CELL_RADII * radiusDegrees);
+        this.rows = (long) Math.ceil(180 / cellDegrees);
+        this.columns = (long) Math.ceil(360 / cellDegrees);
+        this.columnDegrees = 360.0 / columns;
+    }
+
+    /**
+     * Indexes {@code location} at the coordinate, unless it already has a point in the same cell.
+     */
+    public void add(Location location, double latitude, double longitude) {
+        checkCoordinates(latitude, longitude);
+        double latitudeRadians = Math.toRadians(latitude);
+        cells.compute(cellKey(row(latitude), column(longitude)), (key, cell) -> {
+            int count = cell == null ? 0 : cell.locations().length;
+            for (int i = 0; i < count; i++) {
+                if (cell.locations()[i].equals(location)) {
+                    return cell;
+                }
+            }
+            double[] coordinates = cell == null ? new double[3] : Arrays.copyOf(cell.coordinates(), 3 * count + 3);
+            Location[] locations = cell == null ? new Location[1] : Arrays.copyOf(cell.locations(), count + 1);
+            coordinates[3 * count] = latitudeRadians;
+            coordinates[3 * count + 1] = longitude;
+            coordinates[3 * count + 2] = Math.cos(latitudeRadians);
+            locations[count] = location;
+            size.incrementAndGet();
+            return new Cell(coordinates, locations);
+        });
+    }
+
+    /**
+     * Returns the location with a point nearest to the coordinate within the radius, or {@code null}
+     * if there is none.
+     */
+    public Location nearest(double latitude, double longitude) {
+        checkCoordinates(latitude, longitude);
+        double latitudeRadians = Math.toRadians(latitude);
+        double cosLatitude = Math.cos(latitudeRadians);
+        // Only the cells overlapping the bounding box of the circle of the radius are searched.
+        long firstColumn;
+        long columnCount;
+        double reach = longitudeReach(latitude);
+        if (2 * reach / columnDegrees + 2 >= columns) {
+            firstColumn = 0;
+            columnCount = columns;
+        } else {
+            firstColumn = column(longitude - reach);
+            columnCount = Math.min(columns, Math.floorMod(column(longitude + reach) - firstColumn, columns) + 1);
+        }
+        Location nearest = null;
+        double nearestHaversine = maxHaversine;
+        long lastRow = row(Math.min(90, latitude + radiusDegrees));
+        for (long r = row(Math.max(-90, latitude - radiusDegrees)); r <= lastRow; r++) {
+            for (long c = 0; c < columnCount; c++) {
+                Cell cell = cells.get(cellKey(r, (firstColumn + c) % columns));
+                if (cell == null) {
+                    continue;
+                }
+                double[] coordinates = cell.coordinates();
+                for (int i = 0; i < cell.locations().length; i++) {
+                    double haversine = haversine(latitudeRadians, cosLatitude, coordinates[3 * i],
+                            coordinates[3 * i + 2], Math.toRadians(coordinates[3 * i + 1] - longitude));
+                    if (haversine <= nearestHaversine) {
+                        nearest = cell.locations()[i];
+                        nearestHaversine = haversine;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the key of the cell holding the coordinate, shared by every coordinate in it.
+     */
+    public long cellKey(double latitude, double longitude) {
+        checkCoordinates(latitude, longitude);
+        return cellKey(row(latitude), column(longitude));
+    }
+
+    /**
+     * Returns the number of indexed points.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the great-circle distance between two coordinates, by the haversine formula.
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double a = haversine(phi1, Math.cos(phi1), phi2, Math.cos(phi2), Math.toRadians(longitude2 - longitude1));
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // The haversine of the central angle between two points, which grows with their distance.
+    private static double haversine(double phi1, double cosPhi1, double phi2, double cosPhi2, double deltaLambda) {
+        double sinDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDeltaLambda = Math.sin(deltaLambda / 2);
+        return sinDeltaPhi * sinDeltaPhi + cosPhi1 * cosPhi2 * sinDeltaLambda * sinDeltaLambda;
+    }
+
+    // Degrees of longitude either side of the coordinate that points within the radius may lie at:
+    // asin(sin r / cos lat), or all of them once the circle reaches a pole.
+    private double longitudeReach(double latitude) {
+        if (Math.abs(latitude) + radiusDegrees >= 90) {
+            return 180;
+        }
+        double sinReach = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(latitude));
+        return sinReach >= 1 ? 180 : Math.toDegrees(Math.asin(sinReach));
+    }
+
+    private long row(double latitude) {
+        return Math.min(rows - 1, (long) ((latitude + 90) / cellDegrees));
+    }
+
+    private long column(double longitude) {
+        return Math.floorMod((long) Math.floor((longitude + 180) / columnDegrees), columns);
+    }
+
+    private long cellKey(long row, long column) {
+        return row * columns + column;
+    }
+
+    private static void checkCoordinates(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.weatherapi.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.weatherapi.model.WeatherReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bodies of reports, serialized once per report and format instead of once per response.
+ * <p>
+ * Entries are keyed by report identity and held weakly, so they live exactly as long as the report
+ * they were made from is referenced, typically by {@link WeatherReportCache}. A replaced report is a
+ * new instance and gets its own entry; the old bytes can never be served for it and go away with the
+ * old report. Bodies of at least {@code gzipMinSize} bytes also keep a gzip copy, if that turns out
+ * smaller.
+ * <p>
+ * Each format has its own cache, so a report is only ever serialized into the formats it is served
+ * in. CBOR is written with a copy of the JSON mapper, so both carry the same fields.
+ */
+@Component
+public class SerializedReportCache {
+
+    /**
+     * The formats a report can be served in.
+     */
+    public enum Format {
+        JSON(MediaType.APPLICATION_JSON),
+        CBOR(MediaType.APPLICATION_CBOR);
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+    }
+
+    /**
+     * A report's body in one format, and its gzip encoding or {@code null} if it is not worth
+     * compressing.
+     */
+    public record SerializedReport(byte[] body, byte[] gzip) {}
+
+    private final Map<Format, ObjectMapper> mappers = new EnumMap<>(Format.class);
+    private final Map<Format, Cache<WeatherReport, SerializedReport>> caches = new EnumMap<>(Format.class);
+    private final int gzipMinSize;
+
+    public SerializedReportCache(ObjectMapper objectMapper,
+                                 @Value("${weather.cache.maximum-size:10000}") long maximumSize,
+                                 @Value("${weather.response.gzip-min-size:256}") int gzipMinSize) {
+        this.gzipMinSize = gzipMinSize;
+        mappers.put(Format.JSON, objectMapper);
+        mappers.put(Format.CBOR, objectMapper.copyWith(new CBORFactory()));
+        for (Format format : Format.values()) {
+            caches.put(format, Caffeine.newBuilder()
+                    .weakKeys()
+                    .maximumSize(maximumSize)
+                    .executor(Runnable::run)
+                    .build());
+        }
+    }
+
+    public SerializedReport get(WeatherReport report) {
+        return get(report, Format.JSON);
+    }
+
+    public SerializedReport get(WeatherReport report, Format format) {
+        return caches.get(format).get(report, key -> serialize(key, format));
+    }
+
+    long size() {
+        long size = 0;
+        for (Cache<WeatherReport, SerializedReport> cache : caches.values()) {
+            cache.cleanUp();
+            size += cache.estimatedSize();
+        }
+        return size;
+    }
+
+    private SerializedReport serialize(WeatherReport report, Format format) {
+        byte[] body;
+        try {
+            body = mappers.get(format).writeValueAsBytes(report);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize report " + report.id() + " as " + format, e);
+        }
+        if (body.length < gzipMinSize) {
+            return new SerializedReport(body, null);
+        }
+        byte[] gzip = gzip(body);
+        return new SerializedReport(body, gzip.length < body.length ? gzip : null);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,204 @@
+package com.weatherapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded in-memory cache of the latest {@link WeatherReport} per location.
+ * <p>
+ * Entries expire once the cached report is older than the configured TTL, measured from the
+ * report timestamp rather than from insertion, so a report loaded from the database never
+ * outlives its freshness window.
+ */
+@Component
+public class WeatherReportCache {
+
+    public enum EvictionPolicy {
+        LRU,
+        W_TINY_LFU
+    }
+
+    public record Stats(long hitCount, long missCount, long evictionCount, long size) {
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+
+    private final long ttlSeconds;
+    private final Store store;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public WeatherReportCache(@Value("${weather.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${weather.cache.ttl:1h}") Duration ttl,
+                              @Value("${weather.cache.eviction:W_TINY_LFU}") EvictionPolicy eviction) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Cache maximum size must be positive");
+        }
+        this.ttlSeconds = ttl.toSeconds();
+        this.store = switch (eviction) {
+            case LRU -> new LruStore(maximumSize);
+            case W_TINY_LFU -> new CaffeineStore(maximumSize);
+        };
+    }
+
+    public Optional<WeatherReport> get(Location location) {
+        WeatherReport report = store.get(location);
+        if (report == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(report);
+    }
+
+    /**
+     * Looks up a report without recording a hit or miss.
+     */
+    public Optional<WeatherReport> peek(Location location) {
+        return Optional.ofNullable(store.get(location));
+    }
+
+    public void put(Location location, WeatherReport report) {
+        if (remainingSeconds(report) > 0) {
+            store.put(location, report);
+        } else {
+            store.invalidate(location);
+        }
+    }
+
+    public void invalidate(Location location) {
+        store.invalidate(location);
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), store.size());
+    }
+
+    private long remainingSeconds(WeatherReport report) {
+        return report.timestamp() + ttlSeconds - Instant.now().getEpochSecond();
+    }
+
+    private interface Store {
+        WeatherReport get(Location location);
+
+        void put(Location location, WeatherReport report);
+
+        void invalidate(Location location);
+
+        long size();
+    }
+
+    private final class CaffeineStore implements Store {
+        private final Cache<Location, WeatherReport> cache;
+
+        private CaffeineStore(long maximumSize) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfter(new Expiry<Location, WeatherReport>() {
+                        @Override
+                        public long expireAfterCreate(Location key, WeatherReport value, long currentTime) {
+                            return TimeUnit.SECONDS.toNanos(Math.max(0, remainingSeconds(value)));
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(Location key, WeatherReport value, long currentTime,
+                                                      long currentDuration) {
+                            return expireAfterCreate(key, value, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(Location key, WeatherReport value, long currentTime,
+                                                    long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .removalListener((Location key, WeatherReport value, RemovalCause cause) -> {
+                        if (cause.wasEvicted()) {
+                            evictions.increment();
+                        }
+                    })
+                    .executor(Runnable::run)
+                    .build();
+        }
+
+        @Override
+        public WeatherReport get(Location location) {
+            return cache.getIfPresent(location);
+        }
+
+        @Override
+        public void put(Location location, WeatherReport report) {
+            cache.put(location, report);
+        }
+
+        @Override
+        public void invalidate(Location location) {
+            cache.invalidate(location);
+        }
+
+        @Override
+        public long size() {
+            return cache.estimatedSize();
+        }
+    }
+
+    private final class LruStore implements Store {
+        private final Map<Location, WeatherReport> map;
+
+        private LruStore(long maximumSize) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Location, WeatherReport> eldest) {
+                    if (size() > maximumSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        @Override
+        public synchronized WeatherReport get(Location location) {
+            WeatherReport report = map.get(location);
+            if (report != null && remainingSeconds(report) <= 0) {
+                map.remove(location);
+                evictions.increment();
+                return null;
+            }
+            return report;
+        }
+
+        @Override
+        public synchronized void put(Location location, WeatherReport report) {
+            map.put(location, report);
+        }
+
+        @Override
+        public synchronized void invalidate(Location location) {
+            map.remove(location);
+        }
+
+        @Override
+        public synchronized long size() {
+            return map.size();
+        }
+    }
+}
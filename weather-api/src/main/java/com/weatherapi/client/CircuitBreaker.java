@@ -0,0 +1,206 @@
+package com.weatherapi.client;
+
+import com.weatherapi.config.CircuitBreakerProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Count-based circuit breaker.
+ * <p>
+ * While {@link State#CLOSED}, the outcomes of the last {@code slidingWindowSize} calls are kept, and
+ * the breaker opens once the failure rate or the slow-call rate reaches its threshold. While
+ * {@link State#OPEN}, no call is permitted until {@code waitDurationInOpenState} has passed; the
+ * breaker then turns {@link State#HALF_OPEN} and lets {@code permittedCallsInHalfOpenState} trial
+ * calls through, whose rates decide whether it closes again or reopens.
+ * <p>
+ * Every transition starts a new generation, and a permission belongs to the generation it was granted
+ * in. An outcome or a release reported with a permission of an earlier generation is ignored, so a
+ * call that outlives the state it started in, e.g. a slow call of the closed breaker completing
+ * while it is half-open, does not count as one of the trial calls.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Returned by {@link #tryAcquirePermission} when no call may be made.
+     */
+    public static final long NOT_PERMITTED = -1;
+
+    public record Transition(State from, State to, Instant at) {}
+
+    public record Metrics(State state, int bufferedCalls, int failedCalls, int slowCalls, long notPermittedCalls) {
+        public float failureRate() {
+            return bufferedCalls == 0 ? 0 : 100f * failedCalls / bufferedCalls;
+        }
+
+        public float slowCallRate() {
+            return bufferedCalls == 0 ? 0 : 100f * slowCalls / bufferedCalls;
+        }
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final CircuitBreakerProperties properties;
+    private final Clock clock;
+    private final List<Consumer<Transition>> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder notPermittedCalls = new LongAdder();
+
+    // Guarded by this. In CLOSED the ring holds the sliding window; in HALF_OPEN it holds the trial calls.
+    private final byte[] outcomes;
+    private int next;
+    private int buffered;
+    private int failed;
+    private int slow;
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAtMillis;
+    private int halfOpenPermits;
+
+    public CircuitBreaker(CircuitBreakerProperties properties, Clock clock) {
+        if (properties.slidingWindowSize() <= 0 || properties.permittedCallsInHalfOpenState() <= 0) {
+            throw new IllegalArgumentException("Circuit breaker window sizes must be positive");
+        }
+        this.properties = properties;
+        this.clock = clock;
+        this.outcomes = new byte[Math.max(properties.slidingWindowSize(), properties.permittedCallsInHalfOpenState())];
+    }
+
+    /**
+     * Registers a listener called after every state transition, outside the breaker's lock.
+     */
+    public void onStateTransition(Consumer<Transition> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the permission for a call made now, or {@link #NOT_PERMITTED}. A caller that was
+     * permitted must report the outcome with it through {@link #onCallCompleted}, or hand it back
+     * through {@link #releasePermission} if it ends up not making the call.
+     */
+    public long tryAcquirePermission() {
+        Transition transition = null;
+        boolean permitted;
+        long permission;
+        synchronized (this) {
+            if (state == State.OPEN
+                    && clock.millis() - openedAtMillis >= properties.waitDurationInOpenState().toMillis()) {
+                transition = transitionTo(State.HALF_OPEN);
+            }
+            permitted = switch (state) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> {
+                    if (halfOpenPermits == 0) {
+                        yield false;
+                    }
+                    halfOpenPermits--;
+                    yield true;
+                }
+            };
+            permission = permitted ? generation : NOT_PERMITTED;
+        }
+        if (!permitted) {
+            notPermittedCalls.increment();
+        }
+        publish(transition);
+        return permission;
+    }
+
+    public synchronized void releasePermission(long permission) {
+        if (permission == generation && state == State.HALF_OPEN
+                && halfOpenPermits < properties.permittedCallsInHalfOpenState() - buffered) {
+            halfOpenPermits++;
+        }
+    }
+
+    public void onCallCompleted(long permission, boolean callFailed, Duration duration) {
+        Transition transition = null;
+        synchronized (this) {
+            if (permission != generation) {
+                // Started in an earlier state; the verdict of that state has been reached without it.
+                return;
+            }
+            record((byte) ((callFailed ? FAILED : 0)
+                    | (duration.compareTo(properties.slowCallDuration()) >= 0 ? SLOW : 0)));
+            if (state == State.CLOSED) {
+                if (buffered >= Math.min(properties.minimumNumberOfCalls(), properties.slidingWindowSize())
+                        && exceedsThresholds()) {
+                    transition = transitionTo(State.OPEN);
+                }
+            } else if (buffered == properties.permittedCallsInHalfOpenState()) {
+                transition = transitionTo(exceedsThresholds() ? State.OPEN : State.CLOSED);
+            }
+        }
+        publish(transition);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized Metrics metrics() {
+        return new Metrics(state, buffered, failed, slow, notPermittedCalls.sum());
+    }
+
+    private void record(byte outcome) {
+        int capacity = state == State.CLOSED ? properties.slidingWindowSize() : properties.permittedCallsInHalfOpenState();
+        if (buffered == capacity) {
+            byte evicted = outcomes[next];
+            failed -= evicted & FAILED;
+            slow -= (evicted & SLOW) >> 1;
+        } else {
+            buffered++;
+        }
+        outcomes[next] = outcome;
+        failed += outcome & FAILED;
+        slow += (outcome & SLOW) >> 1;
+        next = (next + 1) % capacity;
+    }
+
+    private boolean exceedsThresholds() {
+        return failed * 100 >= properties.failureRateThreshold() * buffered
+                || slow * 100 >= properties.slowCallRateThreshold() * buffered;
+    }
+
+    private Transition transitionTo(State target) {
+        Transition transition = new Transition(state, target, clock.instant());
+        state = target;
+        generation++;
+        next = 0;
+        buffered = 0;
+        failed = 0;
+        slow = 0;
+        if (target == State.OPEN) {
+            openedAtMillis = clock.millis();
+        } else if (target == State.HALF_OPEN) {
+            halfOpenPermits = properties.permittedCallsInHalfOpenState();
+        }
+        return transition;
+    }
+
+    private void publish(Transition transition) {
+        if (transition == null) {
+            return;
+        }
+        if (transition.to() == State.OPEN) {
+            log.warn("Weather API circuit breaker {} -> {}", transition.from(), transition.to());
+        } else {
+            log.info("Weather API circuit breaker {} -> {}", transition.from(), transition.to());
+        }
+        listeners.forEach(listener -> listener.accept(transition));
+    }
+}
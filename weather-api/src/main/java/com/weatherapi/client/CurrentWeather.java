@@ -0,0 +1,29 @@
+package com.weatherapi.client;
+
+/**
+ * The fields of an OpenWeatherMap current weather response that the service keeps.
+ *
+ * @param description the first weather condition's description
+ * @param cityId      the provider's id of the city, used to refresh it in group queries; {@code null}
+ *                    if the response had none
+ * @param city        the provider's name of the city, {@code null} if the response had none; empty for
+ *                    coordinates far from any named place
+ * @param country     the city's country code, {@code null} if the response had none
+ * @param latitude    the city's latitude, {@code null} if the response had no coordinates
+ * @param longitude   the city's longitude, {@code null} if the response had no coordinates
+ */
+public record CurrentWeather(String description, Long cityId, String city, String country, Double latitude,
+                             Double longitude) {
+
+    public CurrentWeather(String description) {
+        this(description, null);
+    }
+
+    public CurrentWeather(String description, Long cityId) {
+        this(description, cityId, null, null, null, null);
+    }
+
+    public boolean hasCoordinates() {
+        return latitude != null && longitude != null;
+    }
+}
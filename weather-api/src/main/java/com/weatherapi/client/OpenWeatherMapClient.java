@@ -0,0 +1,239 @@
+package com.weatherapi.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapi.config.UpstreamClientProperties;
+import com.weatherapi.exception.ErrorCode;
+import com.weatherapi.exception.UpstreamUnavailableException;
+import com.weatherapi.exception.WeatherApiException;
+import com.weatherapi.metrics.WeatherMetrics;
+import com.weatherapi.metrics.WeatherMetrics.UpstreamOutcome;
+import com.weatherapi.metrics.WeatherMetrics.UpstreamRejection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Calls the OpenWeatherMap current weather API. Every call is bounded by the configured total
+ * timeout and guarded by a {@link CircuitBreaker}. Calls to one host are capped at
+ * {@code maxConcurrentPerHost}, a bulkhead: callers over the cap wait at most
+ * {@code bulkheadMaxWait} for a permit. Each call is then made with a key from the
+ * {@link UpstreamKeyPool} that still has quota. Calls rejected by any of these are reported as
+ * {@link UpstreamUnavailableException} without reaching the provider.
+ * <p>
+ * Group queries fetch up to {@value #MAX_GROUP_SIZE} cities by provider id in one call, from the
+ * {@code group} endpoint next to the configured current weather endpoint. Coordinate queries ask the
+ * current weather endpoint for the named place nearest to a latitude and longitude.
+ */
+@Component
+public class OpenWeatherMapClient {
+
+    /**
+     * The most city ids the provider accepts in one group query.
+     */
+    public static final int MAX_GROUP_SIZE = 20;
+
+    private final HttpClient httpClient;
+    private final OpenWeatherMapResponseDecoder decoder;
+    private final UpstreamClientProperties properties;
+    private final CircuitBreaker circuitBreaker;
+    private final UpstreamKeyPool keyPool;
+    private final WeatherMetrics metrics;
+    private final UriComponents currentWeatherUri;
+    private final UriComponents groupUri;
+    private final UriComponents coordinatesUri;
+    private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public OpenWeatherMapClient(HttpClient httpClient, ObjectMapper objectMapper, UpstreamClientProperties properties,
+                                CircuitBreaker circuitBreaker, UpstreamKeyPool keyPool, WeatherMetrics metrics,
+                                @Value("${openweathermap.api.url}") String apiUrl) {
+        this.httpClient = httpClient;
+        this.decoder = new OpenWeatherMapResponseDecoder(objectMapper.getFactory());
+        this.properties = properties;
+        this.circuitBreaker = circuitBreaker;
+        this.keyPool = keyPool;
+        this.metrics = metrics;
+        this.currentWeatherUri = UriComponentsBuilder.fromUriString(apiUrl)
+                .queryParam("q", "{q}")
+                .queryParam("appid", "{appid}")
+                .encode()
+                .build();
+        this.groupUri = UriComponentsBuilder.fromUriString(apiUrl.substring(0, apiUrl.lastIndexOf('/')) + "/group")
+                .queryParam("id", "{id}")
+                .queryParam("appid", "{appid}")
+                .encode()
+                .build();
+        this.coordinatesUri = UriComponentsBuilder.fromUriString(apiUrl)
+                .queryParam("lat", "{lat}")
+                .queryParam("lon", "{lon}")
+                .queryParam("appid", "{appid}")
+                .encode()
+                .build();
+    }
+
+    public CurrentWeather fetchCurrentWeather(String city, String country) {
+        return decoder.decode(get(currentWeatherUri, city + "," + country));
+    }
+
+    /**
+     * Fetches the current weather of the named place the provider finds nearest to the coordinates,
+     * which may be some distance away, or have an empty name far from any.
+     */
+    public CurrentWeather fetchCurrentWeatherAt(double latitude, double longitude) {
+        return decoder.decode(get(coordinatesUri, latitude, longitude));
+    }
+
+    /**
+     * Fetches the current weather of up to {@value #MAX_GROUP_SIZE} cities by provider id in one call.
+     * Cities the provider does not know are left out of the result.
+     */
+    public List<CurrentWeather> fetchCurrentWeatherGroup(Collection<Long> cityIds) {
+        if (cityIds.isEmpty() || cityIds.size() > MAX_GROUP_SIZE) {
+            throw new IllegalArgumentException("A group query takes 1 to " + MAX_GROUP_SIZE + " city ids");
+        }
+        StringJoiner ids = new StringJoiner(",");
+        cityIds.forEach(id -> ids.add(id.toString()));
+        return decoder.decodeGroup(get(groupUri, ids.toString()));
+    }
+
+    // Expands the template with the variables followed by the key the call is made with.
+    private byte[] get(UriComponents template, Object... variables) {
+        long deadline = System.nanoTime() + properties.totalTimeout().toNanos();
+        long permission = circuitBreaker.tryAcquirePermission();
+        if (permission == CircuitBreaker.NOT_PERMITTED) {
+            metrics.recordUpstreamRejection(UpstreamRejection.CIRCUIT_OPEN);
+            throw new UpstreamUnavailableException("Weather API circuit breaker is open");
+        }
+        Semaphore permits = hostPermits.computeIfAbsent(template.getHost() + ":" + template.getPort(),
+                host -> new Semaphore(properties.maxConcurrentPerHost()));
+        try {
+            acquire(permits, deadline);
+        } catch (WeatherApiException e) {
+            circuitBreaker.releasePermission(permission);
+            throw e;
+        }
+        String appId;
+        try {
+            appId = acquireKey(deadline);
+        } catch (WeatherApiException e) {
+            permits.release();
+            circuitBreaker.releasePermission(permission);
+            throw e;
+        }
+        // Expanded variables are encoded strictly, so reserved characters in a city cannot alter the query.
+        Object[] expanded = Arrays.copyOf(variables, variables.length + 1);
+        expanded[variables.length] = appId;
+        URI uri = template.expand(expanded).toUri();
+        long start = System.nanoTime();
+        UpstreamOutcome outcome = UpstreamOutcome.FAILURE;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(properties.readTimeout())
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> response;
+            try {
+                response = await(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()), deadline);
+            } catch (TimeoutException e) {
+                outcome = UpstreamOutcome.TIMEOUT;
+                throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather API timed out");
+            }
+            int status = response.statusCode();
+            if (status == 429) {
+                // The provider's count of the key's calls is ahead of ours, e.g. after a restart.
+                keyPool.exhaustMinute(appId);
+            }
+            // Client errors such as an unknown city say nothing about the provider's health.
+            outcome = status / 100 == 2 ? UpstreamOutcome.SUCCESS
+                    : status >= 500 || status == 429 ? UpstreamOutcome.SERVER_ERROR
+                    : UpstreamOutcome.CLIENT_ERROR;
+            if (status / 100 != 2) {
+                throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather API responded with status " + status);
+            }
+            return response.body();
+        } finally {
+            permits.release();
+            long elapsed = System.nanoTime() - start;
+            boolean failed = outcome != UpstreamOutcome.SUCCESS && outcome != UpstreamOutcome.CLIENT_ERROR;
+            circuitBreaker.onCallCompleted(permission, failed, Duration.ofNanos(elapsed));
+            metrics.recordUpstreamCall(outcome, elapsed);
+        }
+    }
+
+    /**
+     * Returns the number of calls currently holding a bulkhead permit, across all hosts.
+     */
+    public int inFlightCalls() {
+        int inFlight = 0;
+        for (Semaphore permits : hostPermits.values()) {
+            inFlight += properties.maxConcurrentPerHost() - permits.availablePermits();
+        }
+        return inFlight;
+    }
+
+    private void acquire(Semaphore permits, long deadline) {
+        long maxWait = Math.min(properties.bulkheadMaxWait().toNanos(), deadline - System.nanoTime());
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.NANOSECONDS)) {
+                metrics.recordUpstreamRejection(UpstreamRejection.BULKHEAD_FULL);
+                throw new UpstreamUnavailableException("Too many concurrent calls to weather API");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Interrupted waiting for weather API");
+        }
+    }
+
+    private String acquireKey(long deadline) {
+        long maxWait = Math.min(keyPool.maxWait().toNanos(), deadline - System.nanoTime());
+        try {
+            String key = keyPool.acquire(Duration.ofNanos(Math.max(0, maxWait)));
+            if (key == null) {
+                metrics.recordUpstreamRejection(UpstreamRejection.QUOTA_EXHAUSTED);
+                throw new UpstreamUnavailableException("Weather API quota is exhausted for every key");
+            }
+            return key;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Interrupted waiting for weather API");
+        }
+    }
+
+    // Timeouts, whether of the total deadline or the read timeout, surface as TimeoutException.
+    private static <T> T await(CompletableFuture<T> call, long deadline) throws TimeoutException {
+        try {
+            return call.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpTimeoutException) {
+                throw new TimeoutException(e.getCause().getMessage());
+            }
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather API request failed");
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Interrupted waiting for weather API");
+        }
+    }
+}
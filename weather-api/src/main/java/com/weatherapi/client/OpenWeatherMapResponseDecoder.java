@@ -0,0 +1,189 @@
+package com.weatherapi.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.weatherapi.exception.ErrorCode;
+import com.weatherapi.exception.WeatherApiException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes an OpenWeatherMap current weather response with Jackson's streaming parser, reading only
+ * {@code weather[0].description} and the city's {@code id}, {@code name}, {@code sys.country} and
+ * {@code coord}, and skipping every other value without materializing it.
+ * <p>
+ * Validation failures are reported with the same {@link ErrorCode#EXTERNAL_API_ERROR} messages the
+ * service used when it walked the response as a generic map.
+ */
+public class OpenWeatherMapResponseDecoder {
+
+    private static final String INVALID_FORMAT = "Invalid weather data format";
+
+    private final JsonFactory jsonFactory;
+
+    public OpenWeatherMapResponseDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    public CurrentWeather decode(byte[] body) {
+        if (body.length == 0) {
+            throw error("No response from weather API");
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                throw error("No response from weather API");
+            }
+            return readCurrentWeather(parser);
+        } catch (IOException e) {
+            throw error(INVALID_FORMAT);
+        }
+    }
+
+    /**
+     * Decodes a group query response, {@code {"cnt":2,"list":[...]}}, whose list holds one current
+     * weather response per city.
+     */
+    public List<CurrentWeather> decodeGroup(byte[] body) {
+        if (body.length == 0) {
+            throw error("No response from weather API");
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw error(INVALID_FORMAT);
+            }
+            List<CurrentWeather> cities = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("list".equals(field) && value == JsonToken.START_ARRAY) {
+                    cities = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        cities.add(readCurrentWeather(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (cities == null) {
+                throw error(INVALID_FORMAT);
+            }
+            return cities;
+        } catch (IOException e) {
+            throw error(INVALID_FORMAT);
+        }
+    }
+
+    private CurrentWeather readCurrentWeather(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw error(INVALID_FORMAT);
+        }
+        String description = null;
+        Long cityId = null;
+        String city = null;
+        String country = null;
+        Double latitude = null;
+        Double longitude = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("weather".equals(field)) {
+                description = readWeather(parser);
+            } else if ("id".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                cityId = parser.getLongValue();
+            } else if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                city = parser.getText();
+            } else if ("sys".equals(field) && value == JsonToken.START_OBJECT) {
+                country = readCountry(parser);
+            } else if ("coord".equals(field) && value == JsonToken.START_OBJECT) {
+                double[] coordinates = readCoordinates(parser);
+                if (coordinates != null) {
+                    latitude = coordinates[0];
+                    longitude = coordinates[1];
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (description == null) {
+            throw error(INVALID_FORMAT);
+        }
+        return new CurrentWeather(description, cityId, city, country, latitude, longitude);
+    }
+
+    private static String readCountry(JsonParser parser) throws IOException {
+        String country = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("country".equals(field) && value == JsonToken.VALUE_STRING) {
+                country = parser.getText();
+            }
+            parser.skipChildren();
+        }
+        return country;
+    }
+
+    // Returns {lat, lon}, or null unless both are numbers.
+    private static double[] readCoordinates(JsonParser parser) throws IOException {
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isNumeric()) {
+                if ("lat".equals(field)) {
+                    latitude = parser.getDoubleValue();
+                } else if ("lon".equals(field)) {
+                    longitude = parser.getDoubleValue();
+                }
+            }
+            parser.skipChildren();
+        }
+        return Double.isNaN(latitude) || Double.isNaN(longitude) ? null : new double[] {latitude, longitude};
+    }
+
+    private String readWeather(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw error(INVALID_FORMAT);
+        }
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.END_ARRAY) {
+            throw error("Weather data is empty");
+        }
+        if (first != JsonToken.START_OBJECT) {
+            throw error(INVALID_FORMAT);
+        }
+        String description = readDescription(parser);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+        }
+        return description;
+    }
+
+    private String readDescription(JsonParser parser) throws IOException {
+        String description = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("description".equals(field)) {
+                description = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+            }
+            parser.skipChildren();
+        }
+        if (description == null) {
+            throw error("Weather description is missing or invalid");
+        }
+        if (description.isEmpty()) {
+            throw error("Weather description is empty");
+        }
+        return description;
+    }
+
+    private static WeatherApiException error(String message) {
+        return new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, message);
+    }
+}
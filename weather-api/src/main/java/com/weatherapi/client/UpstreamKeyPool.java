@@ -0,0 +1,209 @@
+package com.weatherapi.client;
+
+import com.weatherapi.config.UpstreamKeyProperties;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The weather provider's API keys and what is left of their quotas.
+ * <p>
+ * The provider counts calls per key in calendar minutes and calendar days (UTC), and so does the
+ * pool. Each call takes the key with the most calls left in both windows, which spreads load across
+ * keys in proportion to their remaining quota instead of draining them one after another. Usage is
+ * counted with compare-and-set on one word per key and window, so taking a key never blocks while
+ * any key has quota left. When none has, the caller waits for the next window to open, up to the
+ * given maximum, and is turned away otherwise.
+ */
+public class UpstreamKeyPool {
+
+    private final List<KeyQuota> keys;
+    private final Duration maxWait;
+    private final Clock clock;
+
+    public UpstreamKeyPool(UpstreamKeyProperties properties, Clock clock) {
+        if (properties.keys() == null || properties.keys().isEmpty()) {
+            throw new IllegalArgumentException("At least one upstream API key is required");
+        }
+        this.keys = properties.keys().stream().map(KeyQuota::new).toList();
+        this.maxWait = properties.maxWait();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the configured longest wait for quota to free up.
+     */
+    public Duration maxWait() {
+        return maxWait;
+    }
+
+    /**
+     * Takes one call from the quota of the key with the most left and returns that key, or returns
+     * {@code null} if every key is still exhausted after waiting up to {@code maxWait}.
+     */
+    public String acquire(Duration maxWait) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        while (true) {
+            long now = clock.millis();
+            KeyQuota best = null;
+            int bestRemaining = 0;
+            for (KeyQuota key : keys) {
+                int remaining = key.remaining(now);
+                if (remaining > bestRemaining) {
+                    best = key;
+                    bestRemaining = remaining;
+                }
+            }
+            if (best != null) {
+                if (best.tryAcquire(now)) {
+                    return best.key;
+                }
+                // Another caller took the last call of that key in between; look again.
+                continue;
+            }
+            long reopensAt = Long.MAX_VALUE;
+            for (KeyQuota key : keys) {
+                reopensAt = Math.min(reopensAt, key.reopensAt(now));
+            }
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(reopensAt - now);
+            if (waitNanos > deadline - System.nanoTime()) {
+                return null;
+            }
+            Thread.sleep(Math.max(1, reopensAt - now));
+        }
+    }
+
+    /**
+     * Marks {@code key} as out of calls for the current minute, for when the provider turns it away
+     * as over quota although the pool's count says otherwise.
+     */
+    public void exhaustMinute(String key) {
+        long now = clock.millis();
+        for (KeyQuota quota : keys) {
+            if (quota.key.equals(key)) {
+                quota.minute.exhaust(now);
+            }
+        }
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Returns the calls left in the current minute for the key at {@code index}, in configuration order.
+     */
+    public int remainingThisMinute(int index) {
+        return keys.get(index).minute.remaining(clock.millis());
+    }
+
+    /**
+     * Returns the calls left today for the key at {@code index}, in configuration order.
+     */
+    public int remainingToday(int index) {
+        return keys.get(index).day.remaining(clock.millis());
+    }
+
+    private static final class KeyQuota {
+        private final String key;
+        private final Window minute;
+        private final Window day;
+
+        KeyQuota(UpstreamKeyProperties.Key properties) {
+            if (properties.key() == null || properties.key().isBlank()) {
+                throw new IllegalArgumentException("Upstream API keys must not be blank");
+            }
+            if (properties.perMinute() <= 0 || properties.perDay() <= 0) {
+                throw new IllegalArgumentException("Upstream API key quotas must be positive");
+            }
+            this.key = properties.key();
+            this.minute = new Window(Duration.ofMinutes(1).toMillis(), properties.perMinute());
+            this.day = new Window(Duration.ofDays(1).toMillis(), properties.perDay());
+        }
+
+        int remaining(long now) {
+            return Math.min(minute.remaining(now), day.remaining(now));
+        }
+
+        boolean tryAcquire(long now) {
+            if (!minute.tryAcquire(now)) {
+                return false;
+            }
+            if (!day.tryAcquire(now)) {
+                minute.release(now);
+                return false;
+            }
+            return true;
+        }
+
+        long reopensAt(long now) {
+            return Math.max(minute.reopensAt(now), day.reopensAt(now));
+        }
+    }
+
+    /**
+     * Calls made in the current calendar window, packed with the window's index into one word: the
+     * index in the high 32 bits, the count in the low 32. A word from an earlier window counts as zero
+     * calls, so windows roll over without a reset.
+     */
+    private static final class Window {
+        private final long lengthMillis;
+        private final int limit;
+        private final AtomicLong state = new AtomicLong();
+
+        Window(long lengthMillis, int limit) {
+            this.lengthMillis = lengthMillis;
+            this.limit = limit;
+        }
+
+        int remaining(long now) {
+            return limit - used(state.get(), now / lengthMillis);
+        }
+
+        boolean tryAcquire(long now) {
+            long index = now / lengthMillis;
+            while (true) {
+                long current = state.get();
+                int used = used(current, index);
+                if (used >= limit) {
+                    return false;
+                }
+                if (state.compareAndSet(current, pack(index, used + 1))) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long now) {
+            long index = now / lengthMillis;
+            while (true) {
+                long current = state.get();
+                int used = used(current, index);
+                if (used == 0 || state.compareAndSet(current, pack(index, used - 1))) {
+                    return;
+                }
+            }
+        }
+
+        void exhaust(long now) {
+            long index = now / lengthMillis;
+            state.accumulateAndGet(pack(index, limit), Math::max);
+        }
+
+        long reopensAt(long now) {
+            long index = now / lengthMillis;
+            return used(state.get(), index) < limit ? now : (index + 1) * lengthMillis;
+        }
+
+        private static int used(long state, long index) {
+            return state >>> 32 == index ? (int) state : 0;
+        }
+
+        private static long pack(long index, int used) {
+            return index << 32 | used;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.weatherapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the circuit breaker around the weather provider.
+ *
+ * @param slidingWindowSize             number of most recent calls the failure and slow-call rates are computed over
+ * @param minimumNumberOfCalls          calls that must be recorded before the breaker may open
+ * @param failureRateThreshold          percentage of failed calls at or above which the breaker opens
+ * @param slowCallRateThreshold         percentage of slow calls at or above which the breaker opens
+ * @param slowCallDuration              calls taking at least this long count as slow
+ * @param waitDurationInOpenState       time the breaker stays open before letting trial calls through
+ * @param permittedCallsInHalfOpenState trial calls that decide whether the breaker closes or opens again
+ */
+@ConfigurationProperties(prefix = "openweathermap.circuit-breaker")
+public record CircuitBreakerProperties(
+        @DefaultValue("20") int slidingWindowSize,
+        @DefaultValue("10") int minimumNumberOfCalls,
+        @DefaultValue("50") int failureRateThreshold,
+        @DefaultValue("80") int slowCallRateThreshold,
+        @DefaultValue("3s") Duration slowCallDuration,
+        @DefaultValue("30s") Duration waitDurationInOpenState,
+        @DefaultValue("3") int permittedCallsInHalfOpenState
+) {}
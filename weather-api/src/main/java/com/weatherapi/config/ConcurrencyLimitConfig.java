@@ -0,0 +1,45 @@
+package com.weatherapi.config;
+
+import com.weatherapi.controller.ConcurrencyLimitInterceptor;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weatherapi.service.WeatherService;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Clock;
+
+@Configuration
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+
+    private final ConcurrencyLimitProperties properties;
+    private final WeatherService weatherService;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitConfig(ConcurrencyLimitProperties properties, WeatherService weatherService) {
+        this.properties = properties;
+        this.weatherService = weatherService;
+        this.limiter = new AdaptiveConcurrencyLimiter(properties, Clock.systemUTC());
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Limits every weather endpoint but the subscription stream, which stays open for minutes and
+     * mostly waits.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (properties.enabled()) {
+            registry.addInterceptor(new ConcurrencyLimitInterceptor(limiter, weatherService, properties.retryAfter()))
+                    .addPathPatterns("/api/weather/**")
+                    .excludePathPatterns("/api/weather/subscribe");
+        }
+    }
+}
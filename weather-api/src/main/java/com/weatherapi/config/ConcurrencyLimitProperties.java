@@ -0,0 +1,34 @@
+package com.weatherapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive limit on concurrent weather requests.
+ *
+ * @param enabled             whether requests are limited at all
+ * @param initialLimit        concurrent requests allowed before any latency has been observed
+ * @param minLimit            the limit never drops below this
+ * @param maxLimit            the limit never grows beyond this
+ * @param window              latency is averaged over windows of at least this long, and the limit
+ *                            adjusted once per window
+ * @param tolerance           how many times the long-term average latency a window may average
+ *                            before the limit shrinks
+ * @param smoothing           weight of each window's estimate in the new limit, between 0 and 1
+ * @param highPriorityReserve fraction of the limit that only high-priority requests may use
+ * @param retryAfter          the Retry-After sent with requests rejected over the limit
+ */
+@ConfigurationProperties(prefix = "weather.concurrency")
+public record ConcurrencyLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("200") int initialLimit,
+        @DefaultValue("20") int minLimit,
+        @DefaultValue("1000") int maxLimit,
+        @DefaultValue("1s") Duration window,
+        @DefaultValue("1.5") double tolerance,
+        @DefaultValue("0.2") double smoothing,
+        @DefaultValue("0.2") double highPriorityReserve,
+        @DefaultValue("1s") Duration retryAfter
+) {}
@@ -0,0 +1,24 @@
+package com.weatherapi.config;
+
+import com.weatherapi.ratelimit.InMemoryRateLimitStore;
+import com.weatherapi.ratelimit.JdbcRateLimitStore;
+import com.weatherapi.ratelimit.RateLimitStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    public RateLimitStore rateLimitStore(RateLimitProperties properties,
+                                         ObjectProvider<JdbcTemplate> jdbcTemplate,
+                                         ObjectProvider<PlatformTransactionManager> transactionManager) {
+        if (properties.store() == RateLimitProperties.StoreType.JDBC) {
+            return new JdbcRateLimitStore(jdbcTemplate.getObject(), transactionManager.getObject());
+        }
+        return new InMemoryRateLimitStore();
+    }
+}
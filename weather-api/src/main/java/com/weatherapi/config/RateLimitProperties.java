@@ -0,0 +1,66 @@
+package com.weatherapi.config;
+
+import com.weatherapi.ratelimit.RateLimiter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Client API keys and their rate limits. Each key may override the default limit, window and
+ * algorithm:
+ * <pre>
+ * weather.rate-limit.keys[API_KEY_1].limit=100
+ * weather.rate-limit.keys[API_KEY_1].window=1m
+ * </pre>
+ * With {@code store=LOCAL} every instance enforces the limits on its own. With {@code IN_MEMORY} or
+ * {@code JDBC} the budget of a key is shared through a {@link com.weatherapi.ratelimit.RateLimitStore}
+ * and handed out in leases of {@code lease-size} permits, but at most {@code max-lease-fraction} of the
+ * key's limit, so one instance cannot take the budget of its peers. Leases unused for
+ * {@code lease-idle-timeout} are returned. Shared budgets always use fixed windows.
+ */
+@ConfigurationProperties(prefix = "weather.rate-limit")
+public record RateLimitProperties(
+        RateLimiter.Algorithm algorithm,
+        int defaultLimit,
+        Duration defaultWindow,
+        Map<String, KeyLimit> keys,
+        StoreType store,
+        int leaseSize,
+        double maxLeaseFraction,
+        Duration leaseIdleTimeout
+) {
+    public enum StoreType {
+        LOCAL,
+        IN_MEMORY,
+        JDBC
+    }
+
+    public RateLimitProperties {
+        keys = keys == null ? Map.of() : Map.copyOf(keys);
+        store = store == null ? StoreType.LOCAL : store;
+        leaseSize = leaseSize <= 0 ? 10 : leaseSize;
+        maxLeaseFraction = maxLeaseFraction <= 0 ? 0.1 : maxLeaseFraction;
+        leaseIdleTimeout = leaseIdleTimeout == null ? Duration.ofMinutes(1) : leaseIdleTimeout;
+    }
+
+    public record KeyLimit(Integer limit, Duration window, RateLimiter.Algorithm algorithm) {}
+
+    /**
+     * Returns the number of permits to lease at a time from a shared budget of {@code limit}.
+     */
+    public int leaseSizeFor(int limit) {
+        return Math.max(1, Math.min(leaseSize, (int) (limit * maxLeaseFraction)));
+    }
+
+    /**
+     * Returns the effective limit of {@code apiKey} with every default filled in.
+     */
+    public KeyLimit limitFor(String apiKey) {
+        KeyLimit keyLimit = keys.getOrDefault(apiKey, new KeyLimit(null, null, null));
+        return new KeyLimit(
+                keyLimit.limit() != null ? keyLimit.limit() : defaultLimit,
+                keyLimit.window() != null ? keyLimit.window() : defaultWindow,
+                keyLimit.algorithm() != null ? keyLimit.algorithm() : algorithm);
+    }
+}
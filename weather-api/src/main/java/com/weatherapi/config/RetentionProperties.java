@@ -0,0 +1,31 @@
+package com.weatherapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Retention of stored weather reports.
+ *
+ * @param rawRetention      reports younger than this are kept as written
+ * @param historyResolution older reports are thinned out to the latest one per location and bucket of this size
+ * @param historyRetention  reports older than this are deleted
+ * @param deleteBatchSize   maximum number of rows removed per delete statement batch
+ */
+@ConfigurationProperties(prefix = "weather.retention")
+public record RetentionProperties(
+        @DefaultValue("7d") Duration rawRetention,
+        @DefaultValue("1h") Duration historyResolution,
+        @DefaultValue("90d") Duration historyRetention,
+        @DefaultValue("500") int deleteBatchSize
+) {
+    public RetentionProperties {
+        if (historyRetention.compareTo(rawRetention) < 0) {
+            throw new IllegalArgumentException("History retention must not be shorter than raw retention");
+        }
+        if (historyResolution.toSeconds() <= 0 || deleteBatchSize <= 0) {
+            throw new IllegalArgumentException("History resolution and delete batch size must be positive");
+        }
+    }
+}
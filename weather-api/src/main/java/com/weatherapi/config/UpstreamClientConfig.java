@@ -0,0 +1,38 @@
+package com.weatherapi.config;
+
+import com.weatherapi.client.CircuitBreaker;
+import com.weatherapi.client.UpstreamKeyPool;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class UpstreamClientConfig {
+
+    /**
+     * Shared JDK client: connections are pooled and kept alive between calls, and HTTP/2 connections
+     * multiplex concurrent calls to the same host.
+     */
+    @Bean
+    public HttpClient upstreamHttpClient(UpstreamClientProperties properties) {
+        return HttpClient.newBuilder()
+                .version(properties.httpVersion())
+                .connectTimeout(properties.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @Bean
+    public CircuitBreaker upstreamCircuitBreaker(CircuitBreakerProperties properties) {
+        return new CircuitBreaker(properties, Clock.systemUTC());
+    }
+
+    @Bean
+    public UpstreamKeyPool upstreamKeyPool(UpstreamKeyProperties properties) {
+        return new UpstreamKeyPool(properties, Clock.systemUTC());
+    }
+}
@@ -0,0 +1,29 @@
+package com.weatherapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Settings of the HTTP client used to call the weather provider.
+ *
+ * @param connectTimeout       time allowed to establish a connection
+ * @param readTimeout          time allowed between sending the request and receiving the response headers
+ * @param totalTimeout         time allowed for the whole call, including waiting for a per-host permit
+ *                             and reading the body
+ * @param maxConcurrentPerHost maximum number of calls in flight to a single upstream host
+ * @param bulkheadMaxWait      time a call waits for a per-host permit before being rejected; never longer
+ *                             than the total timeout
+ * @param httpVersion          preferred HTTP version; HTTP/2 falls back to HTTP/1.1 if the server does not support it
+ */
+@ConfigurationProperties(prefix = "openweathermap.client")
+public record UpstreamClientProperties(
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("5s") Duration readTimeout,
+        @DefaultValue("8s") Duration totalTimeout,
+        @DefaultValue("64") int maxConcurrentPerHost,
+        @DefaultValue("100ms") Duration bulkheadMaxWait,
+        @DefaultValue("HTTP_2") HttpClient.Version httpVersion
+) {}
@@ -0,0 +1,29 @@
+package com.weatherapi.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The weather provider's API keys used for upstream calls, separate from the keys clients call this
+ * service with, and the quota each key was bought with.
+ *
+ * @param keys    upstream keys; at least one is required
+ * @param maxWait time a call waits for quota to free up when every key is exhausted before it is shed;
+ *                never longer than the total timeout
+ */
+@ConfigurationProperties(prefix = "openweathermap.key-pool")
+public record UpstreamKeyProperties(
+        List<Key> keys,
+        @DefaultValue("200ms") Duration maxWait
+) {
+
+    /**
+     * @param key       the provider's {@code appid}
+     * @param perMinute calls allowed per calendar minute
+     * @param perDay    calls allowed per calendar day, in UTC
+     */
+    public record Key(String key, @DefaultValue("60") int perMinute, @DefaultValue("1000000") int perDay) {}
+}
@@ -0,0 +1,87 @@
+package com.weatherapi.controller;
+
+import com.weatherapi.exception.ServiceOverloadedException;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter.Priority;
+import com.weatherapi.service.WeatherService;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * Admits requests to {@link WeatherController} through the {@link AdaptiveConcurrencyLimiter}.
+ * Lookups the service can answer from its cache are high priority, so they are still served once the
+ * limit turns away everything else: lookups that would wait on the database or the provider, batches
+ * and history. A rejected request fails with a {@link ServiceOverloadedException} before it reaches
+ * the controller.
+ * <p>
+ * A streamed response holds its permit until the stream completes, but its duration is not sampled;
+ * it reflects the size of the export rather than load.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".start";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final WeatherService weatherService;
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter, WeatherService weatherService,
+                                       Duration retryAfter) {
+        this.limiter = limiter;
+        this.weatherService = weatherService;
+        this.retryAfter = retryAfter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // The permit was taken when the request was first dispatched.
+            return true;
+        }
+        if (!limiter.tryAcquire(priority(request))) {
+            throw new ServiceOverloadedException("Too many requests in progress, try again later", retryAfter);
+        }
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(START_ATTRIBUTE) instanceof Long start)) {
+            return;
+        }
+        request.removeAttribute(START_ATTRIBUTE);
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            limiter.release();
+        } else {
+            limiter.onCompleted(System.nanoTime() - start);
+        }
+    }
+
+    private Priority priority(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!HttpMethod.GET.matches(request.getMethod()) || !path.equals("/api/weather")) {
+            return Priority.NORMAL;
+        }
+        String latitude = request.getParameter("lat");
+        String longitude = request.getParameter("lon");
+        boolean cached;
+        if (latitude != null && longitude != null) {
+            try {
+                cached = weatherService.isServedFromCacheAt(Double.parseDouble(latitude), Double.parseDouble(longitude));
+            } catch (NumberFormatException e) {
+                // Rejected with a 400 before any lookup.
+                cached = true;
+            }
+        } else {
+            cached = weatherService.isServedFromCache(request.getParameter("city"), request.getParameter("country"));
+        }
+        return cached ? Priority.HIGH : Priority.NORMAL;
+    }
+}
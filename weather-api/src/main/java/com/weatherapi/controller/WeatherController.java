@@ -1,12 +1,42 @@
 package com.weatherapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapi.cache.SerializedReportCache;
+import com.weatherapi.model.BatchWeatherRequest;
+import com.weatherapi.model.BatchWeatherResponse;
+import com.weatherapi.model.HistoryPage;
+import com.weatherapi.model.Location;
 import com.weatherapi.model.WeatherReport;
+import com.weatherapi.service.WeatherHistoryService;
 import com.weatherapi.service.WeatherService;
+import com.weatherapi.service.WeatherSubscriptionService;
+import com.weatherapi.service.WeatherUpdateBroadcaster;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/weather")
@@ -15,13 +45,197 @@ import org.springframework.web.bind.annotation.*;
 public class WeatherController {
 
     private final WeatherService weatherService;
+    private final WeatherHistoryService historyService;
+    private final WeatherSubscriptionService subscriptionService;
+    private final SerializedReportCache serializedReports;
+    private final ObjectMapper objectMapper;
+
+    @Value("${weather.subscriptions.timeout:30m}")
+    private Duration subscriptionTimeout;
 
+    /**
+     * Returns the latest report with a strong ETag of its id and timestamp, its timestamp as
+     * Last-Modified, and a max-age of its remaining freshness. A request whose If-None-Match or
+     * If-Modified-Since matches gets a 304 without a body.
+     * <p>
+     * A 304 still counts against the caller's rate limit: answering it takes the same key check and
+     * report lookup as a 200, and well-behaved clients do not revalidate before max-age runs out.
+     * The response varies by API key, so shared caches never serve one key's responses to another.
+     * <p>
+     * The body is written as is from the bytes serialized when the report was first served, gzipped
+     * if the client accepts it and the report is large enough to benefit. It is JSON unless the Accept
+     * header names {@code application/cbor} and prefers it to {@code application/json}, in which case
+     * it is CBOR with the same fields. Each format and encoding has its own ETag.
+     */
     @GetMapping
-    public ResponseEntity<WeatherReport> getWeatherDescription(
+    public ResponseEntity<byte[]> getWeatherDescription(
+            @RequestParam @NotBlank(message = "City is required") String city,
+            @RequestParam @NotBlank(message = "Country is required") String country,
+            @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return reportResponse(weatherService.getWeatherReport(city, country, apiKey), accept, acceptEncoding);
+    }
+
+    /**
+     * Returns the report of the nearest location within {@code weather.geo.radius-km} of the
+     * coordinate, the same way and with the same caching headers as a lookup by city. Its body carries
+     * the location's own city, country and coordinates.
+     */
+    @GetMapping(params = {"lat", "lon"})
+    public ResponseEntity<byte[]> getWeatherAt(
+            @RequestParam("lat") @DecimalMin(value = "-90", message = "Latitude must be at least -90")
+            @DecimalMax(value = "90", message = "Latitude must be at most 90") double latitude,
+            @RequestParam("lon") @DecimalMin(value = "-180", message = "Longitude must be at least -180")
+            @DecimalMax(value = "180", message = "Longitude must be at most 180") double longitude,
+            @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return reportResponse(weatherService.getWeatherReportAt(latitude, longitude, apiKey), accept,
+                acceptEncoding);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchWeatherResponse> getWeatherDescriptions(
+            @RequestBody @Valid BatchWeatherRequest request,
+            @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey) {
+        return ResponseEntity.ok(new BatchWeatherResponse(weatherService.getWeatherReports(request.locations(), apiKey)));
+    }
+
+    /**
+     * Streams a {@code report} event whenever a newer report is stored for one of the
+     * {@code location=City,CC} parameters, starting with their current reports. The stream ends after
+     * {@code weather.subscriptions.timeout}; clients resubscribe, which counts against the rate limit
+     * like a batch request for the same locations.
+     */
+    @GetMapping(value = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(
+            @RequestParam("location") @NotEmpty(message = "At least one location is required")
+            @Size(max = 200, message = "At most 200 locations are allowed per subscription") List<String> locations,
+            @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey) {
+        SseEmitter emitter = new SseEmitter(subscriptionTimeout.toMillis());
+        WeatherUpdateBroadcaster.Subscription subscription = subscriptionService.subscribe(parseLocations(locations),
+                apiKey, new WeatherUpdateBroadcaster.Sink() {
+                    @Override
+                    public void send(WeatherReport report) throws IOException {
+                        emitter.send(SseEmitter.event()
+                                .name("report")
+                                .id(report.id() + "-" + report.timestamp())
+                                .data(report, MediaType.APPLICATION_JSON));
+                    }
+
+                    @Override
+                    public void close() {
+                        emitter.complete();
+                    }
+                });
+        emitter.onCompletion(subscription::close);
+        emitter.onError(e -> subscription.close());
+        return emitter;
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<HistoryPage> getWeatherHistory(
             @RequestParam @NotBlank(message = "City is required") String city,
             @RequestParam @NotBlank(message = "Country is required") String country,
+            @RequestParam Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit,
             @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey) {
-        WeatherReport report = weatherService.getWeatherReport(city, country, apiKey);
-        return ResponseEntity.ok(report);
+        return ResponseEntity.ok(historyService.getHistory(city, country, from, to != null ? to : Instant.now(),
+                cursor, limit, apiKey));
+    }
+
+    @GetMapping(value = "/history", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamWeatherHistory(
+            @RequestParam @NotBlank(message = "City is required") String city,
+            @RequestParam @NotBlank(message = "Country is required") String country,
+            @RequestParam Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestHeader("X-API-Key") @NotBlank(message = "API key is required") String apiKey) {
+        WeatherHistoryService.HistoryExport export = historyService.exportHistory(city, country, from,
+                to != null ? to : Instant.now(), apiKey);
+        StreamingResponseBody body = out -> {
+            try {
+                export.writeTo(report -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(report));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private ResponseEntity<byte[]> reportResponse(WeatherReport report, String accept, String acceptEncoding) {
+        Duration freshness = weatherService.remainingFreshness(report);
+        SerializedReportCache.Format format = acceptedFormat(accept);
+        SerializedReportCache.SerializedReport body = serializedReports.get(report, format);
+        boolean gzip = body.gzip() != null && acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(report.id() + "-" + report.timestamp() + (report.stale() ? "-stale" : "")
+                        + (format == SerializedReportCache.Format.CBOR ? "-cbor" : "") + (gzip ? "-gzip" : ""))
+                .lastModified(Instant.ofEpochSecond(report.timestamp()))
+                .cacheControl(freshness.isZero() ? CacheControl.noCache() : CacheControl.maxAge(freshness).cachePublic())
+                .varyBy("X-API-Key", HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(format.mediaType());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? body.gzip() : body.body());
+    }
+
+    // CBOR only for clients that name it and rate it above every type admitting JSON, wildcards
+    // included; anything else, including a malformed header, gets JSON as before.
+    private static SerializedReportCache.Format acceptedFormat(String accept) {
+        if (accept == null || !accept.contains("cbor")) {
+            return SerializedReportCache.Format.JSON;
+        }
+        double cbor = 0;
+        double json = 0;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                    cbor = Math.max(cbor, type.getQualityValue());
+                } else if (type.includes(MediaType.APPLICATION_JSON)) {
+                    json = Math.max(json, type.getQualityValue());
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return SerializedReportCache.Format.JSON;
+        }
+        return cbor > json ? SerializedReportCache.Format.CBOR : SerializedReportCache.Format.JSON;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            if (parameters[0].strip().equalsIgnoreCase("gzip")) {
+                return parameters.length == 1 || !parameters[1].strip().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static List<Location> parseLocations(List<String> locations) {
+        List<Location> parsed = new ArrayList<>(locations.size());
+        for (String location : locations) {
+            // City names may contain commas, country codes never do.
+            int comma = location.lastIndexOf(',');
+            if (comma <= 0 || comma == location.length() - 1) {
+                throw new IllegalArgumentException("Location must be City,CountryCode: " + location);
+            }
+            parsed.add(new Location(location.substring(0, comma), location.substring(comma + 1)));
+        }
+        return parsed;
     }
-}
\ No newline at end of file
+}
@@ -8,6 +8,7 @@ public enum ErrorCode {
     RATE_LIMIT_EXCEEDED("WA-002"),
     INVALID_INPUT("WA-003"),
     EXTERNAL_API_ERROR("WA-004"),
+    SERVICE_OVERLOADED("WA-005"),
     UNKNOWN_ERROR("WA-999");
 
     private final String code;
@@ -24,6 +24,16 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return createProblemDetail(ex.getErrorCode(), status, ex.getMessage());
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ProblemDetail> handleServiceOverloadedException(ServiceOverloadedException ex) {
+        ProblemDetail problemDetail = createProblemDetail(ex.getErrorCode(), HttpStatus.SERVICE_UNAVAILABLE,
+                ex.getMessage());
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(problemDetail);
+    }
+
     @ExceptionHandler({
             IllegalArgumentException.class,
             ConstraintViolationException.class,
@@ -59,7 +69,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
             case RATE_LIMIT_EXCEEDED -> HttpStatus.TOO_MANY_REQUESTS;
             case INVALID_API_KEY -> HttpStatus.UNAUTHORIZED;
             case INVALID_INPUT -> HttpStatus.BAD_REQUEST;
-            case EXTERNAL_API_ERROR -> HttpStatus.SERVICE_UNAVAILABLE;
+            case EXTERNAL_API_ERROR, SERVICE_OVERLOADED -> HttpStatus.SERVICE_UNAVAILABLE;
             default -> HttpStatus.INTERNAL_SERVER_ERROR;
         };
     }
@@ -0,0 +1,19 @@
+package com.weatherapi.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is turned away because the service has as many requests in flight as it
+ * currently admits; the client may retry after {@link #getRetryAfter()}.
+ */
+@Getter
+public class ServiceOverloadedException extends WeatherApiException {
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String message, Duration retryAfter) {
+        super(ErrorCode.SERVICE_OVERLOADED, message);
+        this.retryAfter = retryAfter;
+    }
+}
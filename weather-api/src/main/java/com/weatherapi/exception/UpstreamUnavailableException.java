@@ -0,0 +1,11 @@
+package com.weatherapi.exception;
+
+/**
+ * Thrown when a call to the weather provider is not attempted because the circuit breaker is open
+ * or the bulkhead is full.
+ */
+public class UpstreamUnavailableException extends WeatherApiException {
+    public UpstreamUnavailableException(String message) {
+        super(ErrorCode.EXTERNAL_API_ERROR, message);
+    }
+}
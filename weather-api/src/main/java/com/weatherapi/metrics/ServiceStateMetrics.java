@@ -0,0 +1,184 @@
+package com.weatherapi.metrics;
+
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.client.CircuitBreaker;
+import com.weatherapi.client.OpenWeatherMapClient;
+import com.weatherapi.client.UpstreamKeyPool;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weatherapi.service.ReportPrefetcher;
+import com.weatherapi.service.ReportRefreshExecutor;
+import com.weatherapi.service.WeatherReportWriter;
+import com.weatherapi.service.WeatherService;
+import com.weatherapi.service.WeatherUpdateBroadcaster;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Gauges and counters read from the service's components when scraped rather than updated on the
+ * request path: cache occupancy and effectiveness, saturation of the refresh executor, the
+ * write-behind queue and the upstream bulkhead, quota left on the upstream keys, prefetching, the
+ * coordinate index, subscription fan-out, the concurrency limit, and the circuit breaker's state.
+ * Virtual threads are counted where the service starts them without a bound: batch fetches and
+ * subscription pushes. The actuator's JVM thread metrics only see platform threads.
+ */
+@Component
+public class ServiceStateMetrics implements MeterBinder {
+
+    private final WeatherReportCache cache;
+    private final ReportRefreshExecutor refreshExecutor;
+    private final WeatherReportWriter reportWriter;
+    private final CircuitBreaker circuitBreaker;
+    private final OpenWeatherMapClient weatherClient;
+    private final UpstreamKeyPool keyPool;
+    private final WeatherService weatherService;
+    private final WeatherUpdateBroadcaster updateBroadcaster;
+    private final ReportPrefetcher prefetcher;
+    private final LocationGridIndex locationIndex;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    public ServiceStateMetrics(WeatherReportCache cache, ReportRefreshExecutor refreshExecutor,
+                               WeatherReportWriter reportWriter, CircuitBreaker circuitBreaker,
+                               OpenWeatherMapClient weatherClient, UpstreamKeyPool keyPool,
+                               WeatherService weatherService, WeatherUpdateBroadcaster updateBroadcaster,
+                               ReportPrefetcher prefetcher, LocationGridIndex locationIndex,
+                               AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.cache = cache;
+        this.refreshExecutor = refreshExecutor;
+        this.reportWriter = reportWriter;
+        this.circuitBreaker = circuitBreaker;
+        this.weatherClient = weatherClient;
+        this.keyPool = keyPool;
+        this.weatherService = weatherService;
+        this.updateBroadcaster = updateBroadcaster;
+        this.prefetcher = prefetcher;
+        this.locationIndex = locationIndex;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("weather.cache.size", cache, c -> c.stats().size())
+                .description("Reports held in the in-memory cache")
+                .register(registry);
+        FunctionCounter.builder("weather.cache.requests", cache, c -> c.stats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("weather.cache.requests", cache, c -> c.stats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("weather.cache.evictions", cache, c -> c.stats().evictionCount())
+                .register(registry);
+
+        Gauge.builder("weather.refresh.active", refreshExecutor, ReportRefreshExecutor::activeCount)
+                .description("Background refreshes running")
+                .register(registry);
+        Gauge.builder("weather.refresh.queued", refreshExecutor, ReportRefreshExecutor::queuedCount)
+                .description("Background refreshes waiting for a thread")
+                .register(registry);
+        FunctionCounter.builder("weather.refresh.dropped", refreshExecutor, ReportRefreshExecutor::droppedCount)
+                .description("Background refreshes dropped because the queue was full")
+                .register(registry);
+
+        Gauge.builder("weather.write_behind.pending", reportWriter, WeatherReportWriter::pendingCount)
+                .description("Reports queued for insertion")
+                .register(registry);
+        FunctionCounter.builder("weather.write_behind.caller_inserts", reportWriter,
+                        WeatherReportWriter::callerInsertCount)
+                .description("Reports inserted on the caller thread because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("weather.write_behind.dropped", reportWriter, WeatherReportWriter::droppedCount)
+                .description("Reports that could not be inserted and are missing from the database")
+                .register(registry);
+
+        Gauge.builder("weather.upstream.in_flight", weatherClient, OpenWeatherMapClient::inFlightCalls)
+                .description("Calls to the weather provider holding a bulkhead permit")
+                .register(registry);
+        // Keys are tagged by position in the configuration; the keys themselves are secrets.
+        for (int i = 0; i < keyPool.size(); i++) {
+            int index = i;
+            Gauge.builder("weather.upstream.quota.remaining", keyPool, pool -> pool.remainingThisMinute(index))
+                    .description("Calls left on an upstream key in the current window")
+                    .tag("key", String.valueOf(index))
+                    .tag("window", "minute")
+                    .register(registry);
+            Gauge.builder("weather.upstream.quota.remaining", keyPool, pool -> pool.remainingToday(index))
+                    .description("Calls left on an upstream key in the current window")
+                    .tag("key", String.valueOf(index))
+                    .tag("window", "day")
+                    .register(registry);
+        }
+        Gauge.builder("weather.fetches.in_flight", weatherService, WeatherService::inFlightFetchCount)
+                .description("Distinct locations being fetched from the weather provider")
+                .register(registry);
+        Gauge.builder("weather.virtual_threads.active", weatherService, WeatherService::batchFetchThreadCount)
+                .description("Virtual threads running, by the work they were started for")
+                .tag("pool", "batch_fetch")
+                .register(registry);
+        Gauge.builder("weather.virtual_threads.active", updateBroadcaster, WeatherUpdateBroadcaster::sendingThreadCount)
+                .description("Virtual threads running, by the work they were started for")
+                .tag("pool", "report_push")
+                .register(registry);
+
+        Gauge.builder("weather.subscriptions.active", updateBroadcaster, WeatherUpdateBroadcaster::activeCount)
+                .description("Open report subscriptions")
+                .register(registry);
+        FunctionCounter.builder("weather.subscriptions.pushed", updateBroadcaster, WeatherUpdateBroadcaster::pushedCount)
+                .description("Reports pushed to subscribers")
+                .register(registry);
+        FunctionCounter.builder("weather.subscriptions.conflated", updateBroadcaster,
+                        WeatherUpdateBroadcaster::conflatedCount)
+                .description("Reports superseded by a newer one before a slow subscriber received them")
+                .register(registry);
+
+        FunctionCounter.builder("weather.prefetch.refreshes", prefetcher, ReportPrefetcher::groupRefreshCount)
+                .description("Popular locations refreshed before going stale")
+                .tag("via", "group")
+                .register(registry);
+        FunctionCounter.builder("weather.prefetch.refreshes", prefetcher, ReportPrefetcher::singleRefreshCount)
+                .description("Popular locations refreshed before going stale")
+                .tag("via", "single")
+                .register(registry);
+        FunctionCounter.builder("weather.prefetch.group_queries", prefetcher, ReportPrefetcher::groupCallCount)
+                .description("Group queries attempted, including failed and shed ones")
+                .register(registry);
+
+        Gauge.builder("weather.geo.indexed_points", locationIndex, LocationGridIndex::size)
+                .description("Points in the coordinate index, at locations and at coordinates resolved to them")
+                .register(registry);
+
+        Gauge.builder("weather.concurrency.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::limit)
+                .description("Concurrent requests currently admitted")
+                .register(registry);
+        Gauge.builder("weather.concurrency.in_flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Requests holding a concurrency permit")
+                .register(registry);
+        for (AdaptiveConcurrencyLimiter.Priority priority : AdaptiveConcurrencyLimiter.Priority.values()) {
+            FunctionCounter.builder("weather.concurrency.rejections", concurrencyLimiter,
+                            limiter -> limiter.rejectedCount(priority))
+                    .description("Requests turned away over the concurrency limit")
+                    .tag("priority", WeatherMetrics.tagValue(priority))
+                    .register(registry);
+        }
+
+        Map<CircuitBreaker.State, Counter> transitions = new EnumMap<>(CircuitBreaker.State.class);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("weather.upstream.circuit_breaker.state", circuitBreaker, b -> b.state() == state ? 1 : 0)
+                    .description("1 for the circuit breaker's current state, 0 otherwise")
+                    .tag("state", WeatherMetrics.tagValue(state))
+                    .register(registry);
+            transitions.put(state, Counter.builder("weather.upstream.circuit_breaker.transitions")
+                    .description("Circuit breaker transitions by target state")
+                    .tag("to", WeatherMetrics.tagValue(state))
+                    .register(registry));
+        }
+        circuitBreaker.onStateTransition(transition -> transitions.get(transition.to()).increment());
+    }
+}
@@ -0,0 +1,135 @@
+package com.weatherapi.metrics;
+
+import com.weatherapi.model.WeatherReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters recorded on the request path. Every tag combination is registered up front, so recording
+ * is an enum-indexed lookup plus the meter update; nothing allocates tags or looks meters up by
+ * name per request.
+ */
+@Component
+public class WeatherMetrics {
+
+    public enum Endpoint {
+        SINGLE,
+        BATCH,
+        COORDINATES
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        REJECTED,
+        ERROR
+    }
+
+    /**
+     * Where a served report came from; {@code STALE} is a stored report served while the provider is
+     * unavailable.
+     */
+    public enum Source {
+        CACHE,
+        DATABASE,
+        UPSTREAM,
+        STALE
+    }
+
+    public enum UpstreamOutcome {
+        SUCCESS,
+        CLIENT_ERROR,
+        SERVER_ERROR,
+        TIMEOUT,
+        FAILURE
+    }
+
+    public enum UpstreamRejection {
+        CIRCUIT_OPEN,
+        BULKHEAD_FULL,
+        QUOTA_EXHAUSTED
+    }
+
+    private final Map<Endpoint, Map<Outcome, Timer>> requests = new EnumMap<>(Endpoint.class);
+    private final Map<Source, Counter> lookups = new EnumMap<>(Source.class);
+    private final DistributionSummary reportAge;
+    private final Map<UpstreamOutcome, Timer> upstreamCalls = new EnumMap<>(UpstreamOutcome.class);
+    private final Map<UpstreamRejection, Counter> upstreamRejections = new EnumMap<>(UpstreamRejection.class);
+
+    public WeatherMetrics(MeterRegistry registry) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Map<Outcome, Timer> timers = new EnumMap<>(Outcome.class);
+            for (Outcome outcome : Outcome.values()) {
+                timers.put(outcome, Timer.builder("weather.requests")
+                        .description("Weather report requests handled by the service")
+                        .tag("endpoint", tagValue(endpoint))
+                        .tag("outcome", tagValue(outcome))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(registry));
+            }
+            requests.put(endpoint, timers);
+        }
+        for (Source source : Source.values()) {
+            lookups.put(source, Counter.builder("weather.report.lookups")
+                    .description("Served reports by where they were found")
+                    .tag("source", tagValue(source))
+                    .register(registry));
+        }
+        this.reportAge = DistributionSummary.builder("weather.report.age")
+                .description("Age of served reports")
+                .baseUnit("seconds")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue((double) Duration.ofDays(1).toSeconds())
+                .register(registry);
+        for (UpstreamOutcome outcome : UpstreamOutcome.values()) {
+            upstreamCalls.put(outcome, Timer.builder("weather.upstream.calls")
+                    .description("Calls made to the weather provider")
+                    .tag("outcome", tagValue(outcome))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry));
+        }
+        for (UpstreamRejection reason : UpstreamRejection.values()) {
+            upstreamRejections.put(reason, Counter.builder("weather.upstream.rejections")
+                    .description("Calls to the weather provider shed before being made")
+                    .tag("reason", tagValue(reason))
+                    .register(registry));
+        }
+    }
+
+    public void recordRequest(Endpoint endpoint, Outcome outcome, long startNanos) {
+        requests.get(endpoint).get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a served report under its source and records its age.
+     */
+    public void recordServed(Source source, WeatherReport report) {
+        lookups.get(source).increment();
+        reportAge.record(Math.max(0, System.currentTimeMillis() / 1000 - report.timestamp()));
+    }
+
+    public void recordUpstreamCall(UpstreamOutcome outcome, long durationNanos) {
+        upstreamCalls.get(outcome).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUpstreamRejection(UpstreamRejection reason) {
+        upstreamRejections.get(reason).increment();
+    }
+
+    static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,13 @@
+package com.weatherapi.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchWeatherRequest(
+        @NotEmpty(message = "At least one location is required")
+        @Size(max = 200, message = "At most 200 locations are allowed per batch")
+        List<@Valid Location> locations
+) {}
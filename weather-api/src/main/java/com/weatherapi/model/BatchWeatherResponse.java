@@ -0,0 +1,5 @@
+package com.weatherapi.model;
+
+import java.util.List;
+
+public record BatchWeatherResponse(List<BatchWeatherResult> results) {}
@@ -0,0 +1,21 @@
+package com.weatherapi.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.weatherapi.exception.ErrorCode;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchWeatherResult(
+        String city,
+        String country,
+        WeatherReport report,
+        String errorCode,
+        String error
+) {
+    public static BatchWeatherResult success(Location location, WeatherReport report) {
+        return new BatchWeatherResult(location.city(), location.country(), report, null, null);
+    }
+
+    public static BatchWeatherResult failure(Location location, ErrorCode errorCode, String error) {
+        return new BatchWeatherResult(location.city(), location.country(), null, errorCode.getCode(), error);
+    }
+}
@@ -0,0 +1,32 @@
+package com.weatherapi.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in a location's history: the page after this cursor starts with the report that
+ * comes right after ({@code timestamp}, {@code id}) in newest-first order. Sent to clients as an
+ * opaque URL-safe token.
+ */
+public record HistoryCursor(long timestamp, long id) {
+
+    public static HistoryCursor after(WeatherReport report) {
+        return new HistoryCursor(report.timestamp(), report.id());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((timestamp + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static HistoryCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = decoded.indexOf(':');
+            return new HistoryCursor(Long.parseLong(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
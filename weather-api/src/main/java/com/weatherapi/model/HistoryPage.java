@@ -0,0 +1,11 @@
+package com.weatherapi.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HistoryPage(
+        List<WeatherReport> reports,
+        String nextCursor
+) {}
@@ -0,0 +1,8 @@
+package com.weatherapi.model;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record Location(
+        @NotBlank(message = "City is required") String city,
+        @NotBlank(message = "Country is required") String country
+) {}
@@ -1,16 +1,81 @@
 package com.weatherapi.model;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.Accessors;
 
+/**
+ * A stored weather observation. {@code stale} is never persisted; it marks a report served past its
+ * freshness window because the weather provider is unavailable. {@code latitude} and {@code longitude}
+ * are the provider's coordinates of the location, {@code null} for reports stored before they were kept.
+ * <p>
+ * Ids are assigned by the application from {@code weather_report_seq} before the report is written,
+ * so inserts can be batched; the sequence is declared here so that Hibernate creates it with the
+ * schema, and advances in blocks of {@value #ID_BLOCK_SIZE}. Reports are immutable once created. The location index serves the
+ * latest-report lookup and history pages without scanning a location's history; the time index
+ * serves retention.
+ */
 @Entity
-public record WeatherReport(
-        @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
-        Long id,
-        String city,
-        String country,
-        String description,
-        Long timestamp
-) {}
\ No newline at end of file
+@Table(name = "weather_report", indexes = {
+        @Index(name = "idx_weather_report_location_time", columnList = "city, country, timestamp DESC, id DESC"),
+        @Index(name = "idx_weather_report_time", columnList = "timestamp")
+})
+@Getter
+@Accessors(fluent = true)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@EqualsAndHashCode
+@ToString
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public class WeatherReport {
+
+    public static final int ID_BLOCK_SIZE = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "weather_report_seq")
+    @SequenceGenerator(name = "weather_report_seq", sequenceName = "weather_report_seq", allocationSize = ID_BLOCK_SIZE)
+    private Long id;
+    private String city;
+    private String country;
+    private String description;
+    private Long timestamp;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double latitude;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double longitude;
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean stale;
+
+    public WeatherReport(Long id, String city, String country, String description, Long timestamp) {
+        this(id, city, country, description, timestamp, null, null, false);
+    }
+
+    public WeatherReport(Long id, String city, String country, String description, Long timestamp, Double latitude,
+                         Double longitude) {
+        this(id, city, country, description, timestamp, latitude, longitude, false);
+    }
+
+    public WeatherReport withId(Long id) {
+        return new WeatherReport(id, city, country, description, timestamp, latitude, longitude, stale);
+    }
+
+    public WeatherReport asStale() {
+        return new WeatherReport(id, city, country, description, timestamp, latitude, longitude, true);
+    }
+}
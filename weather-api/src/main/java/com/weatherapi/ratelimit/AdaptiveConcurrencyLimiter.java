@@ -0,0 +1,156 @@
+package com.weatherapi.ratelimit;
+
+import com.weatherapi.config.ConcurrencyLimitProperties;
+
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limit on concurrent requests that adapts to their latency, so that an overloaded service turns
+ * excess requests away at once instead of slowing down for everyone.
+ * <p>
+ * Completed requests are sampled in windows of at least {@code window} and
+ * {@value #MIN_WINDOW_SAMPLES} requests. Each window's average latency is compared with a long-term
+ * average over about {@value #LONG_WINDOWS} windows: while it stays within {@code tolerance} times
+ * the long-term average, the limit grows by its square root, leaving room for a small queue; beyond
+ * that, it shrinks in proportion, by at most half. Each new estimate is blended into the limit with
+ * weight {@code smoothing}, and the limit stays within {@code [minLimit, maxLimit]}. Latency only says
+ * something about the limit when requests press against it, so windows in which fewer than half of
+ * the limit were ever in flight leave it unchanged. Once latency falls well below the long-term
+ * average, e.g. after an incident, the average is pulled down faster, so that it does not excuse
+ * the next slowdown.
+ * <p>
+ * {@link Priority#HIGH} requests may use the whole limit, {@link Priority#NORMAL} ones all but
+ * {@code highPriorityReserve} of it, so high-priority requests are still admitted once normal ones are
+ * being turned away.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        HIGH,
+        NORMAL
+    }
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int LONG_WINDOWS = 60;
+
+    private final ConcurrencyLimitProperties properties;
+    private final Clock clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, LongAdder> rejected = new EnumMap<>(Priority.class);
+    private volatile int limit;
+    private volatile int normalLimit;
+
+    // Guarded by this.
+    private double estimatedLimit;
+    private double longTermLatency;
+    private long windowStartMillis;
+    private long windowLatencySum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties, Clock clock) {
+        if (properties.minLimit() <= 0 || properties.initialLimit() < properties.minLimit()
+                || properties.maxLimit() < properties.initialLimit()) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 0 < min <= initial <= max");
+        }
+        if (properties.tolerance() < 1 || !(properties.smoothing() > 0 && properties.smoothing() <= 1)
+                || !(properties.highPriorityReserve() >= 0 && properties.highPriorityReserve() < 1)) {
+            throw new IllegalArgumentException(
+                    "Tolerance must be at least 1, smoothing within (0, 1] and the reserve within [0, 1)");
+        }
+        this.properties = properties;
+        this.clock = clock;
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, new LongAdder());
+        }
+        setLimit(properties.initialLimit());
+    }
+
+    /**
+     * Takes a permit if the request's priority leaves room under the limit, or counts a rejection. A
+     * caller that got one must hand it back through {@link #onCompleted} or {@link #release}.
+     */
+    public boolean tryAcquire(Priority priority) {
+        int cap = priority == Priority.HIGH ? limit : normalLimit;
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= cap) {
+                rejected.get(priority).increment();
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Hands back the permit of a request that took {@code latencyNanos}, and samples its latency.
+     */
+    public void onCompleted(long latencyNanos) {
+        sample(latencyNanos, inFlight.getAndDecrement());
+    }
+
+    /**
+     * Hands back a permit without sampling, for requests whose duration says nothing about load,
+     * such as streamed responses.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejectedCount(Priority priority) {
+        return rejected.get(priority).sum();
+    }
+
+    private synchronized void sample(long latencyNanos, int inFlightBefore) {
+        long now = clock.millis();
+        if (windowSamples == 0) {
+            windowStartMillis = now;
+        }
+        windowLatencySum += latencyNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStartMillis < properties.window().toMillis()) {
+            return;
+        }
+        update(Math.max(1.0, (double) windowLatencySum / windowSamples), windowMaxInFlight);
+        windowLatencySum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+    }
+
+    private void update(double latency, int maxInFlight) {
+        if (longTermLatency == 0) {
+            longTermLatency = latency;
+        } else {
+            longTermLatency += (latency - longTermLatency) / LONG_WINDOWS;
+        }
+        if (longTermLatency > 2 * latency) {
+            longTermLatency *= 0.95;
+        }
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, properties.tolerance() * longTermLatency / latency));
+        double estimate = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        setLimit(estimatedLimit * (1 - properties.smoothing()) + estimate * properties.smoothing());
+    }
+
+    private void setLimit(double newLimit) {
+        estimatedLimit = Math.max(properties.minLimit(), Math.min(properties.maxLimit(), newLimit));
+        limit = (int) estimatedLimit;
+        normalLimit = Math.max(1, (int) (estimatedLimit * (1 - properties.highPriorityReserve())));
+    }
+}
@@ -0,0 +1,37 @@
+package com.weatherapi.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-local {@link RateLimitStore}. Only shares budgets between limiters of the same JVM, which
+ * makes it a stand-in for a shared store in tests and single-instance deployments.
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private record Usage(long window, long consumed) {}
+
+    private final Map<String, Usage> usage = new ConcurrentHashMap<>();
+
+    @Override
+    public long reserve(String apiKey, long window, long requested, long limit) {
+        long[] granted = new long[1];
+        usage.compute(apiKey, (key, current) -> {
+            if (current != null && current.window() > window) {
+                // Late reservation for a window that has already ended.
+                return current;
+            }
+            long consumed = current != null && current.window() == window ? current.consumed() : 0;
+            granted[0] = Math.max(0, Math.min(requested, limit - consumed));
+            return new Usage(window, consumed + granted[0]);
+        });
+        return granted[0];
+    }
+
+    @Override
+    public void release(String apiKey, long window, long permits) {
+        usage.computeIfPresent(apiKey, (key, current) -> current.window() == window
+                ? new Usage(window, Math.max(0, current.consumed() - permits))
+                : current);
+    }
+}
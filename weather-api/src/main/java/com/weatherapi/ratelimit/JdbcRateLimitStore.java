@@ -0,0 +1,69 @@
+package com.weatherapi.ratelimit;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * {@link RateLimitStore} backed by a table on the application datasource, so every instance pointed
+ * at the same database shares the budget. Reservations lock the key's row for the current window.
+ * The {@code rate_limit_usage} table is created by {@code schema.sql}.
+ */
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcRateLimitStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public long reserve(String apiKey, long window, long requested, long limit) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Long granted = transactionTemplate.execute(status -> reserveInTransaction(apiKey, window, requested, limit));
+                return granted == null ? 0 : granted;
+            } catch (DuplicateKeyException e) {
+                // Another instance opened the window concurrently; its row is there now.
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void release(String apiKey, long window, long permits) {
+        jdbcTemplate.update("UPDATE rate_limit_usage SET consumed = GREATEST(consumed - ?, 0) WHERE api_key = ? AND window_index = ?",
+                permits, apiKey, window);
+    }
+
+    private long reserveInTransaction(String apiKey, long window, long requested, long limit) {
+        List<Long> consumed = jdbcTemplate.queryForList(
+                "SELECT consumed FROM rate_limit_usage WHERE api_key = ? AND window_index = ? FOR UPDATE",
+                Long.class, apiKey, window);
+
+        if (consumed.isEmpty()) {
+            long granted = Math.min(requested, limit);
+            jdbcTemplate.update("INSERT INTO rate_limit_usage (api_key, window_index, consumed) VALUES (?, ?, ?)",
+                    apiKey, window, granted);
+            jdbcTemplate.update("DELETE FROM rate_limit_usage WHERE api_key = ? AND window_index < ?",
+                    apiKey, window);
+            return granted;
+        }
+
+        long granted = Math.max(0, Math.min(requested, limit - consumed.get(0)));
+        if (granted > 0) {
+            jdbcTemplate.update("UPDATE rate_limit_usage SET consumed = consumed + ? WHERE api_key = ? AND window_index = ?",
+                    granted, apiKey, window);
+        }
+        return granted;
+    }
+}
@@ -0,0 +1,191 @@
+package com.weatherapi.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-window limiter whose budget lives in a {@link RateLimitStore} shared between instances.
+ * <p>
+ * Permits are reserved from the store in leases of {@code leaseSize} and handed out locally with a
+ * CAS on a single {@code long} packing the lease window (high 32 bits, modulo 2^32) and the permits
+ * left in it (low 32 bits). When a lease runs low the next one is reserved in the background, so
+ * requests only wait on the store when a lease is used up faster than it can be refilled.
+ * <p>
+ * Permits left in a lease go back to the store when its window ends, in case a peer whose clock
+ * lags is still in it, and when no permit was taken for {@code idleMillis}, so that a quiet instance
+ * does not sit on budget its peers need. Once the store has nothing left for this instance, it is
+ * asked again only after {@code idleMillis}, by when peers may have returned theirs. The limit is
+ * never exceeded across the cluster; permits still held in leases when the window ends are the
+ * budget it may fall short of.
+ */
+@Slf4j
+public class LeasedRateLimiter implements RateLimiter {
+
+    private static final int REMAINING_BITS = 32;
+    private static final long REMAINING_MASK = (1L << REMAINING_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << 32) - 1;
+
+    private final String apiKey;
+    private final RateLimitStore store;
+    private final int limit;
+    private final long windowMillis;
+    private final int leaseSize;
+    private final long idleMillis;
+    private final Executor refillExecutor;
+
+    private final AtomicLong lease = new AtomicLong();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final ReentrantLock reserveLock = new ReentrantLock();
+    private volatile long exhaustedUntilMillis;
+    private volatile long lastUsedMillis;
+
+    public LeasedRateLimiter(String apiKey, RateLimitStore store, int limit, long windowMillis, int leaseSize,
+                             long idleMillis, Executor refillExecutor) {
+        if (limit <= 0 || windowMillis <= 0 || leaseSize <= 0 || idleMillis <= 0) {
+            throw new IllegalArgumentException("Rate limit, window, lease size and idle timeout must be positive");
+        }
+        this.apiKey = apiKey;
+        this.store = store;
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.leaseSize = Math.min(leaseSize, limit);
+        this.idleMillis = idleMillis;
+        this.refillExecutor = refillExecutor;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long nowMillis) {
+        if (permits > limit) {
+            return false;
+        }
+        long window = nowMillis / windowMillis;
+        if (tryTakeFromLease(window, permits, nowMillis)) {
+            return true;
+        }
+        if (nowMillis < exhaustedUntilMillis) {
+            return false;
+        }
+
+        reserveLock.lock();
+        try {
+            // Another caller or the background refill may have renewed the lease while we waited.
+            if (tryTakeFromLease(window, permits, nowMillis)) {
+                return true;
+            }
+            if (nowMillis < exhaustedUntilMillis) {
+                return false;
+            }
+            reserve(window, Math.max(leaseSize, permits), nowMillis);
+            return tryTakeFromLease(window, permits, nowMillis);
+        } finally {
+            reserveLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the permits left in the lease to the store if none has been taken for the idle timeout.
+     */
+    public void releaseIfIdle(long nowMillis) {
+        if (nowMillis - lastUsedMillis < idleMillis) {
+            return;
+        }
+        long windowTag = (nowMillis / windowMillis) & WINDOW_MASK;
+        while (true) {
+            long current = lease.get();
+            long remaining = current & REMAINING_MASK;
+            if (remaining == 0) {
+                return;
+            }
+            if (lease.compareAndSet(current, current & ~REMAINING_MASK)) {
+                long windowsBehind = (windowTag - (current >>> REMAINING_BITS)) & WINDOW_MASK;
+                giveBack(nowMillis / windowMillis - windowsBehind, remaining);
+                return;
+            }
+        }
+    }
+
+    private boolean tryTakeFromLease(long window, int permits, long nowMillis) {
+        long windowTag = window & WINDOW_MASK;
+        while (true) {
+            long current = lease.get();
+            long remaining = current & REMAINING_MASK;
+            if (current >>> REMAINING_BITS != windowTag || remaining < permits) {
+                return false;
+            }
+            if (lease.compareAndSet(current, current - permits)) {
+                lastUsedMillis = nowMillis;
+                if (remaining - permits <= leaseSize / 2) {
+                    refillInBackground(window, nowMillis);
+                }
+                return true;
+            }
+        }
+    }
+
+    private void refillInBackground(long window, long nowMillis) {
+        if (nowMillis < exhaustedUntilMillis || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refillExecutor.execute(() -> {
+            reserveLock.lock();
+            try {
+                reserve(window, leaseSize, nowMillis);
+            } catch (RuntimeException e) {
+                log.warn("Could not renew rate limit lease for {}: {}", apiKey, e.getMessage());
+            } finally {
+                reserveLock.unlock();
+                refilling.set(false);
+            }
+        });
+    }
+
+    private void reserve(long window, long requested, long nowMillis) {
+        giveBackEndedLease(window);
+        long granted = store.reserve(apiKey, window, requested, limit);
+        if (granted < requested) {
+            exhaustedUntilMillis = Math.min((window + 1) * windowMillis, nowMillis + idleMillis);
+        }
+        long windowTag = window & WINDOW_MASK;
+        while (true) {
+            long current = lease.get();
+            int windowsAhead = (int) (windowTag - (current >>> REMAINING_BITS));
+            if (current != 0 && windowsAhead < 0) {
+                // The lease has already moved on to a later window; permits granted for this one are void.
+                return;
+            }
+            long remaining = windowsAhead == 0 ? current & REMAINING_MASK : 0;
+            if (lease.compareAndSet(current, windowTag << REMAINING_BITS | (remaining + granted))) {
+                return;
+            }
+        }
+    }
+
+    // Before the first reservation for a window, since the store keeps only the latest window of a key.
+    private void giveBackEndedLease(long window) {
+        long windowTag = window & WINDOW_MASK;
+        while (true) {
+            long current = lease.get();
+            long remaining = current & REMAINING_MASK;
+            int windowsAhead = (int) (windowTag - (current >>> REMAINING_BITS));
+            if (remaining == 0 || windowsAhead <= 0) {
+                return;
+            }
+            if (lease.compareAndSet(current, current & ~REMAINING_MASK)) {
+                giveBack(window - windowsAhead, remaining);
+                return;
+            }
+        }
+    }
+
+    private void giveBack(long window, long permits) {
+        try {
+            store.release(apiKey, window, permits);
+        } catch (RuntimeException e) {
+            log.warn("Could not return {} rate limit permits for {}: {}", permits, apiKey, e.getMessage());
+        }
+    }
+}
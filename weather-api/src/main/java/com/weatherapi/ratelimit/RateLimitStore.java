@@ -0,0 +1,22 @@
+package com.weatherapi.ratelimit;
+
+/**
+ * Budget shared by every instance of the service. Each key gets {@code limit} permits per fixed
+ * window; instances reserve chunks of it and hand them out locally (see {@link LeasedRateLimiter}),
+ * so the store is only consulted once per chunk rather than once per request.
+ */
+public interface RateLimitStore {
+
+    /**
+     * Reserves up to {@code requested} permits from the key's budget for {@code window}.
+     *
+     * @return the number of permits granted, between 0 and {@code requested}
+     */
+    long reserve(String apiKey, long window, long requested, long limit);
+
+    /**
+     * Returns {@code permits} reserved for {@code window} but not used to the key's budget. Has no
+     * effect once the store has moved on to a later window.
+     */
+    void release(String apiKey, long window, long permits);
+}
@@ -0,0 +1,26 @@
+package com.weatherapi.ratelimit;
+
+/**
+ * Admission control for a single API key. Implementations are lock-free and must not allocate
+ * on {@link #tryAcquire}, as it runs on every request.
+ */
+public interface RateLimiter {
+
+    /**
+     * Atomically takes {@code permits} if all of them fit within the limit at {@code nowMillis};
+     * takes nothing otherwise.
+     */
+    boolean tryAcquire(int permits, long nowMillis);
+
+    enum Algorithm {
+        TOKEN_BUCKET,
+        SLIDING_WINDOW
+    }
+
+    static RateLimiter create(Algorithm algorithm, int limit, long windowMillis) {
+        return switch (algorithm) {
+            case TOKEN_BUCKET -> new TokenBucketRateLimiter(limit, windowMillis);
+            case SLIDING_WINDOW -> new SlidingWindowRateLimiter(limit, windowMillis);
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.weatherapi.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding window counter: the count of the previous fixed window, weighted by how much of it still
+ * overlaps the sliding window, plus the count of the current window must stay within the limit.
+ * <p>
+ * The window index and both counters are packed into one {@code long} so a single CAS moves the
+ * window and takes the permits together:
+ * <pre>
+ *  63          40 39          20 19           0
+ * +--------------+--------------+--------------+
+ * | window index | previous     | current      |
+ * +--------------+--------------+--------------+
+ * </pre>
+ * The window index is kept modulo 2^24; a key idle for exactly a multiple of 2^24 windows would see
+ * its old counts once, which only under-admits.
+ * <p>
+ * A caller whose clock reading is behind the stored window, because another caller moved the window
+ * on between its reading and its CAS, is checked against the stored window as if it had just begun,
+ * and never moves the window back. Up to {@value #MAX_CALLER_LAG_WINDOWS} windows count as behind,
+ * so a key idle for just under a multiple of 2^24 windows may also keep its old counts for that
+ * long, which again only under-admits.
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+
+    public static final int MAX_LIMIT = (1 << 20) - 1;
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_MASK = (1L << 24) - 1;
+    private static final long MAX_CALLER_LAG_WINDOWS = 1 << 12;
+
+    private final int limit;
+    private final long windowMillis;
+    private final AtomicLong state = new AtomicLong();
+
+    public SlidingWindowRateLimiter(int limit, long windowMillis) {
+        if (limit <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("Rate limit and window must be positive");
+        }
+        if (limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Sliding window rate limit must not exceed " + MAX_LIMIT);
+        }
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long nowMillis) {
+        if (permits > limit) {
+            return false;
+        }
+        long window = (nowMillis / windowMillis) & WINDOW_MASK;
+        long remainingInWindow = windowMillis - nowMillis % windowMillis;
+        while (true) {
+            long current = state.get();
+            long storedWindow = current >>> (2 * COUNT_BITS);
+            long elapsedWindows = (window - storedWindow) & WINDOW_MASK;
+            long newWindow = window;
+            long remaining = remainingInWindow;
+            long previousCount;
+            long currentCount;
+            if (elapsedWindows > WINDOW_MASK - MAX_CALLER_LAG_WINDOWS) {
+                // The stored window is ahead of this caller's clock reading.
+                newWindow = storedWindow;
+                remaining = windowMillis;
+                previousCount = (current >>> COUNT_BITS) & COUNT_MASK;
+                currentCount = current & COUNT_MASK;
+            } else if (elapsedWindows == 0) {
+                previousCount = (current >>> COUNT_BITS) & COUNT_MASK;
+                currentCount = current & COUNT_MASK;
+            } else if (elapsedWindows == 1) {
+                previousCount = current & COUNT_MASK;
+                currentCount = 0;
+            } else {
+                previousCount = 0;
+                currentCount = 0;
+            }
+
+            // previous * (remaining / window) + current + permits <= limit, kept in integer arithmetic
+            if (previousCount * remaining + (currentCount + permits) * windowMillis > limit * windowMillis) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(newWindow, previousCount, currentCount + permits))) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(long window, long previousCount, long currentCount) {
+        return (window << (2 * COUNT_BITS)) | (previousCount << COUNT_BITS) | currentCount;
+    }
+}
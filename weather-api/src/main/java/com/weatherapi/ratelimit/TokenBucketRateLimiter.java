@@ -0,0 +1,45 @@
+package com.weatherapi.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket holding up to {@code limit} tokens and refilling at {@code limit} per window,
+ * implemented as the generic cell rate algorithm so that the whole bucket state is a single
+ * {@code long}: the theoretical arrival time (TAT) at which the bucket would be full again.
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+
+    private final int limit;
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong theoreticalArrivalNanos = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucketRateLimiter(int limit, long windowMillis) {
+        if (limit <= 0 || windowMillis <= 0) {
+            throw new IllegalArgumentException("Rate limit and window must be positive");
+        }
+        this.limit = limit;
+        this.emissionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis) / limit;
+        this.capacityNanos = emissionIntervalNanos * limit;
+    }
+
+    @Override
+    public boolean tryAcquire(int permits, long nowMillis) {
+        if (permits > limit) {
+            return false;
+        }
+        long now = TimeUnit.MILLISECONDS.toNanos(nowMillis);
+        long cost = emissionIntervalNanos * permits;
+        while (true) {
+            long tat = theoreticalArrivalNanos.get();
+            long newTat = Math.max(tat, now) + cost;
+            if (newTat - now > capacityNanos) {
+                return false;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(tat, newTat)) {
+                return true;
+            }
+        }
+    }
+}
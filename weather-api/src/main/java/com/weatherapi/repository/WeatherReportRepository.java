@@ -1,12 +1,56 @@
 package com.weatherapi.repository;
 
 import com.weatherapi.model.WeatherReport;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface WeatherReportRepository extends JpaRepository<WeatherReport, Long> {
+    // Ordering by the equality columns too lets H2 read the newest row straight off
+    // idx_weather_report_location_time instead of sorting the location's whole history.
+    @Query("""
+            SELECT r FROM WeatherReport r WHERE r.city = :city AND r.country = :country
+            ORDER BY r.city, r.country, r.timestamp DESC LIMIT 1""")
     Optional<WeatherReport> findFirstByCityAndCountryOrderByTimestampDesc(String city, String country);
+
+    List<WeatherReport> findByCityInAndCountryInAndTimestampGreaterThanEqual(
+            Collection<String> cities, Collection<String> countries, Long timestamp);
+
+    /**
+     * Reports of a location at or after {@code from} that come strictly before the keyset position
+     * ({@code beforeTimestamp}, {@code beforeId}), newest first. The inclusive bound on
+     * {@code beforeTimestamp} is redundant but lets the index range start at the cursor.
+     */
+    @Query("""
+            SELECT new com.weatherapi.model.WeatherReport(r.id, r.city, r.country, r.description, r.timestamp)
+            FROM WeatherReport r
+            WHERE r.city = :city AND r.country = :country
+              AND r.timestamp >= :from AND r.timestamp <= :beforeTimestamp
+              AND (r.timestamp < :beforeTimestamp OR (r.timestamp = :beforeTimestamp AND r.id < :beforeId))
+            ORDER BY r.city, r.country, r.timestamp DESC, r.id DESC""")
+    List<WeatherReport> findHistoryPage(String city, String country, Long from, Long beforeTimestamp, Long beforeId,
+                                        Limit limit);
+
+    /**
+     * Streams a location's reports in [{@code from}, {@code to}), newest first. Rows are read from
+     * the cursor in chunks of the fetch size and returned as unmanaged instances, so the
+     * persistence context does not grow with the range. Must be consumed within a transaction.
+     */
+    @Query("""
+            SELECT new com.weatherapi.model.WeatherReport(r.id, r.city, r.country, r.description, r.timestamp)
+            FROM WeatherReport r
+            WHERE r.city = :city AND r.country = :country AND r.timestamp >= :from AND r.timestamp < :to
+            ORDER BY r.city, r.country, r.timestamp DESC, r.id DESC""")
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<WeatherReport> streamHistory(String city, String country, Long from, Long to);
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.weatherapi.service;
+
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapClient;
+import com.weatherapi.exception.WeatherApiException;
+import com.weatherapi.model.Location;
+import com.weatherapi.util.LocationPopularity;
+import com.weatherapi.util.LocationPopularity.PopularLocation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Refreshes the most requested locations before their reports go stale, so that requests for them
+ * keep hitting fresh cached reports instead of each triggering a refresh.
+ * <p>
+ * Every {@code weather.prefetch.interval}, the {@code weather.prefetch.top-n} most requested locations
+ * according to {@link LocationPopularity} whose report passes the soft TTL within
+ * {@code weather.prefetch.lead} are refreshed. Locations whose provider city id is known are fetched
+ * up to {@value OpenWeatherMapClient#MAX_GROUP_SIZE} at a time in group queries, one upstream call per
+ * group; the others are refreshed one by one in the background, which teaches their city id for the
+ * next round. {@code weather.prefetch.group-queries=false} refreshes every location on its own, for
+ * providers without group queries. Popularity counts are halved every
+ * {@code weather.prefetch.decay-interval}.
+ */
+@Slf4j
+@Component
+public class ReportPrefetcher {
+
+    private final LocationPopularity popularity;
+    private final WeatherService weatherService;
+    private final OpenWeatherMapClient weatherClient;
+    private final Duration lead;
+    private final boolean groupQueries;
+    private final LongAdder groupRefreshes = new LongAdder();
+    private final LongAdder singleRefreshes = new LongAdder();
+    private final LongAdder groupCalls = new LongAdder();
+
+    public ReportPrefetcher(LocationPopularity popularity, WeatherService weatherService,
+                            OpenWeatherMapClient weatherClient,
+                            @Value("${weather.prefetch.lead:5m}") Duration lead,
+                            @Value("${weather.prefetch.group-queries:true}") boolean groupQueries) {
+        this.popularity = popularity;
+        this.weatherService = weatherService;
+        this.weatherClient = weatherClient;
+        this.lead = lead;
+        this.groupQueries = groupQueries;
+    }
+
+    @Scheduled(fixedDelayString = "${weather.prefetch.interval:PT1M}", initialDelayString = "${weather.prefetch.interval:PT1M}")
+    public void run() {
+        try {
+            prefetch();
+        } catch (RuntimeException e) {
+            log.warn("Report prefetch failed", e);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${weather.prefetch.decay-interval:PT10M}", initialDelayString = "${weather.prefetch.decay-interval:PT10M}")
+    public void decay() {
+        popularity.decay();
+    }
+
+    /**
+     * Refreshes the popular locations that are due and returns how many were refreshed or scheduled.
+     */
+    public int prefetch() {
+        Map<Long, Location> grouped = new HashMap<>();
+        int refreshed = 0;
+        for (PopularLocation popular : popularity.topLocations()) {
+            if (!weatherService.isDueForRefresh(popular.location(), lead)) {
+                continue;
+            }
+            if (groupQueries && popular.cityId() != null) {
+                grouped.put(popular.cityId(), popular.location());
+            } else if (weatherService.refreshInBackground(popular.location(), lead)) {
+                singleRefreshes.increment();
+                refreshed++;
+            }
+        }
+        List<Long> cityIds = new ArrayList<>(grouped.keySet());
+        for (int from = 0; from < cityIds.size(); from += OpenWeatherMapClient.MAX_GROUP_SIZE) {
+            refreshed += fetchGroup(cityIds.subList(from, Math.min(from + OpenWeatherMapClient.MAX_GROUP_SIZE,
+                    cityIds.size())), grouped);
+        }
+        return refreshed;
+    }
+
+    private int fetchGroup(List<Long> cityIds, Map<Long, Location> locations) {
+        List<CurrentWeather> group;
+        try {
+            group = weatherClient.fetchCurrentWeatherGroup(cityIds);
+        } catch (WeatherApiException e) {
+            // The reports are still within the soft TTL; requests refresh them if this keeps failing.
+            log.debug("Group query for {} cities failed: {}", cityIds.size(), e.getMessage());
+            return 0;
+        } finally {
+            groupCalls.increment();
+        }
+        int saved = 0;
+        for (CurrentWeather weather : group) {
+            Location location = weather.cityId() != null ? locations.get(weather.cityId()) : null;
+            if (location != null) {
+                weatherService.saveFetched(location, weather);
+                saved++;
+            }
+        }
+        groupRefreshes.add(saved);
+        return saved;
+    }
+
+    /**
+     * Returns the number of reports refreshed through group queries.
+     */
+    public long groupRefreshCount() {
+        return groupRefreshes.sum();
+    }
+
+    /**
+     * Returns the number of locations prefetched with a call of their own.
+     */
+    public long singleRefreshCount() {
+        return singleRefreshes.sum();
+    }
+
+    public long groupCallCount() {
+        return groupCalls.sum();
+    }
+}
@@ -0,0 +1,84 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.Location;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for background report refreshes. At most one refresh per location is queued or
+ * running at a time; when the queue is full further refreshes are dropped, since the next request
+ * for a soft-expired report will simply try again.
+ */
+@Slf4j
+@Component
+public class ReportRefreshExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Set<Location> pending = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+
+    public ReportRefreshExecutor(@Value("${weather.refresh.max-concurrency:4}") int maxConcurrency,
+                                 @Value("${weather.refresh.queue-capacity:256}") int queueCapacity) {
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("report-refresh-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean refresh(Location location, Runnable task) {
+        if (!pending.add(location)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh failed for {}: {}", location, e.getMessage());
+                } finally {
+                    pending.remove(location);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(location);
+            dropped.increment();
+            log.debug("Refresh queue full, skipping background refresh for {}", location);
+            return false;
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public int activeCount() {
+        return executor.getActiveCount();
+    }
+
+    public int queuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of refreshes dropped because the queue was full.
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,90 @@
+package com.weatherapi.service;
+
+import com.weatherapi.config.RetentionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Keeps the report table bounded. Reports older than the raw retention are downsampled to the
+ * latest report per location and history bucket; reports older than the history retention are
+ * deleted. The latest report of a location is never removed by downsampling, so the stale fallback
+ * keeps working for locations that have not been refreshed in a while.
+ * <p>
+ * Work is done about one day of history at a time, and rows are removed in batches of
+ * {@code deleteBatchSize} so no single statement holds locks on a large part of the table.
+ */
+@Slf4j
+@Component
+public class ReportRetentionJob {
+
+    public record Result(int expired, int downsampled) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RetentionProperties properties;
+    // Everything before this has already been downsampled by an earlier run of this instance.
+    private long compactedUntil = Long.MIN_VALUE;
+
+    public ReportRetentionJob(JdbcTemplate jdbcTemplate, RetentionProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @Scheduled(cron = "${weather.retention.cron:0 15 * * * *}")
+    public void run() {
+        Result result = compact(Instant.now());
+        log.info("Report retention removed {} expired and {} downsampled reports", result.expired(), result.downsampled());
+    }
+
+    public synchronized Result compact(Instant now) {
+        long historyCutoff = now.minus(properties.historyRetention()).getEpochSecond();
+        long bucket = properties.historyResolution().toSeconds();
+        // Only whole buckets are compacted, so a bucket is never thinned while it still receives reports.
+        long rawCutoff = Math.floorDiv(now.minus(properties.rawRetention()).getEpochSecond(), bucket) * bucket;
+
+        // Slices of about a day, made of whole buckets so no bucket is split between two slices.
+        long slice = Math.ceilDiv(Duration.ofDays(1).toSeconds(), bucket) * bucket;
+
+        int expired = deleteOlderThan(historyCutoff);
+        int downsampled = 0;
+        for (long from = Math.floorDiv(Math.max(historyCutoff, compactedUntil), bucket) * bucket; from < rawCutoff;
+             from += slice) {
+            downsampled += downsample(from, Math.min(from + slice, rawCutoff), bucket);
+        }
+        compactedUntil = Math.max(compactedUntil, rawCutoff);
+        return new Result(expired, downsampled);
+    }
+
+    private int deleteOlderThan(long cutoff) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("""
+                    DELETE FROM weather_report WHERE id IN (
+                        SELECT id FROM weather_report WHERE timestamp < ? FETCH FIRST ? ROWS ONLY
+                    )""", cutoff, properties.deleteBatchSize());
+            total += deleted;
+        } while (deleted == properties.deleteBatchSize());
+        return total;
+    }
+
+    private int downsample(long from, long to, long bucket) {
+        List<Long> superseded = jdbcTemplate.queryForList("""
+                SELECT id FROM (
+                    SELECT id, ROW_NUMBER() OVER (
+                        PARTITION BY city, country, timestamp / ? ORDER BY timestamp DESC, id DESC) AS position
+                    FROM weather_report WHERE timestamp >= ? AND timestamp < ?
+                ) ranked WHERE position > 1""", Long.class, bucket, from, to);
+        for (int start = 0; start < superseded.size(); start += properties.deleteBatchSize()) {
+            List<Long> batch = superseded.subList(start, Math.min(start + properties.deleteBatchSize(), superseded.size()));
+            jdbcTemplate.batchUpdate("DELETE FROM weather_report WHERE id = ?", batch, batch.size(),
+                    (statement, id) -> statement.setLong(1, id));
+        }
+        return superseded.size();
+    }
+}
@@ -0,0 +1,157 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.WeatherReport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file of reports, written by {@link ReportSnapshotJob} and read back on startup.
+ * <p>
+ * Layout, big-endian: the magic {@code WRS2}; per report its id and timestamp as longs, its latitude
+ * and longitude as doubles, NaN if unknown, then city, country and description as an unsigned short
+ * byte length followed by UTF-8; then the number of reports and a CRC-32 of everything before it as
+ * ints. Files are written next to the target and moved into place, so a crash mid-write leaves the
+ * previous snapshot intact, and files that are truncated, damaged or in another layout fail the
+ * checksum or magic rather than loading partially.
+ */
+final class ReportSnapshotFile {
+
+    private static final int MAGIC = 0x57525332;
+    private static final int TRAILER_BYTES = 2 * Integer.BYTES;
+
+    private ReportSnapshotFile() {
+    }
+
+    /**
+     * Streams reports into a snapshot; {@link #close} publishes it at the target path.
+     */
+    static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Path temporary;
+        private final CRC32 checksum = new CRC32();
+        private final DataOutputStream out;
+        private int count;
+        private boolean finished;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            this.temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Files.newOutputStream(temporary), checksum), 1 << 16));
+            out.writeInt(MAGIC);
+        }
+
+        void write(WeatherReport report) throws IOException {
+            out.writeLong(report.id());
+            out.writeLong(report.timestamp());
+            out.writeDouble(report.latitude() != null ? report.latitude() : Double.NaN);
+            out.writeDouble(report.longitude() != null ? report.longitude() : Double.NaN);
+            writeString(out, report.city());
+            writeString(out, report.country());
+            writeString(out, report.description());
+            count++;
+        }
+
+        /**
+         * Marks the snapshot complete; without this, {@link #close} discards it.
+         */
+        int finish() throws IOException {
+            out.writeInt(count);
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+            finished = true;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+                if (finished) {
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private static void writeString(OutputStream out, String value) throws IOException {
+            byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("String of " + bytes.length + " bytes does not fit a snapshot record");
+            }
+            out.write(bytes.length >>> 8);
+            out.write(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads every report of the snapshot at {@code path}, memory-mapping the file.
+     *
+     * @throws IOException if the file cannot be read or is not a complete, undamaged snapshot
+     */
+    static List<WeatherReport> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Integer.BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a report snapshot: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int body = (int) size - Integer.BYTES;
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(0, body));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(body) != (int) checksum.getValue()) {
+                throw new IOException("Report snapshot is damaged: " + path);
+            }
+            int count = buffer.getInt(body - Integer.BYTES);
+            ByteBuffer records = buffer.slice(Integer.BYTES, body - Integer.BYTES * 2);
+            List<WeatherReport> reports = new ArrayList<>(count);
+            byte[] scratch = new byte[256];
+            try {
+                for (int i = 0; i < count; i++) {
+                    long id = records.getLong();
+                    long timestamp = records.getLong();
+                    Double latitude = coordinate(records.getDouble());
+                    Double longitude = coordinate(records.getDouble());
+                    String city = readString(records, scratch);
+                    String country = readString(records, scratch);
+                    String description = readString(records, scratch);
+                    reports.add(new WeatherReport(id, city, country, description, timestamp, latitude, longitude));
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Report snapshot is damaged: " + path, e);
+            }
+            return reports;
+        }
+    }
+
+    private static Double coordinate(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
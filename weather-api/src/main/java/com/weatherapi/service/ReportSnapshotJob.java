@@ -0,0 +1,159 @@
+package com.weatherapi.service;
+
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a snapshot of the latest report per location in {@code weather.snapshot.path}, so that a
+ * restarted instance starts with the reports of the one before it instead of an empty in-memory
+ * database and a wave of upstream calls.
+ * <p>
+ * The snapshot is rewritten every {@code weather.snapshot.interval} and on shutdown, after the
+ * write-behind queue is drained. On startup, if the report table is empty, reports still within the
+ * cache TTL are cached, every location is indexed for coordinate lookups, and the id sequence is
+ * moved past the snapshot before any request is served; inserting the reports into the table, which
+ * takes seconds for hundreds of thousands of locations, continues in the background. A missing or
+ * damaged snapshot is skipped. An empty path disables snapshots.
+ */
+@Slf4j
+@Component
+public class ReportSnapshotJob {
+
+    private static final String LATEST_REPORTS_SQL = """
+            SELECT id, city, country, description, timestamp, latitude, longitude FROM (
+                SELECT id, city, country, description, timestamp, latitude, longitude, ROW_NUMBER() OVER (
+                    PARTITION BY city, country ORDER BY timestamp DESC, id DESC) AS position
+                FROM weather_report
+            ) WHERE position = 1""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WeatherReportWriter reportWriter;
+    private final WeatherReportCache cache;
+    private final LocationGridIndex locationIndex;
+    private final Path path;
+    private Thread restoreThread;
+
+    public ReportSnapshotJob(JdbcTemplate jdbcTemplate, WeatherReportWriter reportWriter, WeatherReportCache cache,
+                             LocationGridIndex locationIndex, @Value("${weather.snapshot.path:}") String path) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.reportWriter = reportWriter;
+        this.cache = cache;
+        this.locationIndex = locationIndex;
+        this.path = path.isBlank() ? null : Path.of(path);
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM weather_report)",
+                Boolean.class))) {
+            log.info("Report table is not empty, not restoring snapshot {}", path);
+            return;
+        }
+        long start = System.nanoTime();
+        List<WeatherReport> reports;
+        try {
+            reports = ReportSnapshotFile.read(path);
+        } catch (IOException e) {
+            log.warn("Ignoring report snapshot: {}", e.getMessage());
+            return;
+        }
+        if (reports.isEmpty()) {
+            return;
+        }
+        reportWriter.skipIdsThrough(reports.stream().mapToLong(WeatherReport::id).max().orElseThrow());
+        for (WeatherReport report : reports) {
+            Location location = new Location(report.city(), report.country());
+            cache.put(location, report);
+            if (report.latitude() != null && report.longitude() != null) {
+                locationIndex.add(location, report.latitude(), report.longitude());
+            }
+        }
+        log.info("Restored {} reports from {} into the cache in {} ms", reports.size(), path,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        restoreThread = Thread.ofVirtual().name("snapshot-restore").start(() -> {
+            try {
+                reportWriter.insertRestored(reports);
+                log.info("Inserted {} restored reports in {} ms", reports.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (RuntimeException e) {
+                log.error("Failed to insert restored reports", e);
+            }
+        });
+    }
+
+    /**
+     * Waits until reports restored on startup are in the report table.
+     */
+    public void awaitRestore() throws InterruptedException {
+        if (restoreThread != null) {
+            restoreThread.join();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${weather.snapshot.interval:PT5M}", initialDelayString = "${weather.snapshot.interval:PT5M}")
+    public void run() {
+        if (path == null) {
+            return;
+        }
+        try {
+            log.debug("Wrote {} reports to snapshot {}", save(), path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write report snapshot {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (path != null) {
+            reportWriter.shutdown();
+            run();
+        }
+    }
+
+    /**
+     * Writes the latest stored report of every location to the snapshot and returns how many there were.
+     */
+    public synchronized int save() throws IOException {
+        if (path == null) {
+            throw new IllegalStateException("Report snapshots are disabled");
+        }
+        try {
+            // Until the restored reports are in, the table holds only part of them.
+            awaitRestore();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the snapshot restore", e);
+        }
+        try (ReportSnapshotFile.Writer writer = new ReportSnapshotFile.Writer(path)) {
+            jdbcTemplate.query(LATEST_REPORTS_SQL, resultSet -> {
+                try {
+                    writer.write(new WeatherReport(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                            resultSet.getString(4), resultSet.getLong(5), resultSet.getObject(6, Double.class),
+                            resultSet.getObject(7, Double.class)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return writer.finish();
+        }
+    }
+}
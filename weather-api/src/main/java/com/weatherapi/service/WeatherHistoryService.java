@@ -0,0 +1,111 @@
+package com.weatherapi.service;
+
+import com.weatherapi.exception.InvalidApiKeyException;
+import com.weatherapi.exception.RateLimitExceededException;
+import com.weatherapi.model.HistoryCursor;
+import com.weatherapi.model.HistoryPage;
+import com.weatherapi.model.WeatherReport;
+import com.weatherapi.repository.WeatherReportRepository;
+import com.weatherapi.model.Location;
+import com.weatherapi.util.ApiKeyManager;
+import com.weatherapi.util.LocationNormalizer;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Read access to stored reports over a time range, newest first. Pages are addressed by keyset
+ * cursors on (timestamp, id), so fetching a page costs the same however deep it is; exports stream
+ * the whole range from a database cursor without holding it in memory.
+ */
+@Service
+public class WeatherHistoryService {
+
+    /**
+     * Writes the reports of an export to a sink; runs in its own read-only transaction, so it can be
+     * invoked after the request handler has returned.
+     */
+    @FunctionalInterface
+    public interface HistoryExport {
+        void writeTo(Consumer<WeatherReport> sink);
+    }
+
+    private final WeatherReportRepository repository;
+    private final ApiKeyManager apiKeyManager;
+    private final LocationNormalizer locationNormalizer;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public WeatherHistoryService(WeatherReportRepository repository, ApiKeyManager apiKeyManager,
+                                 LocationNormalizer locationNormalizer, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.apiKeyManager = apiKeyManager;
+        this.locationNormalizer = locationNormalizer;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public HistoryPage getHistory(String city, String country, Instant from, Instant to, String cursor, int limit,
+                                  String userApiKey) {
+        checkRange(from, to);
+        Location location = locationNormalizer.normalize(city, country);
+        checkApiKey(userApiKey);
+
+        HistoryCursor position = cursor != null
+                ? HistoryCursor.decode(cursor)
+                : new HistoryCursor(epochSecondCeiling(to), Long.MIN_VALUE);
+        List<WeatherReport> reports = repository.findHistoryPage(location.city(), location.country(),
+                epochSecondCeiling(from), position.timestamp(), position.id(), Limit.of(limit + 1));
+        if (reports.size() <= limit) {
+            return new HistoryPage(reports, null);
+        }
+        List<WeatherReport> page = reports.subList(0, limit);
+        return new HistoryPage(List.copyOf(page), HistoryCursor.after(page.get(limit - 1)).encode());
+    }
+
+    /**
+     * Validates the request and charges the rate limit immediately; the returned export reads the
+     * range when it is written.
+     */
+    public HistoryExport exportHistory(String city, String country, Instant from, Instant to, String userApiKey) {
+        checkRange(from, to);
+        Location location = locationNormalizer.normalize(city, country);
+        checkApiKey(userApiKey);
+
+        return sink -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<WeatherReport> reports = repository.streamHistory(location.city(), location.country(),
+                    epochSecondCeiling(from), epochSecondCeiling(to))) {
+                reports.forEach(sink);
+            }
+        });
+    }
+
+    private void checkRange(Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+    }
+
+    /**
+     * Report timestamps are whole seconds, so {@code [from, to)} holds exactly those in
+     * {@code [ceil(from), ceil(to))}.
+     */
+    private static long epochSecondCeiling(Instant instant) {
+        return instant.getNano() > 0 ? instant.getEpochSecond() + 1 : instant.getEpochSecond();
+    }
+
+    private void checkApiKey(String userApiKey) {
+        if (!apiKeyManager.isValidApiKey(userApiKey)) {
+            throw new InvalidApiKeyException("Invalid API key");
+        }
+
+        if (!apiKeyManager.allowRequest(userApiKey)) {
+            throw new RateLimitExceededException("Rate limit exceeded for API key: " + userApiKey);
+        }
+    }
+}
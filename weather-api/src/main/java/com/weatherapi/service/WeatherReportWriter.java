@@ -0,0 +1,247 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.WeatherReport;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence for fetched reports. {@link #write} assigns the report its id and queues
+ * it; a single writer thread inserts queued reports in JDBC batches of up to {@code batchSize}, as
+ * soon as a batch is full or {@code flushInterval} after its first report was taken.
+ * <p>
+ * Ids come from {@code weather_report_seq}, which advances in blocks of
+ * {@value WeatherReport#ID_BLOCK_SIZE}, so a sequence round-trip is needed only once per block. When
+ * the queue stays full for {@code offerTimeout}, the caller inserts its report itself, which slows
+ * producers down to the database's pace instead of dropping reports. A batch the database rejects is retried a row at a
+ * time, so one bad report does not take the rest down with it; only reports whose own insert fails
+ * are dropped, and counted. On shutdown the queue is drained before the datasource goes away.
+ */
+@Slf4j
+@Component
+public class WeatherReportWriter {
+
+    private static final int RESTORE_BATCH_SIZE = 1000;
+
+    // Upper bound on a single wait for the queue, so shutdown is noticed promptly.
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO weather_report (id, city, country, description, timestamp, latitude, longitude) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<WeatherReport> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final Thread writerThread;
+    private final ReentrantLock idLock = new ReentrantLock();
+    private final LongAdder callerInserts = new LongAdder();
+    private final LongAdder droppedReports = new LongAdder();
+    private long nextId;
+    private long idBlockEnd;
+    private volatile boolean closed;
+
+    public WeatherReportWriter(JdbcTemplate jdbcTemplate,
+                               @Value("${weather.write-behind.capacity:10000}") int capacity,
+                               @Value("${weather.write-behind.batch-size:50}") int batchSize,
+                               @Value("${weather.write-behind.flush-interval:200ms}") Duration flushInterval,
+                               @Value("${weather.write-behind.offer-timeout:50ms}") Duration offerTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.writerThread = Thread.ofVirtual().name("report-writer").start(this::run);
+    }
+
+    /**
+     * Returns the report with its id assigned; the insert happens later on the writer thread.
+     */
+    public WeatherReport write(WeatherReport report) {
+        WeatherReport withId = report.withId(nextId());
+        try {
+            if (closed || !queue.offer(withId, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                log.debug("Write-behind queue full, inserting report for {} on the caller thread", withId.city());
+                callerInserts.increment();
+                insert(List.of(withId));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            insert(List.of(withId));
+        }
+        return withId;
+    }
+
+    /**
+     * Moves the id sequence past {@code id}, so reports restored with ids up to it can be inserted
+     * alongside newly written ones.
+     */
+    public void skipIdsThrough(long id) {
+        idLock.lock();
+        try {
+            jdbcTemplate.execute("ALTER SEQUENCE weather_report_seq RESTART WITH " + (id + 1));
+            // Drop the rest of the current block; it may overlap restored ids.
+            nextId = idBlockEnd;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    /**
+     * Inserts reports that already have ids, bypassing the queue.
+     */
+    public void insertRestored(List<WeatherReport> reports) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, reports, RESTORE_BATCH_SIZE, WeatherReportWriter::bind);
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of reports inserted on the caller thread because the queue was full.
+     */
+    public long callerInsertCount() {
+        return callerInserts.sum();
+    }
+
+    /**
+     * Returns the number of reports that could not be inserted, even on their own.
+     */
+    public long droppedCount() {
+        return droppedReports.sum();
+    }
+
+    /**
+     * Inserts everything queued and makes later writes insert on the caller thread. Safe to call more
+     * than once.
+     */
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        try {
+            if (!writerThread.join(Duration.ofSeconds(10))) {
+                log.warn("Report writer did not finish draining within 10s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Reports offered concurrently with shutdown may have missed the writer thread's last drain.
+        List<WeatherReport> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        insert(remaining);
+    }
+
+    private long nextId() {
+        idLock.lock();
+        try {
+            if (nextId == idBlockEnd) {
+                nextId = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR weather_report_seq", Long.class);
+                idBlockEnd = nextId + WeatherReport.ID_BLOCK_SIZE;
+            }
+            return nextId++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    private void run() {
+        List<WeatherReport> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                WeatherReport first = queue.poll(MAX_WAIT_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + flushIntervalNanos);
+            } catch (InterruptedException e) {
+                closed = true;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            insert(batch);
+            batch.clear();
+        }
+    }
+
+    private void fill(List<WeatherReport> batch, long flushAt) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = flushAt - System.nanoTime();
+            if (batch.size() == batchSize || remaining <= 0 || closed) {
+                return;
+            }
+            WeatherReport next = queue.poll(Math.min(remaining, MAX_WAIT_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void insert(List<WeatherReport> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), WeatherReportWriter::bind);
+        } catch (DataAccessException e) {
+            if (batch.size() == 1) {
+                drop(batch.get(0), e);
+                return;
+            }
+            log.warn("Batch insert of {} weather reports failed, retrying one at a time", batch.size(), e);
+            batch.forEach(this::insertOne);
+        }
+    }
+
+    private void insertOne(WeatherReport report) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, statement -> bind(statement, report));
+        } catch (DuplicateKeyException e) {
+            // Ids are never reused, so the failed batch got this row in before it broke off.
+        } catch (DataAccessException e) {
+            drop(report, e);
+        }
+    }
+
+    private void drop(WeatherReport report, DataAccessException e) {
+        droppedReports.increment();
+        log.error("Failed to persist weather report {} for {}, {}", report.id(), report.city(), report.country(), e);
+    }
+
+    private static void bind(PreparedStatement statement, WeatherReport report) throws SQLException {
+        statement.setLong(1, report.id());
+        statement.setString(2, report.city());
+        statement.setString(3, report.country());
+        statement.setString(4, report.description());
+        statement.setLong(5, report.timestamp());
+        setDouble(statement, 6, report.latitude());
+        setDouble(statement, 7, report.longitude());
+    }
+
+    private static void setDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value != null) {
+            statement.setDouble(index, value);
+        } else {
+            statement.setNull(index, Types.DOUBLE);
+        }
+    }
+}
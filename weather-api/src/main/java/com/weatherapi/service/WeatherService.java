@@ -1,85 +1,433 @@
 package com.weatherapi.service;
 
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapClient;
 import com.weatherapi.exception.ErrorCode;
 import com.weatherapi.exception.InvalidApiKeyException;
 import com.weatherapi.exception.RateLimitExceededException;
+import com.weatherapi.exception.UpstreamUnavailableException;
 import com.weatherapi.exception.WeatherApiException;
+import com.weatherapi.metrics.WeatherMetrics;
+import com.weatherapi.metrics.WeatherMetrics.Endpoint;
+import com.weatherapi.metrics.WeatherMetrics.Outcome;
+import com.weatherapi.metrics.WeatherMetrics.Source;
+import com.weatherapi.model.BatchWeatherResult;
+import com.weatherapi.model.Location;
 import com.weatherapi.model.WeatherReport;
 import com.weatherapi.repository.WeatherReportRepository;
 import com.weatherapi.util.ApiKeyManager;
+import com.weatherapi.util.LocationNormalizer;
+import com.weatherapi.util.LocationPopularity;
+import com.weatherapi.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class WeatherService {
 
     private final WeatherReportRepository repository;
-    private final RestTemplate restTemplate;
+    private final OpenWeatherMapClient weatherClient;
     private final ApiKeyManager apiKeyManager;
+    private final WeatherReportCache cache;
+    private final ReportRefreshExecutor refreshExecutor;
+    private final WeatherReportWriter reportWriter;
+    private final WeatherMetrics metrics;
+    private final LocationNormalizer locationNormalizer;
+    private final WeatherUpdateBroadcaster updateBroadcaster;
+    private final LocationPopularity popularity;
+    private final LocationGridIndex locationIndex;
+    private final SingleFlight<Location, WeatherReport> inFlightFetches = new SingleFlight<>();
+    private final LongAdder batchFetchThreads = new LongAdder();
+    // Keyed by the index cell of the coordinate.
+    private final SingleFlight<Long, WeatherReport> inFlightCoordinateFetches = new SingleFlight<>();
 
-    @Value("${openweathermap.api.url}")
-    private String apiUrl;
+    // Reports older than the soft TTL are served while being refreshed in the background;
+    // reports older than the hard TTL are never served and are refetched synchronously.
+    @Value("${weather.report.soft-ttl:50m}")
+    private Duration softTtl;
+
+    @Value("${weather.report.hard-ttl:1h}")
+    private Duration hardTtl;
+
+    @Value("${weather.batch.timeout:5s}")
+    private Duration batchTimeout;
 
     public WeatherReport getWeatherReport(String city, String country, String userApiKey) {
-        if (!apiKeyManager.isValidApiKey(userApiKey)) {
-            throw new InvalidApiKeyException("Invalid API key");
+        return timed(Endpoint.SINGLE, () -> {
+            Location location = locationNormalizer.normalize(city, country);
+            checkApiKey(userApiKey, 1);
+            popularity.record(location);
+            return lookup(location);
+        });
+    }
+
+    /**
+     * Resolves a coordinate to the nearest location within {@code weather.geo.radius-km} that a report
+     * has been fetched for, and serves that location's report as {@link #getWeatherReport} would. With
+     * no location that near, the provider is asked for the named place nearest to the coordinate, which
+     * is then indexed both at its own coordinates and at the requested one, so that later requests
+     * around either share its report. Concurrent misses within one index cell share one upstream call.
+     */
+    public WeatherReport getWeatherReportAt(double latitude, double longitude, String userApiKey) {
+        return timed(Endpoint.COORDINATES, () -> {
+            long cell = locationIndex.cellKey(latitude, longitude);
+            checkApiKey(userApiKey, 1);
+            Location location = locationIndex.nearest(latitude, longitude);
+            if (location == null) {
+                return servedFetch(inFlightCoordinateFetches.execute(cell,
+                        () -> fetchAndSaveWeatherReportAt(latitude, longitude)));
+            }
+            popularity.record(location);
+            return lookup(location);
+        });
+    }
+
+    /**
+     * Resolves many locations at once. Locations that normalize to the same one are collapsed, and
+     * every distinct location counts as one request against the caller's rate limit; the whole batch
+     * is rejected if it does not fit. Cache misses are looked up in a single repository query, and
+     * whatever is still missing is fetched from upstream concurrently. Fetches that do not finish
+     * within the batch timeout are reported as failed items but left running, so they still populate
+     * the cache.
+     */
+    public List<BatchWeatherResult> getWeatherReports(List<Location> locations, String userApiKey) {
+        return timed(Endpoint.BATCH, () -> resolveAll(locations, userApiKey));
+    }
+
+    /**
+     * Returns how long clients may reuse {@code report} without asking again: until it passes the soft
+     * TTL and gets refreshed, or zero if it already has or is served stale.
+     */
+    public Duration remainingFreshness(WeatherReport report) {
+        if (report.stale()) {
+            return Duration.ZERO;
         }
+        return Duration.ofSeconds(Math.max(0, softTtl.toSeconds() - ageSeconds(report)));
+    }
 
-        if (!apiKeyManager.allowRequest(userApiKey)) {
-            throw new RateLimitExceededException("Rate limit exceeded for API key: " + userApiKey);
+    /**
+     * Refreshes {@code location} in the background unless its cached report is still within the soft
+     * TTL. Nobody's rate limit is charged; this keeps subscribed locations current when no requests
+     * for them come in.
+     */
+    public void refreshInBackground(Location location) {
+        refreshInBackground(location, Duration.ZERO);
+    }
+
+    /**
+     * Refreshes {@code location} in the background unless its cached report stays within the soft TTL
+     * for at least {@code lead}, and returns whether a refresh was scheduled.
+     */
+    public boolean refreshInBackground(Location location, Duration lead) {
+        return isDueForRefresh(location, lead) && scheduleRefresh(location);
+    }
+
+    /**
+     * Returns whether {@code location} has no cached report or one that passes the soft TTL within
+     * {@code lead}.
+     */
+    public boolean isDueForRefresh(Location location, Duration lead) {
+        long refreshAge = softTtl.toSeconds() - lead.toSeconds();
+        return cache.peek(location).filter(report -> ageSeconds(report) < refreshAge).isEmpty();
+    }
+
+    /**
+     * Stores a report made from {@code weather}, fetched for {@code location} outside a request, caches
+     * it and pushes it to subscribers. The location is indexed at its coordinates for coordinate lookups.
+     */
+    public WeatherReport saveFetched(Location location, CurrentWeather weather) {
+        WeatherReport report = new WeatherReport(null, location.city(), location.country(), weather.description(),
+                Instant.now().getEpochSecond(), weather.latitude(), weather.longitude());
+        WeatherReport saved = reportWriter.write(report);
+        cache.put(location, saved);
+        updateBroadcaster.publish(saved);
+        if (weather.cityId() != null) {
+            popularity.rememberCityId(location, weather.cityId());
         }
+        if (weather.hasCoordinates()) {
+            locationIndex.add(location, weather.latitude(), weather.longitude());
+        }
+        return saved;
+    }
 
-        return repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country)
-                .filter(this::isReportFresh)
-                .orElseGet(() -> fetchAndSaveWeatherReport(city, country, userApiKey));
+    /**
+     * Returns whether a lookup of the location would be answered from the cache, without waiting on the
+     * database or the provider. Nothing is counted, and locations that do not normalize count as
+     * answered: they are rejected before any lookup.
+     */
+    public boolean isServedFromCache(String city, String country) {
+        if (city == null || country == null) {
+            return true;
+        }
+        try {
+            return isServedFromCache(locationNormalizer.normalize(city, country));
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether a lookup of the coordinate would be answered from the cache, like
+     * {@link #isServedFromCache(String, String)}.
+     */
+    public boolean isServedFromCacheAt(double latitude, double longitude) {
+        Location location;
+        try {
+            location = locationIndex.nearest(latitude, longitude);
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+        return location != null && isServedFromCache(location);
     }
 
-    private WeatherReport fetchAndSaveWeatherReport(String city, String country, String userApiKey) {
-        String url = String.format("%s?q=%s,%s&appid=%s", apiUrl, city, country, userApiKey);
-        Map<String, Object> response = restTemplate.getForObject(url, Map.class);
+    public int inFlightFetchCount() {
+        return inFlightFetches.inFlightCount() + inFlightCoordinateFetches.inFlightCount();
+    }
 
-        if (response == null) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "No response from weather API");
+    /**
+     * Returns the number of virtual threads fetching locations of batch requests, including fetches
+     * still running after their batch timed out.
+     */
+    public long batchFetchThreadCount() {
+        return batchFetchThreads.sum();
+    }
+
+    private boolean isServedFromCache(Location location) {
+        return cache.peek(location).filter(this::isReportFresh).isPresent();
+    }
+
+    private List<BatchWeatherResult> resolveAll(List<Location> locations, String userApiKey) {
+        Set<Location> normalized = new LinkedHashSet<>();
+        for (Location location : locations) {
+            normalized.add(locationNormalizer.normalize(location));
         }
+        List<Location> distinct = List.copyOf(normalized);
+        checkApiKey(userApiKey, distinct.size());
+        distinct.forEach(popularity::record);
+        long deadline = System.nanoTime() + batchTimeout.toNanos();
 
-        Object weatherObj = response.get("weather");
-        if (!(weatherObj instanceof List)) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Invalid weather data format");
+        Map<Location, WeatherReport> resolved = new HashMap<>();
+        List<Location> misses = new ArrayList<>();
+        for (Location location : distinct) {
+            cache.get(location).filter(this::isReportFresh).ifPresentOrElse(
+                    report -> resolved.put(location, served(Source.CACHE, report)), () -> misses.add(location));
         }
+        findLatestFreshReports(misses).forEach((location, report) ->
+                resolved.put(location, served(Source.DATABASE, report)));
+        resolved.replaceAll((location, report) -> refreshIfStale(location, report));
 
-        List<?> weatherList = (List<?>) weatherObj;
-        if (weatherList.isEmpty()) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather data is empty");
+        Map<Location, Future<WeatherReport>> fetches = new HashMap<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (Location location : distinct) {
+                if (!resolved.containsKey(location)) {
+                    fetches.put(location, executor.submit(() -> {
+                        batchFetchThreads.increment();
+                        try {
+                            return inFlightFetches.execute(location, () -> fetchOrServeStale(location));
+                        } finally {
+                            batchFetchThreads.decrement();
+                        }
+                    }));
+                }
+            }
+        } finally {
+            executor.shutdown();
         }
 
-        Object firstWeatherObj = weatherList.get(0);
-        if (!(firstWeatherObj instanceof Map)) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Invalid weather data format");
+        List<BatchWeatherResult> results = new ArrayList<>(distinct.size());
+        for (Location location : distinct) {
+            WeatherReport report = resolved.get(location);
+            results.add(report != null
+                    ? BatchWeatherResult.success(location, report)
+                    : awaitFetch(location, fetches.get(location), deadline));
         }
+        return results;
+    }
 
-        Map<?, ?> weatherMap = (Map<?, ?>) firstWeatherObj;
-        Object descriptionObj = weatherMap.get("description");
-        if (!(descriptionObj instanceof String)) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather description is missing or invalid");
+    private <T> T timed(Endpoint endpoint, Supplier<T> request) {
+        long start = System.nanoTime();
+        try {
+            T result = request.get();
+            metrics.recordRequest(endpoint, Outcome.SUCCESS, start);
+            return result;
+        } catch (InvalidApiKeyException | RateLimitExceededException e) {
+            metrics.recordRequest(endpoint, Outcome.REJECTED, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordRequest(endpoint, Outcome.ERROR, start);
+            throw e;
         }
+    }
 
-        String description = (String) descriptionObj;
-        if (description.isEmpty()) {
-            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather description is empty");
+    private WeatherReport lookup(Location location) {
+        Optional<WeatherReport> cached = cache.get(location).filter(this::isReportFresh);
+        if (cached.isPresent()) {
+            return served(Source.CACHE, refreshIfStale(location, cached.get()));
         }
+        Optional<WeatherReport> stored = repository
+                .findFirstByCityAndCountryOrderByTimestampDesc(location.city(), location.country())
+                .filter(this::isReportFresh);
+        if (stored.isPresent()) {
+            cache.put(location, stored.get());
+            return served(Source.DATABASE, refreshIfStale(location, stored.get()));
+        }
+        return servedFetch(inFlightFetches.execute(location, () -> fetchOrServeStale(location)));
+    }
 
-        WeatherReport report = new WeatherReport(null, city, country, description, Instant.now().getEpochSecond());
-        return repository.save(report);
+    private WeatherReport served(Source source, WeatherReport report) {
+        metrics.recordServed(source, report);
+        return report;
+    }
+
+    private WeatherReport servedFetch(WeatherReport report) {
+        return served(report.stale() ? Source.STALE : Source.UPSTREAM, report);
+    }
+
+    private void checkApiKey(String userApiKey, int permits) {
+        if (!apiKeyManager.isValidApiKey(userApiKey)) {
+            throw new InvalidApiKeyException("Invalid API key");
+        }
+
+        if (!apiKeyManager.allowRequests(userApiKey, permits)) {
+            throw new RateLimitExceededException("Rate limit exceeded for API key: " + userApiKey);
+        }
+    }
+
+    private Map<Location, WeatherReport> findLatestFreshReports(List<Location> locations) {
+        if (locations.isEmpty()) {
+            return Map.of();
+        }
+        Set<Location> wanted = new HashSet<>(locations);
+        Set<String> cities = new HashSet<>();
+        Set<String> countries = new HashSet<>();
+        for (Location location : locations) {
+            cities.add(location.city());
+            countries.add(location.country());
+        }
+        long oldestFresh = Instant.now().getEpochSecond() - hardTtl.toSeconds() + 1;
+
+        Map<Location, WeatherReport> latest = new HashMap<>();
+        for (WeatherReport report : repository.findByCityInAndCountryInAndTimestampGreaterThanEqual(
+                cities, countries, oldestFresh)) {
+            Location location = new Location(report.city(), report.country());
+            if (wanted.contains(location)) {
+                latest.merge(location, report, (a, b) -> a.timestamp() >= b.timestamp() ? a : b);
+            }
+        }
+        latest.forEach(cache::put);
+        return latest;
+    }
+
+    private BatchWeatherResult awaitFetch(Location location, Future<WeatherReport> fetch, long deadline) {
+        try {
+            return BatchWeatherResult.success(location, servedFetch(fetch.get(Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS)));
+        } catch (TimeoutException e) {
+            return BatchWeatherResult.failure(location, ErrorCode.EXTERNAL_API_ERROR,
+                    "Weather data not available within the batch timeout");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WeatherApiException weatherApiException) {
+                return BatchWeatherResult.failure(location, weatherApiException.getErrorCode(),
+                        weatherApiException.getMessage());
+            }
+            return BatchWeatherResult.failure(location, ErrorCode.UNKNOWN_ERROR, "An unexpected error occurred");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return BatchWeatherResult.failure(location, ErrorCode.UNKNOWN_ERROR, "Request interrupted");
+        }
+    }
+
+    private WeatherReport refreshIfStale(Location location, WeatherReport report) {
+        if (isReportStale(report)) {
+            scheduleRefresh(location);
+        }
+        return report;
+    }
+
+    private boolean scheduleRefresh(Location location) {
+        return refreshExecutor.refresh(location, () -> inFlightFetches.execute(location,
+                () -> fetchAndSaveWeatherReport(location)));
+    }
+
+    // While the provider is shed (breaker open or bulkhead full), the latest stored report of any age
+    // beats an error. It is flagged as stale and kept out of the cache.
+    private WeatherReport fetchOrServeStale(Location location) {
+        try {
+            return fetchUnlessCached(location);
+        } catch (UpstreamUnavailableException e) {
+            return repository.findFirstByCityAndCountryOrderByTimestampDesc(location.city(), location.country())
+                    .map(WeatherReport::asStale)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    // A flight for the same location may have completed between our cache miss and this one starting.
+    private WeatherReport fetchUnlessCached(Location location) {
+        return cache.peek(location)
+                .filter(this::isReportFresh)
+                .orElseGet(() -> fetchAndSaveWeatherReport(location));
+    }
+
+    private WeatherReport fetchAndSaveWeatherReport(Location location) {
+        return saveFetched(location, weatherClient.fetchCurrentWeather(location.city(), location.country()));
+    }
+
+    private WeatherReport fetchAndSaveWeatherReportAt(double latitude, double longitude) {
+        CurrentWeather weather = weatherClient.fetchCurrentWeatherAt(latitude, longitude);
+        Location location = namedLocation(weather);
+        WeatherReport saved = saveFetched(location, weather);
+        // The named place may lie beyond the radius; without this, every request here would miss again.
+        locationIndex.add(location, latitude, longitude);
+        popularity.record(location);
+        return saved;
+    }
+
+    private Location namedLocation(CurrentWeather weather) {
+        if (weather.city() == null || weather.city().isBlank() || weather.country() == null) {
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR,
+                    "Weather API has no named place near the coordinates");
+        }
+        try {
+            return locationNormalizer.normalize(weather.city(), weather.country());
+        } catch (IllegalArgumentException e) {
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR,
+                    "Weather API returned an unknown location: " + weather.city() + "," + weather.country());
+        }
     }
 
     private boolean isReportFresh(WeatherReport report) {
-        return Instant.now().getEpochSecond() - report.timestamp() < 3600; // 1 hour
+        return ageSeconds(report) < hardTtl.toSeconds();
+    }
+
+    private boolean isReportStale(WeatherReport report) {
+        return ageSeconds(report) >= softTtl.toSeconds();
+    }
+
+    private long ageSeconds(WeatherReport report) {
+        return Instant.now().getEpochSecond() - report.timestamp();
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.BatchWeatherResult;
+import com.weatherapi.model.Location;
+import com.weatherapi.util.LocationNormalizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Subscriptions to report updates for a set of locations. Subscribing costs the same as a batch
+ * request for those locations, whose current reports are the first ones pushed; every later update
+ * is pushed without charging the rate limit again.
+ * <p>
+ * Subscribed locations are refreshed every {@code weather.subscriptions.refresh-interval} once their
+ * report passes the soft TTL, so subscribers keep getting updates when nobody polls.
+ */
+@Service
+@RequiredArgsConstructor
+public class WeatherSubscriptionService {
+
+    private final WeatherService weatherService;
+    private final WeatherUpdateBroadcaster updateBroadcaster;
+    private final LocationNormalizer locationNormalizer;
+
+    public WeatherUpdateBroadcaster.Subscription subscribe(List<Location> locations, String userApiKey,
+                                                           WeatherUpdateBroadcaster.Sink sink) {
+        Set<Location> canonical = new LinkedHashSet<>();
+        for (Location location : locations) {
+            canonical.add(locationNormalizer.normalize(location));
+        }
+        // Registered before the initial lookup, so an update stored in between is not missed; the
+        // subscription drops whichever of the two reports is older.
+        WeatherUpdateBroadcaster.Subscription subscription = updateBroadcaster.subscribe(canonical, sink);
+        try {
+            for (BatchWeatherResult result : weatherService.getWeatherReports(List.copyOf(canonical), userApiKey)) {
+                if (result.report() != null) {
+                    subscription.offer(result.report());
+                }
+            }
+        } catch (RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+        return subscription;
+    }
+
+    @Scheduled(fixedDelayString = "${weather.subscriptions.refresh-interval:PT1M}")
+    public void refreshSubscribedLocations() {
+        updateBroadcaster.subscribedLocations().forEach(weatherService::refreshInBackground);
+    }
+}
@@ -0,0 +1,213 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes newly stored reports to the subscriptions of their location.
+ * <p>
+ * {@link #publish} never blocks on a subscriber: it puts the report in the subscription's pending slot
+ * for that location and, unless a send is already in progress, starts a virtual thread that drains
+ * the slots into the subscriber's {@link Sink}. A subscriber that cannot keep up therefore holds at
+ * most one pending report per location, always the newest, and the reports it missed in between are
+ * conflated away. Idle subscriptions hold no thread.
+ */
+@Slf4j
+@Component
+public class WeatherUpdateBroadcaster {
+
+    /**
+     * Where a subscription's reports go. {@link #send} is called by one thread at a time; when it
+     * throws, the subscription is closed.
+     */
+    public interface Sink {
+        void send(WeatherReport report) throws IOException;
+
+        void close();
+    }
+
+    private final Map<Location, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("report-push-", 0).factory());
+    private final LongAdder active = new LongAdder();
+    private final LongAdder sending = new LongAdder();
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+
+    /**
+     * Registers {@code sink} for reports of {@code locations}, which must be canonical.
+     */
+    public Subscription subscribe(Collection<Location> locations, Sink sink) {
+        Subscription subscription = new Subscription(Set.copyOf(locations), sink);
+        active.increment();
+        for (Location location : subscription.locations) {
+            // Added inside compute, so a concurrent close cannot drop the set between lookup and add.
+            subscribers.compute(location, (key, subscriptions) -> {
+                Set<Subscription> updated = subscriptions != null ? subscriptions : ConcurrentHashMap.newKeySet();
+                updated.add(subscription);
+                return updated;
+            });
+        }
+        return subscription;
+    }
+
+    public void publish(WeatherReport report) {
+        Set<Subscription> subscriptions = subscribers.get(new Location(report.city(), report.country()));
+        if (subscriptions != null) {
+            subscriptions.forEach(subscription -> subscription.offer(report));
+        }
+    }
+
+    /**
+     * Returns every location with at least one subscription.
+     */
+    public Set<Location> subscribedLocations() {
+        Set<Location> locations = new LinkedHashSet<>();
+        subscribers.forEach((location, subscriptions) -> {
+            if (!subscriptions.isEmpty()) {
+                locations.add(location);
+            }
+        });
+        return locations;
+    }
+
+    public long activeCount() {
+        return active.sum();
+    }
+
+    /**
+     * Returns the number of virtual threads pushing reports to subscribers.
+     */
+    public long sendingThreadCount() {
+        return sending.sum();
+    }
+
+    public long pushedCount() {
+        return pushed.sum();
+    }
+
+    /**
+     * Returns the number of reports replaced by a newer one for the same location before they were sent.
+     */
+    public long conflatedCount() {
+        return conflated.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private static boolean isNewer(WeatherReport report, WeatherReport than) {
+        if (than == null) {
+            return true;
+        }
+        if (report.timestamp().longValue() != than.timestamp().longValue()) {
+            return report.timestamp() > than.timestamp();
+        }
+        return report.id() != null && than.id() != null && report.id() > than.id();
+    }
+
+    public final class Subscription {
+
+        private final Set<Location> locations;
+        private final Sink sink;
+        private final Map<Location, WeatherReport> pending = new ConcurrentHashMap<>();
+        // Only touched by the drain in progress; drains never overlap.
+        private final Map<Location, WeatherReport> lastSent = new HashMap<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(Set<Location> locations, Sink sink) {
+            this.locations = locations;
+            this.sink = sink;
+        }
+
+        /**
+         * Queues {@code report} for sending unless a newer report of its location is already queued.
+         */
+        public void offer(WeatherReport report) {
+            if (closed.get()) {
+                return;
+            }
+            pending.compute(new Location(report.city(), report.country()), (location, queued) -> {
+                if (queued == null) {
+                    return report;
+                }
+                conflated.increment();
+                return isNewer(report, queued) ? report : queued;
+            });
+            if (draining.compareAndSet(false, true)) {
+                startDrain();
+            }
+        }
+
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            for (Location location : locations) {
+                subscribers.computeIfPresent(location, (key, subscriptions) -> {
+                    subscriptions.remove(this);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+            }
+            pending.clear();
+            active.decrement();
+            sink.close();
+        }
+
+        private void startDrain() {
+            try {
+                senders.execute(() -> {
+                    sending.increment();
+                    try {
+                        drain();
+                    } finally {
+                        sending.decrement();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        private void drain() {
+            do {
+                for (Location location : pending.keySet()) {
+                    WeatherReport report = pending.remove(location);
+                    if (report == null || closed.get() || !isNewer(report, lastSent.get(location))) {
+                        continue;
+                    }
+                    try {
+                        sink.send(report);
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("Closing subscription after failed push: {}", e.getMessage());
+                        close();
+                        return;
+                    }
+                    lastSent.put(location, report);
+                    pushed.increment();
+                }
+                draining.set(false);
+                // An offer between the last remove and the reset saw a drain in progress and left it to us.
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));
+        }
+    }
+}
@@ -1,58 +1,124 @@
 package com.weatherapi.util;
 
+import com.weatherapi.config.RateLimitProperties;
+import com.weatherapi.ratelimit.InMemoryRateLimitStore;
+import com.weatherapi.ratelimit.LeasedRateLimiter;
+import com.weatherapi.ratelimit.RateLimitStore;
+import com.weatherapi.ratelimit.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Clock;
-import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component
 public class ApiKeyManager {
-    private static final int MAX_REQUESTS_PER_HOUR = 5;
-    private static final String[] API_KEYS = {"API_KEY_1", "API_KEY_2", "API_KEY_3", "API_KEY_4", "API_KEY_5"};
 
-    private final Map<String, ApiKeyInfo> apiKeyInfoMap;
+    // Hex digits of the key's SHA-256 used to tell keys apart in metrics.
+    private static final int KEY_ID_LENGTH = 12;
+
+    private final Map<String, RateLimiter> rateLimiters;
+    private final Map<String, Counter> rejections;
     private final Clock clock;
+    private final Executor leaseExecutor;
+
+    @Autowired
+    public ApiKeyManager(RateLimitProperties properties, RateLimitStore store, MeterRegistry meterRegistry) {
+        this(properties, store, Clock.systemUTC(),
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rate-limit-lease-", 0).factory()),
+                meterRegistry);
+    }
 
-    public ApiKeyManager() {
-        this(Clock.systemDefaultZone());
+    // Constructors for testing
+    ApiKeyManager(RateLimitProperties properties, Clock clock, MeterRegistry meterRegistry) {
+        this(properties, new InMemoryRateLimitStore(), clock, Runnable::run, meterRegistry);
     }
 
-    // Constructor for testing
-    ApiKeyManager(Clock clock) {
+    ApiKeyManager(RateLimitProperties properties, RateLimitStore store, Clock clock, Executor leaseExecutor,
+                  MeterRegistry meterRegistry) {
         this.clock = clock;
-        apiKeyInfoMap = new ConcurrentHashMap<>();
-        for (String key : API_KEYS) {
-            apiKeyInfoMap.put(key, new ApiKeyInfo());
+        this.leaseExecutor = leaseExecutor;
+        Map<String, RateLimiter> limiters = new HashMap<>();
+        Map<String, Counter> counters = new HashMap<>();
+        for (String key : properties.keys().keySet()) {
+            counters.put(key, Counter.builder("weather.ratelimit.rejections")
+                    .description("Requests rejected by the rate limit of an API key")
+                    .tag("key_id", keyId(key))
+                    .register(meterRegistry));
+            RateLimitProperties.KeyLimit limit = properties.limitFor(key);
+            long windowMillis = limit.window().toMillis();
+            limiters.put(key, properties.store() == RateLimitProperties.StoreType.LOCAL
+                    ? RateLimiter.create(limit.algorithm(), limit.limit(), windowMillis)
+                    : new LeasedRateLimiter(key, store, limit.limit(), windowMillis,
+                            properties.leaseSizeFor(limit.limit()), properties.leaseIdleTimeout().toMillis(),
+                            leaseExecutor));
         }
+        this.rateLimiters = Map.copyOf(limiters);
+        this.rejections = Map.copyOf(counters);
     }
 
     public boolean isValidApiKey(String apiKey) {
-        return apiKeyInfoMap.containsKey(apiKey);
+        return rateLimiters.containsKey(apiKey);
     }
 
     public boolean allowRequest(String apiKey) {
-        ApiKeyInfo apiKeyInfo = apiKeyInfoMap.get(apiKey);
-        if (apiKeyInfo == null) {
+        return allowRequests(apiKey, 1);
+    }
+
+    public boolean allowRequests(String apiKey, int permits) {
+        RateLimiter rateLimiter = rateLimiters.get(apiKey);
+        if (rateLimiter == null) {
             return false;
         }
+        if (!rateLimiter.tryAcquire(permits, clock.millis())) {
+            rejections.get(apiKey).increment();
+            return false;
+        }
+        return true;
+    }
 
-        LocalDateTime now = LocalDateTime.now(clock);
-        LocalDateTime resetTime = apiKeyInfo.lastReset.plusHours(1);
-
-        if (now.isAfter(resetTime)) {
-            apiKeyInfo.lastReset = now;
-            apiKeyInfo.requestCount.set(1);
-            return true;
+    /**
+     * Hands permits of leases nobody is using back to the shared budget.
+     */
+    @Scheduled(fixedDelayString = "${weather.rate-limit.lease-idle-timeout:PT1M}")
+    public void releaseIdleLeases() {
+        long now = clock.millis();
+        for (RateLimiter rateLimiter : rateLimiters.values()) {
+            if (rateLimiter instanceof LeasedRateLimiter leased) {
+                leased.releaseIfIdle(now);
+            }
         }
+    }
 
-        return apiKeyInfo.requestCount.incrementAndGet() <= MAX_REQUESTS_PER_HOUR;
+    @PreDestroy
+    public void shutdown() {
+        if (leaseExecutor instanceof ExecutorService executorService) {
+            executorService.close();
+        }
     }
 
-    private class ApiKeyInfo {
-        private LocalDateTime lastReset = LocalDateTime.now(clock).minusHours(1);
-        private final AtomicInteger requestCount = new AtomicInteger(0);
+    /**
+     * Identifies an API key in metrics, which are scraped without authentication, by a prefix of its
+     * SHA-256 rather than by the key itself.
+     */
+    public static String keyId(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(0, KEY_ID_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.weatherapi.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Interner;
+import com.weatherapi.model.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the city and country of a request to the canonical {@link Location} used as the key of the
+ * cache, the repository and upstream calls, so that {@code "london, uk"} and {@code " London ,GB"}
+ * resolve to the same report.
+ * <p>
+ * Cities are NFKC-normalized, trimmed, have runs of whitespace collapsed, and are capitalized per
+ * word. Countries become ISO 3166-1 alpha-2 codes; alpha-3 codes and {@code UK} are mapped, anything
+ * else is rejected. Canonical locations are interned, and the raw input of the last
+ * {@code memoSize} distinct requests is memoized so repeated inputs skip normalization.
+ */
+@Component
+public class LocationNormalizer {
+
+    private static final Set<String> ALPHA_2 = Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2);
+    private static final Map<String, String> ALIASES = aliases();
+
+    private record RawLocation(String city, String country) {}
+
+    private final Cache<RawLocation, Location> memo;
+    private final Interner<Location> interner = Interner.newWeakInterner();
+
+    public LocationNormalizer(@Value("${weather.location.memo-size:10000}") long memoSize) {
+        this.memo = Caffeine.newBuilder()
+                .maximumSize(memoSize)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    public Location normalize(String city, String country) {
+        return memo.get(new RawLocation(city, country),
+                raw -> interner.intern(new Location(canonicalCity(raw.city()), canonicalCountry(raw.country()))));
+    }
+
+    public Location normalize(Location location) {
+        return normalize(location.city(), location.country());
+    }
+
+    static String canonicalCity(String city) {
+        String folded = Normalizer.normalize(city, Normalizer.Form.NFKC).strip().toLowerCase(Locale.ROOT);
+        if (folded.isEmpty()) {
+            throw new IllegalArgumentException("City is required");
+        }
+        StringBuilder canonical = new StringBuilder(folded.length());
+        boolean capitalize = true;
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); ) {
+            int codePoint = folded.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                pendingSpace = true;
+                capitalize = true;
+                continue;
+            }
+            if (pendingSpace) {
+                canonical.append(' ');
+                pendingSpace = false;
+            }
+            canonical.appendCodePoint(capitalize ? Character.toTitleCase(codePoint) : codePoint);
+            capitalize = codePoint == '-';
+        }
+        return canonical.toString();
+    }
+
+    static String canonicalCountry(String country) {
+        String code = Normalizer.normalize(country, Normalizer.Form.NFKC).strip().toUpperCase(Locale.ROOT);
+        if (ALPHA_2.contains(code)) {
+            return code;
+        }
+        String alias = ALIASES.get(code);
+        if (alias == null) {
+            throw new IllegalArgumentException("Unknown country code: " + country);
+        }
+        return alias;
+    }
+
+    private static Map<String, String> aliases() {
+        Map<String, String> aliases = new HashMap<>();
+        for (String alpha2 : ALPHA_2) {
+            aliases.put(Locale.of("", alpha2).getISO3Country(), alpha2);
+        }
+        // Common in user input and accepted by the provider, but reserved rather than assigned in ISO 3166.
+        aliases.put("UK", "GB");
+        return Map.copyOf(aliases);
+    }
+}
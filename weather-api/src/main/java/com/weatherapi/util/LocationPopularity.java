@@ -0,0 +1,160 @@
+package com.weatherapi.util;
+
+import com.weatherapi.model.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate request counts per location, to find the most requested ones.
+ * <p>
+ * Counts live in a count-min sketch: {@value #DEPTH} rows of {@code sketchWidth} counters, where a
+ * location increments one counter per row and is estimated as the smallest of them. Memory stays
+ * fixed however many distinct locations are requested, and estimates can only err high. {@link #decay}
+ * halves every counter, so popularity follows recent traffic rather than all-time totals.
+ * <p>
+ * The sketch cannot list its locations, so up to twice {@code topN} candidates are also tracked by
+ * name. Once they have been ranked, a location joins only when its estimate reaches that of the
+ * {@code topN}-th, which keeps one-off requests out; when all places are taken, one that outranks it
+ * has the candidates cut back to the top N to make room. The provider's city id of a candidate is
+ * kept with it, so that it can be refreshed in group queries.
+ */
+@Component
+public class LocationPopularity {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+    private static final long UNKNOWN_CITY_ID = 0;
+
+    /**
+     * A tracked location with its provider city id, or {@code null} if not known yet.
+     */
+    public record PopularLocation(Location location, Long cityId) {}
+
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final int topN;
+    private final int maxCandidates;
+    // Location to provider city id, UNKNOWN_CITY_ID until a fetch reports it.
+    private final Map<Location, Long> candidates = new ConcurrentHashMap<>();
+    private volatile int admissionThreshold;
+
+    public LocationPopularity(@Value("${weather.prefetch.sketch-width:8192}") int sketchWidth,
+                              @Value("${weather.prefetch.top-n:100}") int topN) {
+        if (sketchWidth <= 0 || topN < 0) {
+            throw new IllegalArgumentException("Sketch width must be positive and top-n not negative");
+        }
+        // A power of two, so a row index is a mask of the hash.
+        this.width = sketchWidth == 1 ? 1 : Integer.highestOneBit(sketchWidth - 1) << 1;
+        this.counters = new AtomicIntegerArray(DEPTH * width);
+        this.topN = topN;
+        this.maxCandidates = 2 * topN;
+    }
+
+    /**
+     * Counts one request for {@code location}, which must be canonical.
+     */
+    public void record(Location location) {
+        int hash = location.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(row, hash)));
+        }
+        if (topN == 0 || estimate < admissionThreshold || candidates.containsKey(location)) {
+            return;
+        }
+        if (candidates.size() >= maxCandidates) {
+            if (estimate == admissionThreshold) {
+                return;
+            }
+            // Outranks the last of the top N: make room now rather than at the next ranking.
+            rank();
+            if (estimate < admissionThreshold) {
+                return;
+            }
+        }
+        candidates.putIfAbsent(location, UNKNOWN_CITY_ID);
+    }
+
+    /**
+     * Returns the estimated number of requests for {@code location} since counting began, halved by
+     * every decay since.
+     */
+    public int estimate(Location location) {
+        int hash = location.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Keeps the provider's city id of {@code location} if it is tracked.
+     */
+    public void rememberCityId(Location location, long cityId) {
+        candidates.computeIfPresent(location, (key, previous) -> cityId);
+    }
+
+    /**
+     * Returns up to {@code topN} tracked locations, most requested first, and stops tracking the rest
+     * to make room for newcomers.
+     */
+    public List<PopularLocation> topLocations() {
+        if (topN == 0) {
+            return List.of();
+        }
+        List<PopularLocation> top = new ArrayList<>(topN);
+        for (Location location : rank()) {
+            Long cityId = candidates.get(location);
+            top.add(new PopularLocation(location, cityId == null || cityId == UNKNOWN_CITY_ID ? null : cityId));
+        }
+        return top;
+    }
+
+    /**
+     * Halves every count.
+     */
+    public synchronized void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            int count;
+            do {
+                count = counters.get(i);
+            } while (count != 0 && !counters.compareAndSet(i, count, count >>> 1));
+        }
+        admissionThreshold >>>= 1;
+    }
+
+    // Cuts the candidates down to the top N, most requested first, and sets the bar for newcomers
+    // to the last of them.
+    private synchronized List<Location> rank() {
+        record Ranked(Location location, int estimate) {}
+        List<Ranked> ranked = new ArrayList<>(candidates.size());
+        for (Location location : candidates.keySet()) {
+            ranked.add(new Ranked(location, estimate(location)));
+        }
+        ranked.sort(Comparator.comparingInt(Ranked::estimate).reversed());
+        List<Location> top = new ArrayList<>(Math.min(topN, ranked.size()));
+        for (int i = 0; i < ranked.size(); i++) {
+            if (i < topN) {
+                top.add(ranked.get(i).location());
+            } else {
+                candidates.remove(ranked.get(i).location());
+            }
+        }
+        admissionThreshold = ranked.size() < topN ? 0 : ranked.get(topN - 1).estimate();
+        return top;
+    }
+
+    private int index(int row, int hash) {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return row * width + (h & (width - 1));
+    }
+}
@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS rate_limit_usage (
+    api_key VARCHAR(255) NOT NULL,
+    window_index BIGINT NOT NULL,
+    consumed BIGINT NOT NULL,
+    PRIMARY KEY (api_key, window_index)
+);
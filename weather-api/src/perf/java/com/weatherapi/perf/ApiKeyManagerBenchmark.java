@@ -0,0 +1,105 @@
+package com.weatherapi.perf;
+
+import com.weatherapi.config.RateLimitProperties;
+import com.weatherapi.ratelimit.InMemoryRateLimitStore;
+import com.weatherapi.ratelimit.RateLimiter;
+import com.weatherapi.ratelimit.SlidingWindowRateLimiter;
+import com.weatherapi.util.ApiKeyManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ApiKeyManager#allowRequest} on 1, 4 and all available threads, with every thread charging
+ * the same key (contended) or a key of its own. {@code admitted} keeps the limit out of reach, so
+ * every call takes a permit; {@code rejected} exhausts it up front, so every call is turned away.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args=ApiKeyManagerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiKeyManagerBenchmark {
+
+    private static final int MAX_KEYS = 256;
+
+    @Param({"SLIDING_WINDOW", "TOKEN_BUCKET"})
+    public RateLimiter.Algorithm algorithm;
+
+    @Param({"admitted", "rejected"})
+    public String outcome;
+
+    @Param({"shared", "per-thread"})
+    public String keys;
+
+    private ApiKeyManager apiKeyManager;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        String apiKey;
+
+        @Setup
+        public void setUp(ApiKeyManagerBenchmark benchmark) {
+            apiKey = benchmark.keys.equals("shared")
+                    ? "KEY_0"
+                    : "KEY_" + benchmark.threadIndex.getAndIncrement() % MAX_KEYS;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        boolean admitted = outcome.equals("admitted");
+        // A limit of MAX_LIMIT per millisecond is never reached; a single permit per hour is gone at once.
+        RateLimitProperties.KeyLimit limit = admitted
+                ? new RateLimitProperties.KeyLimit(SlidingWindowRateLimiter.MAX_LIMIT, Duration.ofMillis(1), null)
+                : new RateLimitProperties.KeyLimit(1, Duration.ofHours(1), null);
+        Map<String, RateLimitProperties.KeyLimit> keyLimits = new HashMap<>();
+        for (int i = 0; i < MAX_KEYS; i++) {
+            keyLimits.put("KEY_" + i, limit);
+        }
+        RateLimitProperties properties = new RateLimitProperties(algorithm, 1, Duration.ofHours(1), keyLimits,
+                RateLimitProperties.StoreType.LOCAL, 0, 0, null);
+        apiKeyManager = new ApiKeyManager(properties, new InMemoryRateLimitStore(), new SimpleMeterRegistry());
+        if (!admitted) {
+            keyLimits.keySet().forEach(apiKeyManager::allowRequest);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean oneThread(ThreadKey key) {
+        return apiKeyManager.allowRequest(key.apiKey);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean fourThreads(ThreadKey key) {
+        return apiKeyManager.allowRequest(key.apiKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean maxThreads(ThreadKey key) {
+        return apiKeyManager.allowRequest(key.apiKey);
+    }
+}
@@ -0,0 +1,228 @@
+package com.weatherapi.perf;
+
+import com.weatherapi.WeatherApiApplication;
+import com.weatherapi.ratelimit.SlidingWindowRateLimiter;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test: starts the application on a random port against a {@link StubWeatherServer},
+ * drives {@code GET /api/weather} from {@code concurrency} virtual threads for {@code duration}, and
+ * prints throughput, status codes and latency percentiles of the requests started after
+ * {@code warmup}, and the number of calls the stub received over the whole run.
+ * <p>
+ * Options are {@code name=value} pairs (defaults in brackets):
+ * <ul>
+ *     <li>{@code concurrency} [64], {@code duration} [30s], {@code warmup} [5s]</li>
+ *     <li>{@code cities} [1000] and {@code citySkew} [1.0], the Zipf exponent of city popularity</li>
+ *     <li>{@code keys} [4] and {@code keySkew} [0], likewise for the API keys requests are spread over;
+ *     each key allows {@code keyLimit} [unlimited] requests per {@code keyWindow} [1s]</li>
+ *     <li>{@code latency} [50ms], {@code errorRate} [0] and {@code payloadBytes} [sample size] of the stub</li>
+ * </ul>
+ * Arguments starting with {@code --} are passed to the application, e.g. {@code --weather.cache.ttl=1m}.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec@load -Dload.args="concurrency=256 citySkew=0.8"}.
+ * Every virtual user waits for its response before sending the next request (closed loop), so when
+ * the service slows down the offered load drops with it; latencies understate what an open-loop
+ * client arriving at a fixed rate would see. A user turned away with a 503 waits as long as its
+ * Retry-After asks before the next request, as well-behaved clients do; without that, requests shed
+ * by the concurrency limit would come straight back.
+ */
+public final class LoadTest {
+
+    private static final String COUNTRY = "GB";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        Map<String, String> appArgs = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            (arg.startsWith("--") ? appArgs : options).put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "64"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "5s"));
+        int cities = Integer.parseInt(options.getOrDefault("cities", "1000"));
+        double citySkew = Double.parseDouble(options.getOrDefault("citySkew", "1.0"));
+        int keys = Integer.parseInt(options.getOrDefault("keys", "4"));
+        double keySkew = Double.parseDouble(options.getOrDefault("keySkew", "0"));
+        String keyLimit = options.getOrDefault("keyLimit", String.valueOf(SlidingWindowRateLimiter.MAX_LIMIT));
+        String keyWindow = options.getOrDefault("keyWindow", "1s");
+        Duration latency = DurationStyle.detectAndParse(options.getOrDefault("latency", "50ms"));
+        double errorRate = Double.parseDouble(options.getOrDefault("errorRate", "0"));
+        int payloadBytes = Integer.parseInt(options.getOrDefault("payloadBytes", "0"));
+
+        try (StubWeatherServer stub = StubWeatherServer.start(latency, errorRate, payloadBytes)) {
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("--server.port", "0");
+            properties.put("--spring.main.banner-mode", "off");
+            properties.put("--logging.level.root", "WARN");
+            properties.put("--openweathermap.api.url", stub.weatherUrl());
+            properties.put("--weather.snapshot.path", "");
+            // The stub has no quota; the load test measures the service, not the provider's limits.
+            // List properties bind from one source only, so the key has to be repeated here.
+            properties.put("--openweathermap.key-pool.keys[0].key", "stub");
+            properties.put("--openweathermap.key-pool.keys[0].per-minute", String.valueOf(Integer.MAX_VALUE));
+            properties.put("--openweathermap.key-pool.keys[0].per-day", String.valueOf(Integer.MAX_VALUE));
+            for (int k = 0; k < keys; k++) {
+                properties.put("--weather.rate-limit.keys[" + key(k) + "].limit", keyLimit);
+                properties.put("--weather.rate-limit.keys[" + key(k) + "].window", keyWindow);
+            }
+            properties.putAll(appArgs);
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApiApplication.class)
+                    .run(properties.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).toArray(String[]::new))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                System.out.printf(Locale.ROOT, "Driving http://127.0.0.1:%d with %d users for %s (warmup %s)%n",
+                        port, concurrency, duration, warmup);
+                Result result = run("http://127.0.0.1:" + port + "/api/weather", concurrency,
+                        warmup, duration, new ZipfDistribution(cities, citySkew), new ZipfDistribution(keys, keySkew));
+                result.print();
+                System.out.printf(Locale.ROOT, "upstream    %d calls, %d of them group queries%n",
+                        stub.requestCount(), stub.groupRequestCount());
+            }
+        }
+    }
+
+    private static Result run(String endpoint, int concurrency, Duration warmup, Duration duration,
+                              ZipfDistribution cities, ZipfDistribution keys) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long endAt = measureFrom + duration.toNanos();
+        AtomicLongArray statuses = new AtomicLongArray(600);
+        LongAdder ioErrors = new LongAdder();
+        List<LatencyLog> logs = new ArrayList<>();
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < concurrency; u++) {
+                LatencyLog log = new LatencyLog();
+                logs.add(log);
+                users.execute(() -> {
+                    long start;
+                    while ((start = System.nanoTime()) < endAt) {
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(
+                                        endpoint + "?city=City" + cities.sample() + "&country=" + COUNTRY))
+                                .header("X-API-Key", key(keys.sample()))
+                                .GET()
+                                .build();
+                        int status;
+                        long retryAfterSeconds = 0;
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            status = response.statusCode();
+                            if (status == 503) {
+                                retryAfterSeconds = response.headers().firstValueAsLong("Retry-After").orElse(0);
+                            }
+                        } catch (IOException e) {
+                            status = -1;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        if (start >= measureFrom) {
+                            log.add(System.nanoTime() - start);
+                            if (status < 0) {
+                                ioErrors.increment();
+                            } else {
+                                statuses.incrementAndGet(status);
+                            }
+                        }
+                        if (retryAfterSeconds > 0) {
+                            try {
+                                Thread.sleep(Duration.ofSeconds(retryAfterSeconds));
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+
+        long[] latencies = LatencyLog.merge(logs);
+        Map<Integer, Long> statusCounts = new LinkedHashMap<>();
+        for (int status = 0; status < statuses.length(); status++) {
+            if (statuses.get(status) > 0) {
+                statusCounts.put(status, statuses.get(status));
+            }
+        }
+        return new Result(duration, latencies, statusCounts, ioErrors.sum());
+    }
+
+    private static String key(int index) {
+        return "LOAD_KEY_" + index;
+    }
+
+    private record Result(Duration duration, long[] latencies, Map<Integer, Long> statuses, long ioErrors) {
+
+        void print() {
+            System.out.printf(Locale.ROOT, "requests    %d%n", latencies.length);
+            System.out.printf(Locale.ROOT, "throughput  %.1f req/s%n", latencies.length / (duration.toNanos() / 1e9));
+            System.out.printf(Locale.ROOT, "statuses    %s, io errors %d%n", statuses, ioErrors);
+            if (latencies.length > 0) {
+                System.out.printf(Locale.ROOT, "latency ms  p50 %.3f  p99 %.3f  p999 %.3f  max %.3f%n",
+                        percentile(0.5), percentile(0.99), percentile(0.999), latencies[latencies.length - 1] / 1e6);
+            }
+        }
+
+        private double percentile(double quantile) {
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /**
+     * Latencies recorded by one virtual user; only that user writes to it.
+     */
+    private static final class LatencyLog {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        static long[] merge(List<LatencyLog> logs) {
+            long[] merged = new long[logs.stream().mapToInt(log -> log.size).sum()];
+            int offset = 0;
+            for (LatencyLog log : logs) {
+                System.arraycopy(log.values, 0, merged, offset, log.size);
+                offset += log.size;
+            }
+            Arrays.sort(merged);
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.weatherapi.perf;
+
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.model.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocationGridIndex#nearest} with 10 thousand and 1 million indexed points, spread either
+ * uniformly over the inhabited latitudes or in {@value #CLUSTERS} clusters like cities and their
+ * suburbs, where cells are far denser. {@code nearestIndexed} looks up coordinates a few kilometres
+ * from an indexed point, the common case of requests around known locations; {@code nearestAnywhere}
+ * looks up arbitrary coordinates, mostly with nothing in reach. {@code add} re-indexes known points,
+ * as every fetch does.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args=LocationIndexBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LocationIndexBenchmark {
+
+    private static final int CLUSTERS = 5_000;
+    private static final int QUERIES = 1 << 14;
+
+    @Param({"10000", "1000000"})
+    public int points;
+
+    @Param({"uniform", "clustered"})
+    public String distribution;
+
+    @Param({"10"})
+    public double radiusKm;
+
+    private LocationGridIndex index;
+    private Location[] locations;
+    private double[] pointCoordinates;
+    private double[] nearIndexed;
+    private double[] anywhere;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new LocationGridIndex(radiusKm);
+        locations = new Location[points];
+        pointCoordinates = new double[2 * points];
+        double[] centres = new double[2 * CLUSTERS];
+        for (int i = 0; i < centres.length; i += 2) {
+            centres[i] = latitude(random);
+            centres[i + 1] = longitude(random);
+        }
+        for (int i = 0; i < points; i++) {
+            double latitude;
+            double longitude;
+            if (distribution.equals("uniform")) {
+                latitude = latitude(random);
+                longitude = longitude(random);
+            } else {
+                int cluster = 2 * random.nextInt(CLUSTERS);
+                // About 50 km either way.
+                latitude = clamp(centres[cluster] + random.nextGaussian() * 0.45, 90);
+                longitude = clamp(centres[cluster + 1] + random.nextGaussian() * 0.45, 180);
+            }
+            locations[i] = new Location("City " + i, "GB");
+            pointCoordinates[2 * i] = latitude;
+            pointCoordinates[2 * i + 1] = longitude;
+            index.add(locations[i], latitude, longitude);
+        }
+        nearIndexed = new double[2 * QUERIES];
+        anywhere = new double[2 * QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int point = random.nextInt(points);
+            nearIndexed[2 * i] = clamp(pointCoordinates[2 * point] + (random.nextDouble() - 0.5) * 0.05, 90);
+            nearIndexed[2 * i + 1] = clamp(pointCoordinates[2 * point + 1] + (random.nextDouble() - 0.5) * 0.05, 180);
+            anywhere[2 * i] = latitude(random);
+            anywhere[2 * i + 1] = longitude(random);
+        }
+    }
+
+    @Benchmark
+    public Location nearestIndexed() {
+        int i = 2 * (next++ & (QUERIES - 1));
+        return index.nearest(nearIndexed[i], nearIndexed[i + 1]);
+    }
+
+    @Benchmark
+    public Location nearestAnywhere() {
+        int i = 2 * (next++ & (QUERIES - 1));
+        return index.nearest(anywhere[i], anywhere[i + 1]);
+    }
+
+    @Benchmark
+    public void add() {
+        int point = next++ % points;
+        index.add(locations[point], pointCoordinates[2 * point], pointCoordinates[2 * point + 1]);
+    }
+
+    private static double latitude(Random random) {
+        return random.nextDouble() * 130 - 60;
+    }
+
+    private static double longitude(Random random) {
+        return random.nextDouble() * 360 - 180;
+    }
+
+    private static double clamp(double value, double limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+}
@@ -0,0 +1,104 @@
+package com.weatherapi.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the latest-report lookup ({@code findFirstByCityAndCountryOrderByTimestampDesc}) as the
+ * report table grows, with and without the location index declared on {@code WeatherReport}.
+ * Reports are spread evenly over {@value #LOCATIONS} locations.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args=ReportLookupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportLookupBenchmark {
+
+    private static final int LOCATIONS = 1_000;
+    private static final int INSERT_BATCH = 5_000;
+
+    // Same statement Hibernate issues for WeatherReportRepository's latest-report query.
+    private static final String LATEST_REPORT_SQL = """
+            SELECT id, city, country, description, timestamp FROM weather_report
+            WHERE city = ? AND country = ? ORDER BY city, country, timestamp DESC FETCH FIRST 1 ROWS ONLY""";
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        // One pooled-like connection, so the measurement is the query rather than connection setup.
+        jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(database.getConnection(), true));
+        jdbcTemplate.execute("""
+                CREATE TABLE weather_report (
+                    id BIGINT PRIMARY KEY,
+                    city VARCHAR(255),
+                    country VARCHAR(255),
+                    description VARCHAR(255),
+                    timestamp BIGINT
+                )""");
+        if (indexed) {
+            jdbcTemplate.execute(
+                    "CREATE INDEX idx_weather_report_location_time ON weather_report (city, country, timestamp DESC, id DESC)");
+        }
+
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH);
+        long start = 1_700_000_000L;
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Object[]{(long) i, "City" + (i % LOCATIONS), "XX", "Cloudy", start + i});
+            if (batch.size() == INSERT_BATCH || i == rows - 1) {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO weather_report (id, city, country, description, timestamp) VALUES (?, ?, ?, ?, ?)",
+                        batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<Long> latestReport() {
+        String city = "City" + ThreadLocalRandom.current().nextInt(LOCATIONS);
+        return jdbcTemplate.query(LATEST_REPORT_SQL, (rs, rowNum) -> rs.getLong("timestamp"), city, "XX");
+    }
+}
@@ -0,0 +1,58 @@
+package com.weatherapi.perf;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapResponseDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding cost of one upstream response: the previous generic {@code Map} tree plus
+ * {@code instanceof} walk against {@link OpenWeatherMapResponseDecoder}.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args="ResponseDecodingBenchmark -prof gc"};
+ * the gc profiler reports bytes allocated per operation ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final byte[] body = StubWeatherServer.SAMPLE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OpenWeatherMapResponseDecoder decoder = new OpenWeatherMapResponseDecoder(objectMapper.getFactory());
+
+    @Benchmark
+    public String mapTree() throws IOException {
+        Map<String, Object> response = objectMapper.readValue(body, MAP_TYPE);
+        if (response.get("weather") instanceof List<?> weather && !weather.isEmpty()
+                && weather.get(0) instanceof Map<?, ?> first && first.get("description") instanceof String description) {
+            return description;
+        }
+        throw new IllegalStateException("Unexpected sample response");
+    }
+
+    @Benchmark
+    public CurrentWeather streamingDecoder() {
+        return decoder.decode(body);
+    }
+}
@@ -0,0 +1,101 @@
+package com.weatherapi.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.weatherapi.model.BatchWeatherResponse;
+import com.weatherapi.model.BatchWeatherResult;
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Size and cost of response bodies in JSON and CBOR: a single report, as served by city or
+ * coordinate, and a batch of 100, the largest common response. {@code write} serializes the body,
+ * {@code writeGzip} also gzips it as the server does for batch responses, and {@code read} parses it
+ * back, the client's share of the cost.
+ * <p>
+ * Body sizes, plain and gzipped, are printed once per trial. Run with
+ * {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args="ResponseFormatBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"report", "batch"})
+    public String payload;
+
+    private ObjectMapper mapper;
+    private Object body;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        mapper = format.equals("cbor") ? json.copyWith(new CBORFactory()) : json;
+        if (payload.equals("report")) {
+            body = report(0);
+        } else {
+            List<BatchWeatherResult> results = new ArrayList<>(100);
+            for (int i = 0; i < 100; i++) {
+                WeatherReport report = report(i);
+                results.add(BatchWeatherResult.success(new Location(report.city(), report.country()), report));
+            }
+            body = new BatchWeatherResponse(results);
+        }
+        serialized = mapper.writeValueAsBytes(body);
+        System.out.printf("%n%s %s: %d bytes, %d gzipped%n", payload, format, serialized.length, gzip(serialized).length);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return mapper.writeValueAsBytes(body);
+    }
+
+    @Benchmark
+    public byte[] writeGzip() throws IOException {
+        return gzip(mapper.writeValueAsBytes(body));
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        return mapper.readValue(serialized, body.getClass());
+    }
+
+    private static WeatherReport report(int i) {
+        return new WeatherReport(1_000L + i, "City " + i, "GB", "light intensity drizzle", 1_700_000_000L + i,
+                51.5085 + i / 100.0, -0.1257 - i / 100.0);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package com.weatherapi.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapi.cache.SerializedReportCache;
+import com.weatherapi.model.WeatherReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Per-response cost of the body of a cached report: serializing it with Jackson (and gzipping it)
+ * on every response, as the message converter did, against looking up the bytes kept by
+ * {@link SerializedReportCache}. {@code descriptionLength} 400 makes the report large enough to be
+ * gzipped.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args="ResponseSerializationBenchmark -prof gc"};
+ * the difference in ns/op is the CPU saved per cache-hit response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"13", "400"})
+    public int descriptionLength;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private SerializedReportCache serializedReports;
+    private WeatherReport report;
+
+    @Setup
+    public void setUp() {
+        serializedReports = new SerializedReportCache(objectMapper, 10_000, 256);
+        report = new WeatherReport(42L, "London", "GB", "x".repeat(descriptionLength), 1_700_000_000L);
+    }
+
+    @Benchmark
+    public byte[] serializeEveryResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(report);
+    }
+
+    @Benchmark
+    public byte[] cachedBytes() {
+        return serializedReports.get(report).body();
+    }
+
+    @Benchmark
+    public byte[] serializeAndGzipEveryResponse() throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(report);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(json.length);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(json);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] cachedGzipBytes() {
+        SerializedReportCache.SerializedReport serialized = serializedReports.get(report);
+        return serialized.gzip() != null ? serialized.gzip() : serialized.body();
+    }
+}
@@ -0,0 +1,180 @@
+package com.weatherapi.perf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the OpenWeatherMap current weather and group endpoints, answering every
+ * request with a representative payload after a fixed latency. Each city gets a stable id derived
+ * from its query, which group queries ({@code group?id=1,2,3}) answer with one payload per id;
+ * coordinate queries ({@code lat=..&lon=..}) are all answered with the sample city. A
+ * fraction {@code errorRate} of requests is answered with a 500 instead, and the payload can be padded
+ * to {@code payloadBytes} with an unused field to mimic larger responses.
+ */
+public final class StubWeatherServer implements AutoCloseable {
+
+    public static final String SAMPLE_RESPONSE = """
+            {"coord":{"lon":-0.1257,"lat":51.5085},\
+            "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04d"}],\
+            "base":"stations",\
+            "main":{"temp":289.57,"feels_like":289.16,"temp_min":288.16,"temp_max":291.06,\
+            "pressure":1012,"humidity":72,"sea_level":1012,"grnd_level":1008},\
+            "visibility":10000,"wind":{"speed":4.63,"deg":240,"gust":8.75},"clouds":{"all":75},\
+            "dt":1718026481,"sys":{"type":2,"id":2075535,"country":"GB","sunrise":1717991043,"sunset":1718050886},\
+            "timezone":3600,"id":2643743,"name":"London","cod":200}""";
+
+    private static final String SAMPLE_CITY_ID_FIELD = "\"id\":";
+    private static final String SAMPLE_CITY_ID = SAMPLE_CITY_ID_FIELD + "2643743";
+
+    static {
+        // Headers and body go out in separate writes; with Nagle's algorithm on, the body then waits for
+        // the client's delayed ACK and every call gains ~40ms that no real provider would add.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Duration latency;
+    private final double errorRate;
+    // The payload around the city id, which differs per city.
+    private final byte[] payloadBeforeId;
+    private final byte[] payloadAfterId;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder groupRequests = new LongAdder();
+
+    private StubWeatherServer(Duration latency, double errorRate, int payloadBytes) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        String payload = payload(payloadBytes);
+        int id = payload.indexOf(SAMPLE_CITY_ID);
+        this.payloadBeforeId = payload.substring(0, id + SAMPLE_CITY_ID_FIELD.length()).getBytes(StandardCharsets.UTF_8);
+        this.payloadAfterId = payload.substring(id + SAMPLE_CITY_ID.length()).getBytes(StandardCharsets.UTF_8);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(executor);
+        server.createContext("/data/2.5/weather", this::handle);
+        server.createContext("/data/2.5/group", this::handleGroup);
+        server.start();
+    }
+
+    public static StubWeatherServer start(Duration latency) throws IOException {
+        return start(latency, 0, 0);
+    }
+
+    public static StubWeatherServer start(Duration latency, double errorRate, int payloadBytes) throws IOException {
+        return new StubWeatherServer(latency, errorRate, payloadBytes);
+    }
+
+    public String weatherUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data/2.5/weather";
+    }
+
+    /**
+     * Returns the number of requests received, group queries included.
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long groupRequestCount() {
+        return groupRequests.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String city = queryParameter(exchange, "q");
+        respond(exchange, List.of(city != null ? cityId(city) : 0), false);
+    }
+
+    private void handleGroup(HttpExchange exchange) throws IOException {
+        groupRequests.increment();
+        String ids = queryParameter(exchange, "id");
+        List<Long> cityIds = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids.split(",")) {
+                cityIds.add(Long.parseLong(id.trim()));
+            }
+        }
+        respond(exchange, cityIds, true);
+    }
+
+    private void respond(HttpExchange exchange, List<Long> cityIds, boolean group) throws IOException {
+        requests.increment();
+        try (exchange) {
+            if (!latency.isZero()) {
+                Thread.sleep(latency);
+            }
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (group) {
+                body.writeBytes(("{\"cnt\":" + cityIds.size() + ",\"list\":[").getBytes(StandardCharsets.UTF_8));
+            }
+            for (int i = 0; i < cityIds.size(); i++) {
+                if (i > 0) {
+                    body.write(',');
+                }
+                body.writeBytes(payloadBeforeId);
+                body.writeBytes(Long.toString(cityIds.get(i)).getBytes(StandardCharsets.UTF_8));
+                body.writeBytes(payloadAfterId);
+            }
+            if (group) {
+                body.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    // Stable and positive, like the provider's ids; collisions between a few thousand cities are rare enough.
+    private static long cityId(String query) {
+        return (query.hashCode() & 0x7fffffffL) + 1;
+    }
+
+    private static String payload(int payloadBytes) {
+        int padding = payloadBytes - SAMPLE_RESPONSE.length() - ",\"padding\":\"\"".length();
+        if (padding <= 0) {
+            return SAMPLE_RESPONSE;
+        }
+        return SAMPLE_RESPONSE.substring(0, SAMPLE_RESPONSE.length() - 1)
+                + ",\"padding\":\"" + "x".repeat(padding) + "\"}";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,91 @@
+package com.weatherapi.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapClient;
+import com.weatherapi.config.CircuitBreakerProperties;
+import com.weatherapi.config.UpstreamClientConfig;
+import com.weatherapi.config.UpstreamClientProperties;
+import com.weatherapi.config.UpstreamKeyProperties;
+import com.weatherapi.metrics.WeatherMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upstream call throughput and latency distribution under concurrency, comparing the previous bare
+ * {@link RestTemplate} (one {@code HttpURLConnection} per call, no timeouts) with
+ * {@link OpenWeatherMapClient} on the pooled JDK client. Both hit a local stub with fixed latency.
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args=UpstreamClientBenchmark}; the
+ * sample-time mode reports p50/p99/p99.9.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(64)
+public class UpstreamClientBenchmark {
+
+    @Param({"5"})
+    public int upstreamLatencyMillis;
+
+    private StubWeatherServer server;
+    private String url;
+    private RestTemplate restTemplate;
+    private OpenWeatherMapClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = StubWeatherServer.start(Duration.ofMillis(upstreamLatencyMillis));
+        url = server.weatherUrl() + "?q=London,GB&appid=key";
+        restTemplate = new RestTemplate();
+
+        UpstreamClientProperties properties = new UpstreamClientProperties(Duration.ofSeconds(2),
+                Duration.ofSeconds(5), Duration.ofSeconds(8), 256, Duration.ofSeconds(8), HttpClient.Version.HTTP_2);
+        CircuitBreakerProperties breakerProperties = new CircuitBreakerProperties(20, 10, 50, 80,
+                Duration.ofSeconds(3), Duration.ofSeconds(30), 3);
+        UpstreamClientConfig config = new UpstreamClientConfig();
+        client = new OpenWeatherMapClient(config.upstreamHttpClient(properties), new ObjectMapper(), properties,
+                config.upstreamCircuitBreaker(breakerProperties), config.upstreamKeyPool(new UpstreamKeyProperties(
+                        List.of(new UpstreamKeyProperties.Key("key", Integer.MAX_VALUE, Integer.MAX_VALUE)), Duration.ZERO)),
+                new WeatherMetrics(new SimpleMeterRegistry()), server.weatherUrl());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Map<?, ?> bareRestTemplate() {
+        return restTemplate.getForObject(url, Map.class);
+    }
+
+    @Benchmark
+    public CurrentWeather pooledClient() {
+        return client.fetchCurrentWeather("London", "GB");
+    }
+}
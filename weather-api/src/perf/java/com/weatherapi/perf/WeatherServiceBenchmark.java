@@ -0,0 +1,108 @@
+package com.weatherapi.perf;
+
+import com.weatherapi.WeatherApiApplication;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import com.weatherapi.ratelimit.SlidingWindowRateLimiter;
+import com.weatherapi.service.WeatherReportWriter;
+import com.weatherapi.service.WeatherService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WeatherService#getWeatherReport} end to end on the real application context, by where the
+ * report is found: the in-memory cache, the database (the cache entry is dropped before every call)
+ * or the upstream provider (a local stub; both TTLs are zero, so no report is ever fresh and every
+ * call fetches and writes a new one).
+ * <p>
+ * Run with {@code ./mvnw -Pperf test-compile exec:exec -Djmh.args="WeatherServiceBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class WeatherServiceBenchmark {
+
+    private static final String API_KEY = "BENCH_KEY";
+
+    @Param({"CACHE", "DATABASE", "UPSTREAM"})
+    public String source;
+
+    @Param({"0"})
+    public int upstreamLatencyMillis;
+
+    private StubWeatherServer server;
+    private ConfigurableApplicationContext context;
+    private WeatherService weatherService;
+    private WeatherReportCache cache;
+    private final Location location = new Location("London", "GB");
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        server = StubWeatherServer.start(Duration.ofMillis(upstreamLatencyMillis));
+        String ttl = source.equals("UPSTREAM") ? "0s" : "1h";
+        context = new SpringApplicationBuilder(WeatherApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--logging.level.root=WARN",
+                        "--openweathermap.api.url=" + server.weatherUrl(),
+                        "--weather.snapshot.path=",
+                        "--openweathermap.key-pool.keys[0].key=stub",
+                        "--openweathermap.key-pool.keys[0].per-minute=" + Integer.MAX_VALUE,
+                        "--openweathermap.key-pool.keys[0].per-day=" + Integer.MAX_VALUE,
+                        "--weather.report.soft-ttl=" + ttl,
+                        "--weather.report.hard-ttl=" + ttl,
+                        "--weather.rate-limit.keys[" + API_KEY + "].limit=" + SlidingWindowRateLimiter.MAX_LIMIT,
+                        "--weather.rate-limit.keys[" + API_KEY + "].window=1ms");
+        weatherService = context.getBean(WeatherService.class);
+        cache = context.getBean(WeatherReportCache.class);
+
+        if (!source.equals("UPSTREAM")) {
+            WeatherReportWriter writer = context.getBean(WeatherReportWriter.class);
+            writer.write(new WeatherReport(null, location.city(), location.country(), "broken clouds",
+                    Instant.now().getEpochSecond()));
+            while (writer.pendingCount() > 0) {
+                Thread.sleep(10);
+            }
+            // The queue empties before the batch is committed.
+            Thread.sleep(500);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        server.close();
+    }
+
+    @Benchmark
+    public WeatherReport getWeatherReport() {
+        if (source.equals("DATABASE")) {
+            cache.invalidate(location);
+        }
+        return weatherService.getWeatherReport(location.city(), location.country(), API_KEY);
+    }
+}
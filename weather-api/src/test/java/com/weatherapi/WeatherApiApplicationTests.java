@@ -1,13 +1,89 @@
 package com.weatherapi;
 
+import com.weatherapi.model.WeatherReport;
+import com.weatherapi.repository.WeatherReportRepository;
+import com.weatherapi.service.WeatherReportWriter;
+import com.weatherapi.util.ApiKeyManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 
-@SpringBootTest
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "weather.snapshot.path=")
 class WeatherApiApplicationTests {
 
+    @Autowired
+    private ApiKeyManager apiKeyManager;
+
+    @Autowired
+    private WeatherReportWriter reportWriter;
+
+    @Autowired
+    private WeatherReportRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void apiKeysBoundFromConfiguration() {
+        assertTrue(apiKeyManager.isValidApiKey("API_KEY_1"));
+        assertTrue(apiKeyManager.isValidApiKey("API_KEY_5"));
+        assertFalse(apiKeyManager.isValidApiKey("API_KEY_6"));
+    }
+
+    @Test
+    void writtenReportReadableThroughRepository() throws InterruptedException {
+        WeatherReport written = reportWriter.write(
+                new WeatherReport(null, "Oslo", "NO", "Snow", Instant.now().getEpochSecond()));
+        assertNotNull(written.id());
+
+        Optional<WeatherReport> stored = Optional.empty();
+        for (int i = 0; i < 100 && stored.isEmpty(); i++) {
+            Thread.sleep(20);
+            stored = repository.findFirstByCityAndCountryOrderByTimestampDesc("Oslo", "NO");
+        }
+
+        assertEquals(Optional.of(written), stored);
+    }
+
+    @Test
+    void reportTableIndexedForLatestReportLookup() {
+        List<String> columns = jdbcTemplate.queryForList("""
+                SELECT COLUMN_NAME FROM INFORMATION_SCHEMA.INDEX_COLUMNS
+                WHERE INDEX_NAME = 'IDX_WEATHER_REPORT_LOCATION_TIME' ORDER BY ORDINAL_POSITION""", String.class);
+
+        assertEquals(List.of("CITY", "COUNTRY", "TIMESTAMP", "ID"), columns);
+    }
+
+    @Test
+    void serviceMetersRegisteredAtStartup() {
+        assertEquals(9, meterRegistry.find("weather.requests").timers().size());
+        assertEquals(5, meterRegistry.find("weather.ratelimit.rejections").counters().size());
+        assertTrue(meterRegistry.getMeters().stream()
+                .flatMap(meter -> meter.getId().getTags().stream())
+                .noneMatch(tag -> apiKeyManager.isValidApiKey(tag.getValue())));
+        assertNotNull(meterRegistry.find("weather.upstream.circuit_breaker.state").tag("state", "closed").gauge());
+        assertEquals(1.0, meterRegistry.get("weather.upstream.circuit_breaker.state").tag("state", "closed")
+                .gauge().value());
+        assertNotNull(meterRegistry.find("weather.write_behind.pending").gauge());
+        assertEquals(2, meterRegistry.find("weather.virtual_threads.active").gauges().size());
+    }
+
 }
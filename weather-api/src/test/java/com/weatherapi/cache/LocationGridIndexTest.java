@@ -0,0 +1,118 @@
+package com.weatherapi.cache;
+
+import com.weatherapi.model.Location;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationGridIndexTest {
+
+    private static final Location LONDON = new Location("London", "GB");
+    private static final Location CROYDON = new Location("Croydon", "GB");
+
+    @Test
+    void nearest_PointWithinRadius_ReturnedAndBeyondRadiusIgnored() {
+        LocationGridIndex index = new LocationGridIndex(10);
+        index.add(LONDON, 51.5085, -0.1257);
+
+        assertEquals(LONDON, index.nearest(51.45, -0.1));
+        // Watford, about 25 km away.
+        assertNull(index.nearest(51.6565, -0.3903));
+    }
+
+    @Test
+    void nearest_SeveralWithinRadius_NearestReturned() {
+        LocationGridIndex index = new LocationGridIndex(20);
+        index.add(LONDON, 51.5085, -0.1257);
+        index.add(CROYDON, 51.3816, -0.0982);
+
+        assertEquals(CROYDON, index.nearest(51.40, -0.1));
+        assertEquals(LONDON, index.nearest(51.49, -0.1));
+    }
+
+    @Test
+    void nearest_AcrossAntimeridian_Found() {
+        LocationGridIndex index = new LocationGridIndex(10);
+        Location taveuni = new Location("Taveuni", "FJ");
+        index.add(taveuni, -16.85, 179.99);
+
+        assertEquals(taveuni, index.nearest(-16.85, -179.97));
+    }
+
+    @Test
+    void nearest_HighLatitude_PointSeveralColumnsAwayFound() {
+        LocationGridIndex index = new LocationGridIndex(10);
+        Location tromso = new Location("Tromsø", "NO");
+        index.add(tromso, 69.6496, 18.957);
+
+        // 0.2 degrees of longitude is about 7.7 km here, but more than a cell wide.
+        assertEquals(tromso, index.nearest(69.6496, 19.157));
+    }
+
+    @Test
+    void nearest_NearPole_PointOnOtherSideFound() {
+        LocationGridIndex index = new LocationGridIndex(20);
+        Location station = new Location("Station", "AQ");
+        index.add(station, -89.95, 170);
+
+        assertEquals(station, index.nearest(-89.95, -10));
+        assertEquals(station, index.nearest(-90, 0));
+    }
+
+    @Test
+    void nearest_RandomPoints_MatchesLinearScan() {
+        LocationGridIndex index = new LocationGridIndex(50);
+        Random random = new Random(42);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double[] point = {random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180};
+            points.add(point);
+            index.add(new Location("City " + i, "GB"), point[0], point[1]);
+        }
+
+        for (int query = 0; query < 2000; query++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            Location expected = null;
+            double nearest = 50;
+            for (int i = 0; i < points.size(); i++) {
+                double distance = LocationGridIndex.distanceKm(latitude, longitude, points.get(i)[0], points.get(i)[1]);
+                if (distance <= nearest) {
+                    expected = new Location("City " + i, "GB");
+                    nearest = distance;
+                }
+            }
+            assertEquals(expected, index.nearest(latitude, longitude), latitude + "," + longitude);
+        }
+    }
+
+    @Test
+    void add_SameLocationInOneCell_IndexedOnce() {
+        LocationGridIndex index = new LocationGridIndex(10);
+
+        index.add(LONDON, 51.5085, -0.1257);
+        index.add(LONDON, 51.5086, -0.1258);
+        index.add(LONDON, 51.3, -1.8);
+
+        assertEquals(2, index.size());
+        assertEquals(LONDON, index.nearest(51.31, -1.79));
+    }
+
+    @Test
+    void distanceKm_LondonToParis_AboutThreeHundredFortyKilometres() {
+        assertEquals(343.5, LocationGridIndex.distanceKm(51.5085, -0.1257, 48.8534, 2.3488), 1);
+    }
+
+    @Test
+    void constructorAndLookups_InvalidArguments_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LocationGridIndex(0));
+        LocationGridIndex index = new LocationGridIndex(10);
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(90.5, 0));
+        assertThrows(IllegalArgumentException.class, () -> index.add(LONDON, 0, 181));
+        assertThrows(IllegalArgumentException.class, () -> index.cellKey(Double.NaN, 0));
+    }
+}
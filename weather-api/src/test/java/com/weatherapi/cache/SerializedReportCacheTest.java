@@ -0,0 +1,75 @@
+package com.weatherapi.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.weatherapi.model.WeatherReport;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializedReportCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SerializedReportCache cache = new SerializedReportCache(objectMapper, 100, 256);
+
+    @Test
+    void get_SameReport_SerializedOnce() throws Exception {
+        WeatherReport report = new WeatherReport(1L, "London", "GB", "Cloudy", 1_700_000_000L);
+
+        SerializedReportCache.SerializedReport first = cache.get(report);
+
+        assertSame(first, cache.get(report));
+        assertArrayEquals(objectMapper.writeValueAsBytes(report), first.body());
+    }
+
+    @Test
+    void get_ReplacedReport_SerializedAgain() {
+        WeatherReport report = new WeatherReport(1L, "London", "GB", "Cloudy", 1_700_000_000L);
+        WeatherReport stale = report.asStale();
+        WeatherReport equalCopy = new WeatherReport(1L, "London", "GB", "Cloudy", 1_700_000_000L);
+
+        byte[] json = cache.get(report).body();
+
+        assertNotSame(json, cache.get(equalCopy).body());
+        assertTrue(new String(cache.get(stale).body()).contains("\"stale\":true"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void get_SmallReport_NoGzipCopy() {
+        WeatherReport report = new WeatherReport(1L, "London", "GB", "Cloudy", 1_700_000_000L);
+
+        assertNull(cache.get(report).gzip());
+    }
+
+    @Test
+    void get_LargeReport_KeepsGzipCopyOfSameJson() throws IOException {
+        WeatherReport report = new WeatherReport(1L, "London", "GB", "Cloudy ".repeat(50), 1_700_000_000L);
+
+        SerializedReportCache.SerializedReport serialized = cache.get(report);
+
+        assertNotNull(serialized.gzip());
+        assertTrue(serialized.gzip().length < serialized.body().length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(serialized.gzip()))) {
+            assertArrayEquals(serialized.body(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void get_Cbor_SameFieldsAsJsonAndCachedSeparately() throws Exception {
+        WeatherReport report = new WeatherReport(1L, "London", "GB", "Cloudy", 1_700_000_000L, 51.5085, -0.1257);
+
+        SerializedReportCache.SerializedReport cbor = cache.get(report, SerializedReportCache.Format.CBOR);
+        SerializedReportCache.SerializedReport json = cache.get(report);
+
+        assertSame(cbor, cache.get(report, SerializedReportCache.Format.CBOR));
+        assertTrue(cbor.body().length < json.body().length);
+        assertEquals(objectMapper.readTree(json.body()), new CBORMapper().readTree(cbor.body()));
+        assertEquals(2, cache.size());
+    }
+}
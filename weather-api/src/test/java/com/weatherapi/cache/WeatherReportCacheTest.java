@@ -0,0 +1,83 @@
+package com.weatherapi.cache;
+
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherReportCacheTest {
+
+    private static final Location LONDON = new Location("London", "UK");
+
+    private static WeatherReport report(Location location, long ageSeconds) {
+        return new WeatherReport(1L, location.city(), location.country(), "Cloudy",
+                Instant.now().getEpochSecond() - ageSeconds);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WeatherReportCache.EvictionPolicy.class)
+    void get_AfterPut_ReturnsReportAndCountsHit(WeatherReportCache.EvictionPolicy policy) {
+        WeatherReportCache cache = new WeatherReportCache(10, Duration.ofHours(1), policy);
+        WeatherReport report = report(LONDON, 60);
+
+        assertTrue(cache.get(LONDON).isEmpty());
+        cache.put(LONDON, report);
+
+        assertEquals(report, cache.get(LONDON).orElseThrow());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WeatherReportCache.EvictionPolicy.class)
+    void put_ReportOlderThanTtl_IsNotCached(WeatherReportCache.EvictionPolicy policy) {
+        WeatherReportCache cache = new WeatherReportCache(10, Duration.ofHours(1), policy);
+
+        cache.put(LONDON, report(LONDON, 3600));
+
+        assertTrue(cache.get(LONDON).isEmpty());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WeatherReportCache.EvictionPolicy.class)
+    void invalidate_RemovesEntry(WeatherReportCache.EvictionPolicy policy) {
+        WeatherReportCache cache = new WeatherReportCache(10, Duration.ofHours(1), policy);
+        cache.put(LONDON, report(LONDON, 0));
+
+        cache.invalidate(LONDON);
+
+        assertTrue(cache.get(LONDON).isEmpty());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WeatherReportCache.EvictionPolicy.class)
+    void put_BeyondMaximumSize_EvictsAndCountsEvictions(WeatherReportCache.EvictionPolicy policy) {
+        WeatherReportCache cache = new WeatherReportCache(10, Duration.ofHours(1), policy);
+
+        for (int i = 0; i < 50; i++) {
+            Location location = new Location("City" + i, "XX");
+            cache.put(location, report(location, 0));
+        }
+
+        WeatherReportCache.Stats stats = cache.stats();
+        assertEquals(10, stats.size());
+        assertEquals(40, stats.evictionCount());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WeatherReportCache.EvictionPolicy.class)
+    void put_ExistingLocation_ReplacesReport(WeatherReportCache.EvictionPolicy policy) {
+        WeatherReportCache cache = new WeatherReportCache(10, Duration.ofHours(1), policy);
+        cache.put(LONDON, report(LONDON, 120));
+        WeatherReport newer = new WeatherReport(2L, "London", "UK", "Rain", Instant.now().getEpochSecond());
+
+        cache.put(LONDON, newer);
+
+        assertEquals(newer, cache.get(LONDON).orElseThrow());
+    }
+}
@@ -0,0 +1,212 @@
+package com.weatherapi.client;
+
+import com.weatherapi.config.CircuitBreakerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final Duration FAST = Duration.ofMillis(10);
+    private static final Duration SLOW = Duration.ofSeconds(5);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            new CircuitBreakerProperties(10, 5, 50, 80, Duration.ofSeconds(1), Duration.ofSeconds(30), 2), clock);
+
+    private long acquire() {
+        long permission = circuitBreaker.tryAcquirePermission();
+        assertNotEquals(CircuitBreaker.NOT_PERMITTED, permission);
+        return permission;
+    }
+
+    private void call(boolean failed, Duration duration) {
+        circuitBreaker.onCallCompleted(acquire(), failed, duration);
+    }
+
+    private void open() {
+        for (int i = 0; i < 5; i++) {
+            call(true, FAST);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    @Test
+    void onCallCompleted_FailuresBelowMinimumCalls_StaysClosed() {
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+
+    @Test
+    void onCallCompleted_FailureRateReachesThreshold_Opens() {
+        for (int i = 0; i < 5; i++) {
+            call(false, FAST);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(true, FAST);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+
+        call(true, FAST);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+        assertEquals(1, circuitBreaker.metrics().notPermittedCalls());
+    }
+
+    @Test
+    void onCallCompleted_OldOutcomesLeaveSlidingWindow() {
+        call(true, FAST);
+        call(true, FAST);
+        for (int i = 0; i < 10; i++) {
+            call(false, FAST);
+        }
+
+        CircuitBreaker.Metrics metrics = circuitBreaker.metrics();
+        assertEquals(10, metrics.bufferedCalls());
+        assertEquals(0, metrics.failedCalls());
+        assertEquals(CircuitBreaker.State.CLOSED, metrics.state());
+    }
+
+    @Test
+    void onCallCompleted_SlowCallRateReachesThreshold_Opens() {
+        call(false, FAST);
+        for (int i = 0; i < 4; i++) {
+            call(false, SLOW);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    @Test
+    void tryAcquirePermission_AfterOpenWait_LetsTrialCallsThroughHalfOpen() {
+        open();
+        clock.advance(Duration.ofSeconds(29));
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+
+        clock.advance(Duration.ofSeconds(1));
+
+        acquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        acquire();
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void onCallCompleted_SuccessfulTrialCalls_Close() {
+        open();
+        clock.advance(Duration.ofSeconds(30));
+
+        call(false, FAST);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        call(false, FAST);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(0, circuitBreaker.metrics().bufferedCalls());
+    }
+
+    @Test
+    void onCallCompleted_FailedTrialCalls_Reopen() {
+        open();
+        clock.advance(Duration.ofSeconds(30));
+
+        call(false, FAST);
+        call(true, FAST);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasePermission_UnusedTrialPermit_IsHandedBack() {
+        open();
+        clock.advance(Duration.ofSeconds(30));
+        acquire();
+        long unused = acquire();
+
+        circuitBreaker.releasePermission(unused);
+
+        acquire();
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void onCallCompleted_CallStartedBeforeOpening_DoesNotCountAsTrialCall() {
+        long slowCall = acquire();
+        open();
+        clock.advance(Duration.ofSeconds(30));
+        call(false, FAST);
+
+        circuitBreaker.onCallCompleted(slowCall, false, FAST);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertEquals(1, circuitBreaker.metrics().bufferedCalls());
+        call(true, FAST);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    @Test
+    void releasePermission_PermitOfEarlierState_IsIgnored() {
+        long unused = acquire();
+        open();
+        clock.advance(Duration.ofSeconds(30));
+        acquire();
+        acquire();
+
+        circuitBreaker.releasePermission(unused);
+
+        assertEquals(CircuitBreaker.NOT_PERMITTED, circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void onStateTransition_NotifiesListeners() {
+        List<CircuitBreaker.Transition> transitions = new ArrayList<>();
+        circuitBreaker.onStateTransition(transitions::add);
+
+        open();
+        clock.advance(Duration.ofSeconds(30));
+        call(false, FAST);
+        call(false, FAST);
+
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions.stream().map(CircuitBreaker.Transition::to).toList());
+        assertEquals(clock.instant(), transitions.get(2).at());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
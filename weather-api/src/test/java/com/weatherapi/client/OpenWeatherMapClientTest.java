@@ -0,0 +1,313 @@
+package com.weatherapi.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.weatherapi.config.CircuitBreakerProperties;
+import com.weatherapi.config.UpstreamClientProperties;
+import com.weatherapi.config.UpstreamKeyProperties;
+import com.weatherapi.exception.ErrorCode;
+import com.weatherapi.exception.UpstreamUnavailableException;
+import com.weatherapi.exception.WeatherApiException;
+import com.weatherapi.metrics.WeatherMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenWeatherMapClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> body = new AtomicReference<>("{\"weather\":[{\"description\":\"Cloudy\"}]}");
+    private final AtomicReference<Duration> delay = new AtomicReference<>(Duration.ZERO);
+    private final AtomicReference<String> lastPath = new AtomicReference<>();
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            new CircuitBreakerProperties(4, 4, 50, 100, Duration.ofSeconds(10), Duration.ofMinutes(1), 1), Clock.systemUTC());
+    private final Clock clock = Clock.fixed(Instant.parse("2023-01-01T12:00:00Z"), ZoneOffset.UTC);
+    private UpstreamKeyPool keyPool = keyPool(new UpstreamKeyProperties.Key("key", 100, 1000));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WeatherMetrics metrics = new WeatherMetrics(meterRegistry);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                lastPath.set(exchange.getRequestURI().getPath());
+                lastQuery.set(exchange.getRequestURI().getRawQuery());
+                Thread.sleep(delay.get().toMillis());
+                byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status.get(), bytes.length == 0 ? -1 : bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private OpenWeatherMapClient client(Duration totalTimeout, int maxConcurrentPerHost) {
+        return client(totalTimeout, maxConcurrentPerHost, totalTimeout);
+    }
+
+    private OpenWeatherMapClient client(Duration totalTimeout, int maxConcurrentPerHost, Duration bulkheadMaxWait) {
+        UpstreamClientProperties properties = new UpstreamClientProperties(Duration.ofSeconds(1),
+                Duration.ofSeconds(5), totalTimeout, maxConcurrentPerHost, bulkheadMaxWait, HttpClient.Version.HTTP_1_1);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(properties.httpVersion())
+                .connectTimeout(properties.connectTimeout())
+                .build();
+        return new OpenWeatherMapClient(httpClient, new ObjectMapper(), properties, circuitBreaker, keyPool, metrics,
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/data/2.5/weather");
+    }
+
+    private UpstreamKeyPool keyPool(UpstreamKeyProperties.Key... keys) {
+        return new UpstreamKeyPool(new UpstreamKeyProperties(List.of(keys), Duration.ZERO), clock);
+    }
+
+    @Test
+    void fetchCurrentWeather_Ok_ReturnsDecodedBody() {
+        CurrentWeather response = client(Duration.ofSeconds(2), 4).fetchCurrentWeather("London", "UK");
+
+        assertEquals("Cloudy", response.description());
+        assertEquals("q=London%2CUK&appid=key", lastQuery.get());
+        assertEquals(1, upstreamCalls("success"));
+    }
+
+    @Test
+    void fetchCurrentWeather_CityWithSpace_EncodesQuery() {
+        client(Duration.ofSeconds(2), 4).fetchCurrentWeather("New York", "US");
+
+        assertEquals("q=New%20York%2CUS&appid=key", lastQuery.get());
+    }
+
+    @Test
+    void fetchCurrentWeather_ReservedCharactersInCity_StayInsideQueryParameter() {
+        client(Duration.ofSeconds(2), 4).fetchCurrentWeather("A&appid=other#x", "US");
+
+        assertEquals("q=A%26appid%3Dother%23x%2CUS&appid=key", lastQuery.get());
+    }
+
+    @Test
+    void fetchCurrentWeather_EmptyBody_ThrowsExternalApiError() {
+        body.set("");
+
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> client(Duration.ofSeconds(2), 4).fetchCurrentWeather("London", "UK"));
+        assertEquals("No response from weather API", e.getMessage());
+    }
+
+    @Test
+    void fetchCurrentWeather_ErrorStatus_ThrowsExternalApiError() {
+        status.set(500);
+
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> client(Duration.ofSeconds(2), 4).fetchCurrentWeather("London", "UK"));
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR, e.getErrorCode());
+        assertEquals("Weather API responded with status 500", e.getMessage());
+    }
+
+    @Test
+    void fetchCurrentWeather_SlowUpstream_TimesOutWithinTotalTimeout() {
+        delay.set(Duration.ofSeconds(2));
+        OpenWeatherMapClient client = client(Duration.ofMillis(200), 4);
+
+        long start = System.nanoTime();
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> client.fetchCurrentWeather("London", "UK"));
+
+        assertEquals("Weather API timed out", e.getMessage());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1500);
+        assertEquals(1, upstreamCalls("timeout"));
+    }
+
+    @Test
+    void fetchCurrentWeather_ConcurrentCalls_CappedPerHost() throws Exception {
+        delay.set(Duration.ofMillis(100));
+        OpenWeatherMapClient client = client(Duration.ofSeconds(5), 2);
+
+        List<Future<CurrentWeather>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> client.fetchCurrentWeather("London", "UK")));
+            }
+        }
+
+        for (Future<CurrentWeather> result : results) {
+            assertNotNull(result.get());
+        }
+        assertTrue(maxInFlight.get() <= 2, "max in flight: " + maxInFlight.get());
+    }
+
+    @Test
+    void fetchCurrentWeather_BulkheadFull_RejectsAfterMaxWait() throws Exception {
+        delay.set(Duration.ofMillis(500));
+        OpenWeatherMapClient client = client(Duration.ofSeconds(5), 1, Duration.ofMillis(50));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<CurrentWeather> first = executor.submit(() -> client.fetchCurrentWeather("London", "UK"));
+            while (inFlight.get() == 0) {
+                Thread.sleep(5);
+            }
+
+            UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                    () -> client.fetchCurrentWeather("London", "UK"));
+            assertEquals("Too many concurrent calls to weather API", e.getMessage());
+            assertEquals(1, client.inFlightCalls());
+            assertNotNull(first.get());
+        }
+        assertEquals(1, upstreamRejections("bulkhead_full"));
+        assertEquals(0, client.inFlightCalls());
+    }
+
+    @Test
+    void fetchCurrentWeather_RepeatedServerErrors_OpenCircuitAndStopCallingUpstream() {
+        status.set(503);
+        OpenWeatherMapClient client = client(Duration.ofSeconds(2), 4);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(WeatherApiException.class, () -> client.fetchCurrentWeather("London", "UK"));
+        }
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> client.fetchCurrentWeather("London", "UK"));
+
+        assertEquals("Weather API circuit breaker is open", e.getMessage());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(4, upstreamCalls("server_error"));
+        assertEquals(1, upstreamRejections("circuit_open"));
+    }
+
+    @Test
+    void fetchCurrentWeather_ClientErrors_DoNotOpenCircuit() {
+        status.set(404);
+        OpenWeatherMapClient client = client(Duration.ofSeconds(2), 4);
+
+        for (int i = 0; i < 8; i++) {
+            WeatherApiException e = assertThrows(WeatherApiException.class,
+                    () -> client.fetchCurrentWeather("Nowhere", "UK"));
+            assertEquals("Weather API responded with status 404", e.getMessage());
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(8, upstreamCalls("client_error"));
+    }
+
+    @Test
+    void fetchCurrentWeatherGroup_Ok_QueriesGroupEndpointAndDecodesEveryCity() {
+        body.set("""
+                {"cnt":2,"list":[{"weather":[{"description":"Cloudy"}],"id":2643743},
+                                 {"weather":[{"description":"Rain"}],"id":2988507}]}""");
+
+        List<CurrentWeather> group = client(Duration.ofSeconds(2), 4).fetchCurrentWeatherGroup(List.of(2643743L, 2988507L));
+
+        assertEquals(List.of(new CurrentWeather("Cloudy", 2643743L), new CurrentWeather("Rain", 2988507L)), group);
+        assertEquals("/data/2.5/group", lastPath.get());
+        assertEquals("id=2643743%2C2988507&appid=key", lastQuery.get());
+        assertEquals(1, upstreamCalls("success"));
+    }
+
+    @Test
+    void fetchCurrentWeatherAt_Coordinates_QueriesCurrentWeatherEndpointByLatitudeAndLongitude() {
+        body.set("""
+                {"coord":{"lon":-0.1257,"lat":51.5085},"weather":[{"description":"Cloudy"}],
+                 "sys":{"country":"GB"},"id":2643743,"name":"London"}""");
+
+        CurrentWeather weather = client(Duration.ofSeconds(2), 4).fetchCurrentWeatherAt(51.52, -0.11);
+
+        assertEquals(new CurrentWeather("Cloudy", 2643743L, "London", "GB", 51.5085, -0.1257), weather);
+        assertEquals("/data/2.5/weather", lastPath.get());
+        assertEquals("lat=51.52&lon=-0.11&appid=key", lastQuery.get());
+    }
+
+    @Test
+    void fetchCurrentWeatherGroup_TooManyCities_Rejected() {
+        List<Long> cityIds = LongStream.rangeClosed(1, 21).boxed().toList();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> client(Duration.ofSeconds(2), 4).fetchCurrentWeatherGroup(cityIds));
+        assertNull(lastQuery.get());
+    }
+
+    @Test
+    void fetchCurrentWeather_SeveralKeys_UsesKeyWithMostQuotaLeft() {
+        keyPool = keyPool(new UpstreamKeyProperties.Key("small", 2, 1000), new UpstreamKeyProperties.Key("large", 3, 1000));
+        OpenWeatherMapClient client = client(Duration.ofSeconds(2), 4);
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            client.fetchCurrentWeather("London", "GB");
+            queries.add(lastQuery.get().substring(lastQuery.get().indexOf("appid=")));
+        }
+
+        assertEquals(List.of("appid=large", "appid=small", "appid=large", "appid=small", "appid=large"), queries);
+    }
+
+    @Test
+    void fetchCurrentWeather_QuotaExhausted_ShedWithoutCallingUpstream() {
+        keyPool = keyPool(new UpstreamKeyProperties.Key("key", 1, 1000));
+        OpenWeatherMapClient client = client(Duration.ofSeconds(2), 4);
+        client.fetchCurrentWeather("London", "GB");
+
+        UpstreamUnavailableException e = assertThrows(UpstreamUnavailableException.class,
+                () -> client.fetchCurrentWeather("London", "GB"));
+
+        assertEquals("Weather API quota is exhausted for every key", e.getMessage());
+        assertEquals(1, upstreamCalls("success"));
+        assertEquals(1, upstreamRejections("quota_exhausted"));
+        assertEquals(0, client.inFlightCalls());
+    }
+
+    @Test
+    void fetchCurrentWeather_TooManyRequests_KeyExhaustedForTheMinute() {
+        status.set(429);
+        OpenWeatherMapClient client = client(Duration.ofSeconds(2), 4);
+
+        assertThrows(WeatherApiException.class, () -> client.fetchCurrentWeather("London", "GB"));
+
+        assertEquals(0, keyPool.remainingThisMinute(0));
+        assertThrows(UpstreamUnavailableException.class, () -> client.fetchCurrentWeather("London", "GB"));
+        assertEquals(1, upstreamCalls("server_error"));
+    }
+
+    private long upstreamCalls(String outcome) {
+        return meterRegistry.get("weather.upstream.calls").tag("outcome", outcome).timer().count();
+    }
+
+    private double upstreamRejections(String reason) {
+        return meterRegistry.get("weather.upstream.rejections").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,112 @@
+package com.weatherapi.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.weatherapi.exception.ErrorCode;
+import com.weatherapi.exception.WeatherApiException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenWeatherMapResponseDecoderTest {
+
+    private final OpenWeatherMapResponseDecoder decoder = new OpenWeatherMapResponseDecoder(new JsonFactory());
+
+    private CurrentWeather decode(String json) {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decode_FullResponse_ReturnsFirstDescription() {
+        CurrentWeather weather = decode("""
+                {"coord":{"lon":-0.13,"lat":51.51},
+                 "weather":[{"id":803,"main":"Clouds","description":"broken clouds","icon":"04d"},
+                            {"id":500,"main":"Rain","description":"light rain","icon":"10d"}],
+                 "main":{"temp":289.57,"pressure":1012},"name":"London","cod":200}""");
+
+        assertEquals("broken clouds", weather.description());
+    }
+
+    @Test
+    void decode_NestedValuesBeforeDescription_AreSkipped() {
+        CurrentWeather weather = decode("""
+                {"weather":[{"extra":{"description":"nested"},"tags":["a",{"b":[1]}],"description":"Cloudy"}]}""");
+
+        assertEquals("Cloudy", weather.description());
+    }
+
+    @Test
+    void decode_CityId_ReturnedWithDescription() {
+        CurrentWeather weather = decode("""
+                {"weather":[{"id":803,"description":"Cloudy"}],"sys":{"id":2075535},"id":2643743,"name":"London"}""");
+
+        assertEquals(new CurrentWeather("Cloudy", 2643743L, "London", null, null, null), weather);
+    }
+
+    @Test
+    void decode_NameCountryAndCoordinates_ReturnedWithDescription() {
+        CurrentWeather weather = decode("""
+                {"coord":{"lon":-0.1257,"lat":51.5085},"weather":[{"description":"Cloudy"}],
+                 "sys":{"type":2,"country":"GB","sunrise":1700000000},"id":2643743,"name":"London"}""");
+
+        assertEquals(new CurrentWeather("Cloudy", 2643743L, "London", "GB", 51.5085, -0.1257), weather);
+    }
+
+    @Test
+    void decode_IncompleteCoordinates_Ignored() {
+        CurrentWeather weather = decode("""
+                {"coord":{"lat":51.5085,"lon":null},"weather":[{"description":"Cloudy"}]}""");
+
+        assertFalse(weather.hasCoordinates());
+    }
+
+    @Test
+    void decodeGroup_List_DecodesEveryCity() {
+        List<CurrentWeather> group = decoder.decodeGroup("""
+                {"cnt":2,"list":[{"weather":[{"description":"Cloudy"}],"id":1},
+                                 {"weather":[{"description":"Rain"}],"id":2,"name":"Paris"}]}"""
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(List.of(new CurrentWeather("Cloudy", 1L),
+                new CurrentWeather("Rain", 2L, "Paris", null, null, null)), group);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "''                                        | No response from weather API",
+            "{\"cnt\":1}                               | Invalid weather data format",
+            "{\"list\":[{\"id\":1}]}                   | Invalid weather data format",
+            "{\"list\":[{\"weather\":[]}]}             | Weather data is empty",
+    })
+    void decodeGroup_InvalidResponse_ThrowsExternalApiError(String json, String message) {
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> decoder.decodeGroup(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(message, e.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "''                                        | No response from weather API",
+            "null                                      | No response from weather API",
+            "[]                                        | Invalid weather data format",
+            "{\"invalid\":\"data\"}                    | Invalid weather data format",
+            "{\"weather\":{\"description\":\"x\"}}     | Invalid weather data format",
+            "{\"weather\":[]}                          | Weather data is empty",
+            "{\"weather\":[\"Cloudy\"]}                | Invalid weather data format",
+            "{\"weather\":[{\"main\":\"Clouds\"}]}     | Weather description is missing or invalid",
+            "{\"weather\":[{\"description\":42}]}      | Weather description is missing or invalid",
+            "{\"weather\":[{\"description\":\"\"}]}    | Weather description is empty",
+            "{\"weather\":[{\"description\":\"x\"}    | Invalid weather data format",
+    })
+    void decode_InvalidResponse_ThrowsExternalApiError(String json, String message) {
+        WeatherApiException e = assertThrows(WeatherApiException.class, () -> decode(json));
+
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR, e.getErrorCode());
+        assertEquals(message, e.getMessage());
+    }
+}
@@ -0,0 +1,170 @@
+package com.weatherapi.client;
+
+import com.weatherapi.config.UpstreamKeyProperties;
+import com.weatherapi.config.UpstreamKeyProperties.Key;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamKeyPoolTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T12:00:30Z"));
+
+    private UpstreamKeyPool pool(Key... keys) {
+        return new UpstreamKeyPool(new UpstreamKeyProperties(List.of(keys), Duration.ofMillis(200)), clock);
+    }
+
+    @Test
+    void acquire_SeveralKeys_TakesKeyWithMostCallsLeftInBothWindows() throws InterruptedException {
+        UpstreamKeyPool pool = pool(new Key("minute-rich", 10, 2), new Key("balanced", 5, 100));
+
+        assertEquals("balanced", pool.acquire(Duration.ZERO));
+        assertEquals(4, pool.remainingThisMinute(1));
+        assertEquals(99, pool.remainingToday(1));
+        assertEquals(2, pool.remainingToday(0));
+    }
+
+    @Test
+    void acquire_EveryKeyExhausted_ReturnsNullRatherThanWaitForNextMinute() throws InterruptedException {
+        UpstreamKeyPool pool = pool(new Key("a", 1, 100), new Key("b", 1, 100));
+        assertNotNull(pool.acquire(Duration.ZERO));
+        assertNotNull(pool.acquire(Duration.ZERO));
+
+        long start = System.nanoTime();
+        assertNull(pool.acquire(Duration.ofMillis(200)));
+
+        // The next minute is 30 seconds away, far past the wait allowed.
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 100);
+    }
+
+    @Test
+    void acquire_NextMinute_MinuteQuotaRestored() throws InterruptedException {
+        UpstreamKeyPool pool = pool(new Key("a", 1, 100));
+        assertEquals("a", pool.acquire(Duration.ZERO));
+        assertNull(pool.acquire(Duration.ZERO));
+
+        clock.advance(Duration.ofMinutes(1));
+
+        assertEquals("a", pool.acquire(Duration.ZERO));
+        assertEquals(98, pool.remainingToday(0));
+    }
+
+    @Test
+    void acquire_DayQuotaExhausted_NotRestoredUntilNextDay() throws InterruptedException {
+        UpstreamKeyPool pool = pool(new Key("a", 10, 1));
+        assertEquals("a", pool.acquire(Duration.ZERO));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(pool.acquire(Duration.ZERO));
+
+        clock.advance(Duration.ofDays(1));
+        assertEquals("a", pool.acquire(Duration.ZERO));
+    }
+
+    @Test
+    void acquire_ExhaustedJustBeforeMinuteEnds_WaitsForNextMinute() throws Exception {
+        clock.set(Instant.parse("2023-01-01T12:00:59.950Z"));
+        UpstreamKeyPool pool = pool(new Key("a", 1, 100));
+        assertEquals("a", pool.acquire(Duration.ZERO));
+
+        Thread advancer = Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(20);
+                clock.set(Instant.parse("2023-01-01T12:01:00Z"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertEquals("a", pool.acquire(Duration.ofMillis(500)));
+        advancer.join();
+    }
+
+    @Test
+    void exhaustMinute_KeyWithCallsLeft_SkippedForRestOfMinute() throws InterruptedException {
+        UpstreamKeyPool pool = pool(new Key("a", 10, 100), new Key("b", 5, 100));
+
+        pool.exhaustMinute("a");
+
+        assertEquals(0, pool.remainingThisMinute(0));
+        assertEquals("b", pool.acquire(Duration.ZERO));
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals("a", pool.acquire(Duration.ZERO));
+    }
+
+    @Test
+    void acquire_ConcurrentCallers_NeverExceedQuota() throws Exception {
+        UpstreamKeyPool pool = pool(new Key("a", 300, 100_000), new Key("b", 200, 100_000));
+        AtomicInteger granted = new AtomicInteger();
+
+        List<Future<?>> callers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                callers.add(executor.submit(() -> {
+                    for (int j = 0; j < 125; j++) {
+                        if (pool.acquire(Duration.ZERO) != null) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> caller : callers) {
+            caller.get();
+        }
+
+        assertEquals(500, granted.get());
+        assertEquals(0, pool.remainingThisMinute(0));
+        assertEquals(0, pool.remainingThisMinute(1));
+    }
+
+    @Test
+    void constructor_NoKeys_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> pool());
+        assertThrows(IllegalArgumentException.class, () -> pool(new Key("a", 0, 100)));
+        assertThrows(IllegalArgumentException.class, () -> pool(new Key(" ", 10, 100)));
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        void set(Instant instant) {
+            now = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.weatherapi.controller;
+
+import com.weatherapi.config.ConcurrencyLimitProperties;
+import com.weatherapi.exception.ServiceOverloadedException;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter.Priority;
+import com.weatherapi.service.WeatherService;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class ConcurrencyLimitInterceptorTest {
+
+    @Mock
+    private WeatherService weatherService;
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private ConcurrencyLimitInterceptor interceptor;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+        // Normal requests may use 2 of the 4 permits.
+        limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties(true, 4, 1, 10,
+                Duration.ofSeconds(1), 1.5, 0.2, 0.5, Duration.ofSeconds(1)), Clock.systemUTC());
+        interceptor = new ConcurrencyLimitInterceptor(limiter, weatherService, Duration.ofSeconds(2));
+    }
+
+    private static MockHttpServletRequest lookup(String city) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/weather");
+        request.setParameter("city", city);
+        request.setParameter("country", "GB");
+        return request;
+    }
+
+    @Test
+    void preHandle_OverNormalShare_CacheHitsStillAdmitted() {
+        when(weatherService.isServedFromCache("London", "GB")).thenReturn(true);
+        assertTrue(interceptor.preHandle(lookup("Leeds"), response, null));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("POST", "/api/weather/batch"), response, null));
+
+        ServiceOverloadedException e = assertThrows(ServiceOverloadedException.class,
+                () -> interceptor.preHandle(lookup("York"), response, null));
+        assertEquals(Duration.ofSeconds(2), e.getRetryAfter());
+        assertTrue(interceptor.preHandle(lookup("London"), response, null));
+        assertTrue(interceptor.preHandle(lookup("London"), response, null));
+        assertThrows(ServiceOverloadedException.class, () -> interceptor.preHandle(lookup("London"), response, null));
+
+        assertEquals(4, limiter.inFlight());
+        assertEquals(1, limiter.rejectedCount(Priority.NORMAL));
+        assertEquals(1, limiter.rejectedCount(Priority.HIGH));
+    }
+
+    @Test
+    void preHandle_HistoryForCachedLocation_NormalPriority() {
+        MockHttpServletRequest history = new MockHttpServletRequest("GET", "/api/weather/history");
+        history.setParameter("city", "London");
+        history.setParameter("country", "GB");
+
+        assertTrue(interceptor.preHandle(history, response, null));
+        assertTrue(interceptor.preHandle(lookup("Leeds"), response, null));
+
+        assertThrows(ServiceOverloadedException.class, () -> interceptor.preHandle(lookup("York"), response, null));
+        verify(weatherService, never()).isServedFromCache("London", "GB");
+    }
+
+    @Test
+    void preHandle_Coordinates_PriorityFromCoordinateLookup() {
+        when(weatherService.isServedFromCacheAt(anyDouble(), anyDouble())).thenReturn(true);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/weather");
+        request.setParameter("lat", "51.5");
+        request.setParameter("lon", "-0.12");
+        limiter.tryAcquire(Priority.NORMAL);
+        limiter.tryAcquire(Priority.NORMAL);
+
+        assertTrue(interceptor.preHandle(request, response, null));
+        verify(weatherService).isServedFromCacheAt(51.5, -0.12);
+    }
+
+    @Test
+    void afterCompletion_AdmittedRequest_ReleasesPermit() {
+        MockHttpServletRequest request = lookup("Leeds");
+        interceptor.preHandle(request, response, null);
+
+        interceptor.afterCompletion(request, response, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void afterCompletion_StreamedResponse_PermitHeldUntilAsyncDispatchCompletes() throws Exception {
+        MockHttpServletRequest request = lookup("Leeds");
+        interceptor.preHandle(request, response, null);
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertEquals(1, limiter.inFlight());
+
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertEquals(1, limiter.inFlight());
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0, limiter.inFlight());
+    }
+}
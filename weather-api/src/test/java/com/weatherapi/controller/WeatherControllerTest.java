@@ -1,22 +1,56 @@
 package com.weatherapi.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.weatherapi.cache.SerializedReportCache;
+import com.weatherapi.config.ResponseFormatConfig;
 import com.weatherapi.exception.ErrorCode;
 import com.weatherapi.exception.RateLimitExceededException;
+import com.weatherapi.model.BatchWeatherResult;
+import com.weatherapi.model.HistoryPage;
+import com.weatherapi.model.Location;
 import com.weatherapi.model.WeatherReport;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter;
+import com.weatherapi.service.WeatherHistoryService;
 import com.weatherapi.service.WeatherService;
+import com.weatherapi.service.WeatherSubscriptionService;
+import com.weatherapi.service.WeatherUpdateBroadcaster;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(WeatherController.class)
+@Import({SerializedReportCache.class, ResponseFormatConfig.class})
 class WeatherControllerTest {
 
     @Autowired
@@ -25,10 +59,20 @@ class WeatherControllerTest {
     @MockBean
     private WeatherService weatherService;
 
+    @MockBean
+    private WeatherHistoryService historyService;
+
+    @MockBean
+    private WeatherSubscriptionService subscriptionService;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     @Test
     void getWeatherReport_ValidRequest_ReturnsWeatherReport() throws Exception {
         WeatherReport report = new WeatherReport(1L, "London", "UK", "Cloudy", System.currentTimeMillis() / 1000);
         when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(50));
 
         mockMvc.perform(get("/api/weather")
                         .param("city", "London")
@@ -41,6 +85,173 @@ class WeatherControllerTest {
                 .andExpect(jsonPath("$.description").value("Cloudy"));
     }
 
+    @Test
+    void getWeatherReport_ValidRequest_SetsValidators() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-1700000000\""))
+                .andExpect(header().dateValue("Last-Modified", 1_700_000_000_000L))
+                .andExpect(header().string("Cache-Control", "max-age=1200, public"))
+                .andExpect(header().string("Vary", "X-API-Key, Accept, Accept-Encoding"));
+    }
+
+    @Test
+    void getWeatherReport_LargeReportAndGzipAccepted_ServesGzippedBody() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy ".repeat(50), 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        MvcResult result = mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("Accept-Encoding", "br;q=1.0, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"7-1700000000-gzip\""))
+                .andReturn();
+
+        byte[] body = result.getResponse().getContentAsByteArray();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(json.startsWith("{\"id\":7,\"city\":\"London\""), json);
+        }
+    }
+
+    @Test
+    void getWeatherReport_SmallReportOrGzipRefused_ServesIdentityBody() throws Exception {
+        WeatherReport small = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        WeatherReport large = new WeatherReport(8L, "London", "UK", "Cloudy ".repeat(50), 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(small, large);
+        when(weatherService.remainingFreshness(any())).thenReturn(Duration.ofMinutes(20));
+
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.description").value("Cloudy"));
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"8-1700000000\""));
+    }
+
+    @Test
+    void getWeatherReport_CborPreferred_ServesCborWithItsOwnETag() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        MvcResult result = mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("Accept", "application/cbor, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", "\"7-1700000000-cbor\""))
+                .andReturn();
+
+        JsonNode body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("London", body.get("city").asText());
+        assertEquals(1_700_000_000L, body.get("timestamp").asLong());
+    }
+
+    @Test
+    void getWeatherReport_CborNotPreferred_ServesJson() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        for (String accept : List.of("application/json, application/cbor", "application/cbor;q=0.5, */*", "cbor/")) {
+            mockMvc.perform(get("/api/weather")
+                            .param("city", "London")
+                            .param("country", "UK")
+                            .header("X-API-Key", "valid_key")
+                            .header("Accept", accept))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string("ETag", "\"7-1700000000\""));
+        }
+    }
+
+    @Test
+    void getWeatherReport_IfNoneMatchCurrent_ReturnsNotModifiedWithoutBody() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        MvcResult result = mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("If-None-Match", "\"7-1700000000\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7-1700000000\""))
+                .andExpect(header().string("Cache-Control", "max-age=1200, public"))
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentLength());
+    }
+
+    @Test
+    void getWeatherReport_IfNoneMatchOutdated_ReturnsReport() throws Exception {
+        WeatherReport report = new WeatherReport(8L, "London", "UK", "Rain", 1_700_003_600L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("If-None-Match", "\"7-1700000000\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Rain"));
+    }
+
+    @Test
+    void getWeatherReport_IfModifiedSinceReportTime_ReturnsNotModified() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key")
+                        .header("If-Modified-Since", "Tue, 14 Nov 2023 22:13:20 GMT"))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getWeatherReport_StaleReport_NotCacheable() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L).asStale();
+        when(weatherService.getWeatherReport(anyString(), anyString(), anyString())).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ZERO);
+
+        mockMvc.perform(get("/api/weather")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-1700000000-stale\""))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+    }
+
     @Test
     void getWeatherReport_MissingParams_ReturnsBadRequest() throws Exception {
         mockMvc.perform(get("/api/weather")
@@ -58,6 +269,39 @@ class WeatherControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void getWeatherAt_Coordinates_ReturnsNearestLocationReportWithValidators() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "GB", "Cloudy", 1_700_000_000L, 51.5085, -0.1257);
+        when(weatherService.getWeatherReportAt(51.52, -0.11, "valid_key")).thenReturn(report);
+        when(weatherService.remainingFreshness(report)).thenReturn(Duration.ofMinutes(20));
+
+        mockMvc.perform(get("/api/weather")
+                        .param("lat", "51.52")
+                        .param("lon", "-0.11")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.city").value("London"))
+                .andExpect(jsonPath("$.latitude").value(51.5085))
+                .andExpect(jsonPath("$.longitude").value(-0.1257))
+                .andExpect(header().string("ETag", "\"7-1700000000\""))
+                .andExpect(header().string("Cache-Control", "max-age=1200, public"));
+    }
+
+    @Test
+    void getWeatherAt_CoordinateOutOfRange_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/weather")
+                        .param("lat", "91")
+                        .param("lon", "0")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value(ErrorCode.INVALID_INPUT.toString()));
+        mockMvc.perform(get("/api/weather")
+                        .param("lat", "51.5")
+                        .param("lon", "east")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getWeatherReport_RateLimitExceeded_ReturnsTooManyRequests() throws Exception {
         when(weatherService.getWeatherReport(anyString(), anyString(), anyString()))
@@ -85,4 +329,208 @@ class WeatherControllerTest {
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.title").value(ErrorCode.UNKNOWN_ERROR.toString()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getWeatherReport_ConcurrencyLimitReached_ReturnsServiceUnavailableWithRetryAfter() throws Exception {
+        int limit = concurrencyLimiter.limit();
+        for (int i = 0; i < limit; i++) {
+            assertTrue(concurrencyLimiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.HIGH));
+        }
+        try {
+            mockMvc.perform(get("/api/weather")
+                            .param("city", "London")
+                            .param("country", "UK")
+                            .header("X-API-Key", "valid_key"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"))
+                    .andExpect(jsonPath("$.title").value(ErrorCode.SERVICE_OVERLOADED.toString()));
+        } finally {
+            for (int i = 0; i < limit; i++) {
+                concurrencyLimiter.release();
+            }
+        }
+        verify(weatherService, never()).getWeatherReport(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void getWeatherReports_ValidBatch_ReturnsPerItemResults() throws Exception {
+        WeatherReport report = new WeatherReport(1L, "London", "UK", "Cloudy", System.currentTimeMillis() / 1000);
+        when(weatherService.getWeatherReports(anyList(), anyString())).thenReturn(List.of(
+                BatchWeatherResult.success(new Location("London", "UK"), report),
+                BatchWeatherResult.failure(new Location("Nowhere", "XX"), ErrorCode.EXTERNAL_API_ERROR,
+                        "No response from weather API")));
+
+        mockMvc.perform(post("/api/weather/batch")
+                        .header("X-API-Key", "valid_key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"locations": [{"city": "London", "country": "UK"}, {"city": "Nowhere", "country": "XX"}]}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].report.description").value("Cloudy"))
+                .andExpect(jsonPath("$.results[0].errorCode").doesNotExist())
+                .andExpect(jsonPath("$.results[1].city").value("Nowhere"))
+                .andExpect(jsonPath("$.results[1].errorCode").value(ErrorCode.EXTERNAL_API_ERROR.getCode()));
+    }
+
+    @Test
+    void getWeatherReports_CborAccepted_ReturnsCbor() throws Exception {
+        WeatherReport report = new WeatherReport(1L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(weatherService.getWeatherReports(anyList(), anyString())).thenReturn(List.of(
+                BatchWeatherResult.success(new Location("London", "UK"), report)));
+
+        MvcResult result = mockMvc.perform(post("/api/weather/batch")
+                        .header("X-API-Key", "valid_key")
+                        .header("Accept", "application/cbor")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"locations\": [{\"city\": \"London\", \"country\": \"UK\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn();
+
+        JsonNode body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("Cloudy", body.at("/results/0/report/description").asText());
+        assertTrue(body.at("/results/0/errorCode").isMissingNode());
+    }
+
+    @Test
+    void getWeatherReports_EmptyBatch_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/weather/batch")
+                        .header("X-API-Key", "valid_key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"locations\": []}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value(ErrorCode.INVALID_INPUT.toString()));
+    }
+
+    @Test
+    void getWeatherReports_BlankCity_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/weather/batch")
+                        .header("X-API-Key", "valid_key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"locations\": [{\"city\": \" \", \"country\": \"UK\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getWeatherHistory_ValidRequest_ReturnsPageWithCursor() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "UK", "Cloudy", 1_700_000_000L);
+        when(historyService.getHistory(eq("London"), eq("UK"), eq(Instant.parse("2023-11-01T00:00:00Z")),
+                eq(Instant.parse("2023-11-20T00:00:00Z")), isNull(), eq(1), eq("valid_key")))
+                .thenReturn(new HistoryPage(List.of(report), "next"));
+
+        mockMvc.perform(get("/api/weather/history")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .param("from", "2023-11-01T00:00:00Z")
+                        .param("to", "2023-11-20T00:00:00Z")
+                        .param("limit", "1")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reports[0].id").value(7))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void getWeatherHistory_LimitTooLarge_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/weather/history")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .param("from", "2023-11-01T00:00:00Z")
+                        .param("limit", "5000")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getWeatherHistory_InvalidCursor_ReturnsBadRequest() throws Exception {
+        when(historyService.getHistory(anyString(), anyString(), any(), any(), anyString(), anyInt(), anyString()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/weather/history")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .param("from", "2023-11-01T00:00:00Z")
+                        .param("cursor", "garbage")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value(ErrorCode.INVALID_INPUT.toString()));
+    }
+
+    @Test
+    void streamWeatherHistory_NdjsonRequested_WritesOneReportPerLine() throws Exception {
+        List<WeatherReport> reports = List.of(
+                new WeatherReport(2L, "London", "UK", "Rain", 1_700_000_060L),
+                new WeatherReport(1L, "London", "UK", "Cloudy", 1_700_000_000L));
+        when(historyService.exportHistory(anyString(), anyString(), any(), any(), anyString()))
+                .thenReturn(sink -> reports.forEach(sink));
+
+        MvcResult result = mockMvc.perform(get("/api/weather/history")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .param("from", "2023-11-01T00:00:00Z")
+                        .header("X-API-Key", "valid_key")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"description\":\"Rain\""));
+        assertTrue(lines[1].contains("\"id\":1"));
+    }
+
+    @Test
+    void streamWeatherHistory_RateLimitExceeded_FailsBeforeStreaming() throws Exception {
+        when(historyService.exportHistory(anyString(), anyString(), any(), any(), anyString()))
+                .thenThrow(new RateLimitExceededException("Rate limit exceeded"));
+
+        mockMvc.perform(get("/api/weather/history")
+                        .param("city", "London")
+                        .param("country", "UK")
+                        .param("from", "2023-11-01T00:00:00Z")
+                        .header("X-API-Key", "valid_key")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void subscribe_ValidRequest_StreamsReportEvents() throws Exception {
+        WeatherReport report = new WeatherReport(7L, "London", "GB", "Cloudy", 1_700_000_000L);
+        WeatherUpdateBroadcaster.Subscription subscription = mock(WeatherUpdateBroadcaster.Subscription.class);
+        when(subscriptionService.subscribe(eq(List.of(new Location("London", "GB"), new Location("Washington, D.C.", "US"))),
+                eq("valid_key"), any())).thenAnswer(invocation -> {
+                    WeatherUpdateBroadcaster.Sink sink = invocation.getArgument(2);
+                    sink.send(report);
+                    sink.close();
+                    return subscription;
+                });
+
+        MvcResult result = mockMvc.perform(get("/api/weather/subscribe")
+                        .param("location", "London,GB", "Washington, D.C.,US")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM));
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:report\n"), body);
+        assertTrue(body.contains("id:7-1700000000\n"), body);
+        assertTrue(body.contains("data:{\"id\":7,\"city\":\"London\""), body);
+    }
+
+    @Test
+    void subscribe_LocationWithoutCountry_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/weather/subscribe")
+                        .param("location", "London")
+                        .header("X-API-Key", "valid_key"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value(ErrorCode.INVALID_INPUT.toString()));
+    }
+}
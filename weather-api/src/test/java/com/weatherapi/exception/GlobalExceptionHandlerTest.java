@@ -1,8 +1,12 @@
 package com.weatherapi.exception;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -20,6 +24,17 @@ class GlobalExceptionHandlerTest {
         assertEquals("Rate limit exceeded", problemDetail.getDetail());
     }
 
+    @Test
+    void handleServiceOverloadedException() {
+        ServiceOverloadedException ex = new ServiceOverloadedException("Too busy", Duration.ofMillis(1500));
+        ResponseEntity<ProblemDetail> response = handler.handleServiceOverloadedException(ex);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(ErrorCode.SERVICE_OVERLOADED.toString(), response.getBody().getTitle());
+        assertEquals("WA-005", response.getBody().getProperties().get("errorCode"));
+    }
+
     @Test
     void handleIllegalArgumentException() {
         IllegalArgumentException ex = new IllegalArgumentException("Invalid input");
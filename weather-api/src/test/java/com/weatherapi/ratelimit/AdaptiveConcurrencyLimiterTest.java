@@ -0,0 +1,149 @@
+package com.weatherapi.ratelimit;
+
+import com.weatherapi.config.ConcurrencyLimitProperties;
+import com.weatherapi.ratelimit.AdaptiveConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(40).toNanos();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties(true, initialLimit, 5, 100,
+                Duration.ofSeconds(1), 1.5, 1.0, 0.2, Duration.ofSeconds(1)), clock);
+    }
+
+    // Runs `concurrent` requests side by side for one window, all taking `latencyNanos`.
+    private void window(AdaptiveConcurrencyLimiter limiter, int concurrent, long latencyNanos) {
+        for (int i = 0; i < concurrent; i++) {
+            assertTrue(limiter.tryAcquire(Priority.HIGH));
+        }
+        for (int i = 0; i < concurrent - 1; i++) {
+            limiter.onCompleted(latencyNanos);
+        }
+        clock.advance(Duration.ofSeconds(1));
+        limiter.onCompleted(latencyNanos);
+    }
+
+    @Test
+    void tryAcquire_NormalPriority_LeavesReserveForHighPriority() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20);
+        for (int i = 0; i < 16; i++) {
+            assertTrue(limiter.tryAcquire(Priority.NORMAL));
+        }
+
+        assertFalse(limiter.tryAcquire(Priority.NORMAL));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire(Priority.HIGH));
+        }
+        assertFalse(limiter.tryAcquire(Priority.HIGH));
+        assertEquals(20, limiter.inFlight());
+        assertEquals(1, limiter.rejectedCount(Priority.NORMAL));
+        assertEquals(1, limiter.rejectedCount(Priority.HIGH));
+
+        limiter.release();
+
+        assertFalse(limiter.tryAcquire(Priority.NORMAL));
+        assertTrue(limiter.tryAcquire(Priority.HIGH));
+    }
+
+    @Test
+    void onCompleted_SteadyLatencyAtLimit_LimitGrows() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20);
+
+        window(limiter, 20, FAST);
+        assertEquals(24, limiter.limit());
+        window(limiter, 24, FAST);
+
+        assertEquals(29, limiter.limit());
+    }
+
+    @Test
+    void onCompleted_LatencyRisesAtLimit_LimitShrinksDownToMinimum() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20);
+        window(limiter, 20, FAST);
+
+        window(limiter, 24, SLOW);
+        assertEquals(17, limiter.limit());
+        for (int i = 0; i < 10; i++) {
+            window(limiter, limiter.limit(), SLOW * 4);
+        }
+
+        assertEquals(5, limiter.limit());
+    }
+
+    @Test
+    void onCompleted_FewRequestsInFlight_LimitUnchanged() {
+        AdaptiveConcurrencyLimiter limiter = limiter(40);
+        window(limiter, 10, FAST);
+
+        window(limiter, 10, SLOW * 10);
+
+        assertEquals(40, limiter.limit());
+    }
+
+    @Test
+    void onCompleted_WindowNotOverYet_LimitUnchanged() {
+        AdaptiveConcurrencyLimiter limiter = limiter(20);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(Priority.HIGH));
+        }
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onCompleted(FAST);
+        }
+
+        assertEquals(20, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void constructor_InvalidSettings_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(
+                new ConcurrencyLimitProperties(true, 4, 5, 100, Duration.ofSeconds(1), 1.5, 0.2, 0.2,
+                        Duration.ofSeconds(1)), clock));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(
+                new ConcurrencyLimitProperties(true, 20, 5, 100, Duration.ofSeconds(1), 0.5, 0.2, 0.2,
+                        Duration.ofSeconds(1)), clock));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(
+                new ConcurrencyLimitProperties(true, 20, 5, 100, Duration.ofSeconds(1), 1.5, 0.2, 1.0,
+                        Duration.ofSeconds(1)), clock));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
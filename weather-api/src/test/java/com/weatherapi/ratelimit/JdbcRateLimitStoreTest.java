@@ -0,0 +1,91 @@
+package com.weatherapi.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcRateLimitStoreTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private JdbcRateLimitStore store;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        store = new JdbcRateLimitStore(jdbcTemplate, new DataSourceTransactionManager(database));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void reserve_WithinBudget_GrantsRequested() {
+        assertEquals(10, store.reserve("key", 1, 10, 25));
+        assertEquals(10, store.reserve("key", 1, 10, 25));
+        assertEquals(5, store.reserve("key", 1, 10, 25));
+        assertEquals(0, store.reserve("key", 1, 10, 25));
+    }
+
+    @Test
+    void reserve_NewWindow_StartsFreshAndDropsOldWindows() {
+        assertEquals(25, store.reserve("key", 1, 25, 25));
+
+        assertEquals(10, store.reserve("key", 2, 10, 25));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rate_limit_usage", Integer.class));
+    }
+
+    @Test
+    void release_CurrentWindow_ReturnsPermitsToBudget() {
+        assertEquals(25, store.reserve("key", 1, 25, 25));
+
+        store.release("key", 1, 5);
+        store.release("key", 0, 5);
+
+        assertEquals(5, store.reserve("key", 1, 10, 25));
+    }
+
+    @Test
+    void reserve_KeysHaveSeparateBudgets() {
+        assertEquals(5, store.reserve("a", 1, 5, 5));
+        assertEquals(5, store.reserve("b", 1, 5, 5));
+    }
+
+    @Test
+    void reserve_ConcurrentInstances_NeverGrantMoreThanLimit() throws Exception {
+        JdbcRateLimitStore otherInstance = new JdbcRateLimitStore(jdbcTemplate, new DataSourceTransactionManager(database));
+        List<Future<Long>> grants = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 40; i++) {
+                JdbcRateLimitStore instance = i % 2 == 0 ? store : otherInstance;
+                grants.add(executor.submit(() -> instance.reserve("key", 7, 10, 100)));
+            }
+        }
+
+        long total = 0;
+        for (Future<Long> grant : grants) {
+            total += grant.get();
+        }
+        assertEquals(100, total);
+    }
+}
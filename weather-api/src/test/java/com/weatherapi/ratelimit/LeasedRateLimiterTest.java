@@ -0,0 +1,157 @@
+package com.weatherapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeasedRateLimiterTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final long WINDOW_START = 1_700_000_000_000L / HOUR * HOUR;
+    private static final long IDLE = Duration.ofMinutes(1).toMillis();
+
+    private final CountingStore store = new CountingStore(new InMemoryRateLimitStore());
+
+    @Test
+    void tryAcquire_ServedFromLease_ReservesOncePerLease() {
+        LeasedRateLimiter limiter = new LeasedRateLimiter("key", store, 100, HOUR, 10, IDLE, Runnable::run);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(1, WINDOW_START));
+        }
+        assertFalse(limiter.tryAcquire(1, WINDOW_START));
+
+        assertTrue(store.reservations.get() <= 11, "reservations: " + store.reservations.get());
+    }
+
+    @Test
+    void tryAcquire_BudgetExhausted_StopsCallingStoreForIdleTimeout() {
+        LeasedRateLimiter limiter = new LeasedRateLimiter("key", store, 5, HOUR, 5, IDLE, Runnable::run);
+        assertTrue(limiter.tryAcquire(5, WINDOW_START));
+        assertFalse(limiter.tryAcquire(1, WINDOW_START));
+        int reservations = store.reservations.get();
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(limiter.tryAcquire(1, WINDOW_START + i));
+        }
+        assertEquals(reservations, store.reservations.get());
+
+        assertFalse(limiter.tryAcquire(1, WINDOW_START + IDLE));
+        assertEquals(reservations + 1, store.reservations.get());
+        assertTrue(limiter.tryAcquire(1, WINDOW_START + HOUR));
+    }
+
+    @Test
+    void releaseIfIdle_TwoInstances_IdleLeaseGoesToOther() {
+        LeasedRateLimiter first = new LeasedRateLimiter("key", store, 5, HOUR, 1, IDLE, Runnable::run);
+        LeasedRateLimiter second = new LeasedRateLimiter("key", store, 5, HOUR, 1, IDLE, Runnable::run);
+        // Taking its only permit makes the first instance lease one more in the background.
+        assertTrue(first.tryAcquire(1, WINDOW_START));
+
+        int admitted = 0;
+        while (second.tryAcquire(1, WINDOW_START + admitted)) {
+            admitted++;
+        }
+        assertEquals(3, admitted);
+
+        first.releaseIfIdle(WINDOW_START + IDLE - 1);
+        assertFalse(second.tryAcquire(1, WINDOW_START + IDLE));
+        first.releaseIfIdle(WINDOW_START + IDLE);
+        assertTrue(second.tryAcquire(1, WINDOW_START + 2 * IDLE));
+        assertFalse(first.tryAcquire(1, WINDOW_START + 2 * IDLE));
+    }
+
+    @Test
+    void tryAcquire_NextWindow_ReturnsLeftoverPermitsOfPreviousWindow() {
+        LeasedRateLimiter limiter = new LeasedRateLimiter("key", store, 10, HOUR, 4, IDLE, Runnable::run);
+        assertTrue(limiter.tryAcquire(1, WINDOW_START));
+
+        assertTrue(limiter.tryAcquire(1, WINDOW_START + HOUR));
+
+        assertEquals(List.of(WINDOW_START / HOUR + ":3"), store.releases);
+    }
+
+    @Test
+    void tryAcquire_StaleBackgroundRefill_DoesNotLeakIntoNextWindow() {
+        List<Runnable> deferred = new ArrayList<>();
+        LeasedRateLimiter limiter = new LeasedRateLimiter("key", store, 4, HOUR, 2, IDLE, deferred::add);
+        assertTrue(limiter.tryAcquire(1, WINDOW_START));
+        assertTrue(limiter.tryAcquire(1, WINDOW_START + HOUR));
+
+        deferred.forEach(Runnable::run);
+
+        assertTrue(limiter.tryAcquire(3, WINDOW_START + HOUR));
+        assertFalse(limiter.tryAcquire(1, WINDOW_START + HOUR));
+    }
+
+    @Test
+    void tryAcquire_ManyInstancesSharingStore_NeverOverAdmit() throws InterruptedException {
+        int limit = 1_000;
+        int instances = 4;
+        int threadsPerInstance = 4;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+
+        try (ExecutorService refills = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int n = 0; n < instances; n++) {
+                LeasedRateLimiter limiter = new LeasedRateLimiter("key", store, limit, HOUR, 25, IDLE, refills);
+                for (int t = 0; t < threadsPerInstance; t++) {
+                    Thread worker = new Thread(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        for (int i = 0; i < 1_000; i++) {
+                            if (limiter.tryAcquire(1, WINDOW_START)) {
+                                admitted.incrementAndGet();
+                            }
+                        }
+                    });
+                    worker.start();
+                    workers.add(worker);
+                }
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        assertTrue(admitted.get() <= limit, "admitted: " + admitted.get());
+        assertTrue(admitted.get() > limit - instances * 25, "admitted: " + admitted.get());
+    }
+
+    private static final class CountingStore implements RateLimitStore {
+        private final RateLimitStore delegate;
+        private final AtomicInteger reservations = new AtomicInteger();
+        private final List<String> releases = new CopyOnWriteArrayList<>();
+
+        private CountingStore(RateLimitStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long reserve(String apiKey, long window, long requested, long limit) {
+            reservations.incrementAndGet();
+            return delegate.reserve(apiKey, window, requested, limit);
+        }
+
+        @Override
+        public void release(String apiKey, long window, long permits) {
+            releases.add(window + ":" + permits);
+            delegate.release(apiKey, window, permits);
+        }
+    }
+}
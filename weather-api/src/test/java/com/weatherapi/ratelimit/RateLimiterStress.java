@@ -0,0 +1,56 @@
+package com.weatherapi.ratelimit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class RateLimiterStress {
+
+    private RateLimiterStress() {
+    }
+
+    /**
+     * Hammers the limiter from {@code threads} platform threads released at the same instant and
+     * returns how many single-permit acquisitions succeeded at the fixed time {@code nowMillis}.
+     */
+    static int countAdmitted(RateLimiter limiter, long nowMillis, int threads, int attemptsPerThread)
+            throws InterruptedException {
+        return countAdmitted(limiter, new long[] {nowMillis}, threads, attemptsPerThread);
+    }
+
+    /**
+     * Like {@link #countAdmitted(RateLimiter, long, int, int)}, but each thread cycles through the
+     * times in {@code nowMillis}, starting at a different one, as callers whose clock readings
+     * interleave.
+     */
+    static int countAdmitted(RateLimiter limiter, long[] nowMillis, int threads, int attemptsPerThread)
+            throws InterruptedException {
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (limiter.tryAcquire(1, nowMillis[(offset + i) % nowMillis.length])) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return admitted.get();
+    }
+}
@@ -0,0 +1,85 @@
+package com.weatherapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowRateLimiterTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+    private static final long WINDOW_START = 1_700_000_000_000L / HOUR * HOUR;
+
+    @Test
+    void tryAcquire_WithinWindow_AllowsUpToLimit() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(5, HOUR);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1, WINDOW_START + i));
+        }
+        assertFalse(limiter.tryAcquire(1, WINDOW_START + 10));
+    }
+
+    @Test
+    void tryAcquire_NextWindow_WeighsPreviousWindowByOverlap() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(10, HOUR);
+        assertTrue(limiter.tryAcquire(10, WINDOW_START));
+
+        // Halfway into the next window half of the previous window's 10 requests still count.
+        long halfway = WINDOW_START + HOUR + HOUR / 2;
+        assertTrue(limiter.tryAcquire(5, halfway));
+        assertFalse(limiter.tryAcquire(1, halfway));
+    }
+
+    @Test
+    void tryAcquire_AfterTwoWindows_StartsFresh() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(5, HOUR);
+        assertTrue(limiter.tryAcquire(5, WINDOW_START));
+
+        assertTrue(limiter.tryAcquire(5, WINDOW_START + 2 * HOUR));
+    }
+
+    @Test
+    void tryAcquire_MultiplePermits_AllOrNothing() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(5, HOUR);
+        assertTrue(limiter.tryAcquire(4, WINDOW_START));
+
+        assertFalse(limiter.tryAcquire(2, WINDOW_START));
+        assertTrue(limiter.tryAcquire(1, WINDOW_START));
+    }
+
+    @Test
+    void constructor_LimitTooLargeForPackedState_Throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SlidingWindowRateLimiter(SlidingWindowRateLimiter.MAX_LIMIT + 1, HOUR));
+    }
+
+    @Test
+    void tryAcquire_ConcurrentCallers_NeverOverAdmits() throws InterruptedException {
+        int limit = 1_000;
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(limit, HOUR);
+
+        assertEquals(limit, RateLimiterStress.countAdmitted(limiter, WINDOW_START, 16, 5_000));
+    }
+
+    @Test
+    void tryAcquire_LateCallerAfterWindowMoved_DoesNotMoveWindowBack() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(5, HOUR);
+        assertTrue(limiter.tryAcquire(3, WINDOW_START + HOUR - 1));
+        assertTrue(limiter.tryAcquire(2, WINDOW_START + HOUR));
+
+        assertFalse(limiter.tryAcquire(1, WINDOW_START + HOUR - 1));
+        assertFalse(limiter.tryAcquire(1, WINDOW_START + HOUR));
+    }
+
+    @Test
+    void tryAcquire_ConcurrentCallersAcrossWindowBoundary_NeverOverAdmits() throws InterruptedException {
+        int limit = 1_000;
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(limit, HOUR);
+
+        // At the first instant of the next window the previous window still counts in full.
+        long[] times = {WINDOW_START + HOUR - 1, WINDOW_START + HOUR};
+        assertEquals(limit, RateLimiterStress.countAdmitted(limiter, times, 16, 5_000));
+    }
+}
@@ -0,0 +1,55 @@
+package com.weatherapi.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Test
+    void tryAcquire_FullBucket_AllowsBurstUpToLimit() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, HOUR);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(1, NOW));
+        }
+        assertFalse(limiter.tryAcquire(1, NOW));
+    }
+
+    @Test
+    void tryAcquire_AfterEmissionInterval_RefillsOneToken() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, HOUR);
+        assertTrue(limiter.tryAcquire(5, NOW));
+
+        assertFalse(limiter.tryAcquire(1, NOW + HOUR / 5 - 1));
+        assertTrue(limiter.tryAcquire(1, NOW + HOUR / 5));
+        assertFalse(limiter.tryAcquire(1, NOW + HOUR / 5));
+    }
+
+    @Test
+    void tryAcquire_MultiplePermits_AllOrNothing() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(5, HOUR);
+        assertTrue(limiter.tryAcquire(3, NOW));
+
+        assertFalse(limiter.tryAcquire(3, NOW));
+        assertTrue(limiter.tryAcquire(2, NOW));
+    }
+
+    @Test
+    void tryAcquire_MorePermitsThanLimit_ReturnsFalse() {
+        assertFalse(new TokenBucketRateLimiter(5, HOUR).tryAcquire(6, NOW));
+    }
+
+    @Test
+    void tryAcquire_ConcurrentCallers_NeverOverAdmits() throws InterruptedException {
+        int limit = 1_000;
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(limit, HOUR);
+
+        assertEquals(limit, RateLimiterStress.countAdmitted(limiter, NOW, 16, 5_000));
+    }
+}
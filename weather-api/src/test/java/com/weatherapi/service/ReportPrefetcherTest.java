@@ -0,0 +1,129 @@
+package com.weatherapi.service;
+
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapClient;
+import com.weatherapi.exception.UpstreamUnavailableException;
+import com.weatherapi.model.Location;
+import com.weatherapi.util.LocationPopularity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class ReportPrefetcherTest {
+
+    private static final Duration LEAD = Duration.ofMinutes(5);
+
+    @Mock
+    private WeatherService weatherService;
+
+    @Mock
+    private OpenWeatherMapClient weatherClient;
+
+    private final LocationPopularity popularity = new LocationPopularity(1024, 50);
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+        when(weatherService.isDueForRefresh(any(Location.class), eq(LEAD))).thenReturn(true);
+        when(weatherService.refreshInBackground(any(Location.class), eq(LEAD))).thenReturn(true);
+        // The provider answers every city it is asked for.
+        when(weatherClient.fetchCurrentWeatherGroup(anyCollection())).thenAnswer(invocation -> {
+            List<CurrentWeather> group = new ArrayList<>();
+            for (Object id : invocation.<Collection<?>>getArgument(0)) {
+                group.add(new CurrentWeather("Cloudy", (Long) id));
+            }
+            return group;
+        });
+    }
+
+    private Location popular(String city, Long cityId) {
+        Location location = new Location(city, "GB");
+        popularity.record(location);
+        if (cityId != null) {
+            popularity.rememberCityId(location, cityId);
+        }
+        return location;
+    }
+
+    @Test
+    void prefetch_KnownCityIds_FetchedInGroupsOfAtMostTwenty() {
+        Set<Location> locations = new HashSet<>();
+        for (int i = 0; i < 45; i++) {
+            locations.add(popular("City " + i, 1000L + i));
+        }
+        ReportPrefetcher prefetcher = new ReportPrefetcher(popularity, weatherService, weatherClient, LEAD, true);
+
+        assertEquals(45, prefetcher.prefetch());
+
+        verify(weatherClient, times(3)).fetchCurrentWeatherGroup(
+                argThat(ids -> ids.size() <= OpenWeatherMapClient.MAX_GROUP_SIZE));
+        for (Location location : locations) {
+            verify(weatherService).saveFetched(eq(location), any(CurrentWeather.class));
+        }
+        verify(weatherService, never()).refreshInBackground(any(Location.class), any(Duration.class));
+        assertEquals(3, prefetcher.groupCallCount());
+        assertEquals(45, prefetcher.groupRefreshCount());
+    }
+
+    @Test
+    void prefetch_CityIdUnknown_RefreshedOnItsOwn() {
+        Location london = popular("London", null);
+        Location paris = popular("Paris", 2988507L);
+        ReportPrefetcher prefetcher = new ReportPrefetcher(popularity, weatherService, weatherClient, LEAD, true);
+
+        assertEquals(2, prefetcher.prefetch());
+
+        verify(weatherService).refreshInBackground(london, LEAD);
+        verify(weatherService).saveFetched(eq(paris), any(CurrentWeather.class));
+        assertEquals(1, prefetcher.singleRefreshCount());
+    }
+
+    @Test
+    void prefetch_ReportNotDueYet_Skipped() {
+        Location london = popular("London", 2643743L);
+        when(weatherService.isDueForRefresh(london, LEAD)).thenReturn(false);
+        ReportPrefetcher prefetcher = new ReportPrefetcher(popularity, weatherService, weatherClient, LEAD, true);
+
+        assertEquals(0, prefetcher.prefetch());
+
+        verify(weatherClient, never()).fetchCurrentWeatherGroup(anyCollection());
+    }
+
+    @Test
+    void prefetch_GroupQueriesDisabled_EveryLocationRefreshedOnItsOwn() {
+        Location london = popular("London", 2643743L);
+        ReportPrefetcher prefetcher = new ReportPrefetcher(popularity, weatherService, weatherClient, LEAD, false);
+
+        assertEquals(1, prefetcher.prefetch());
+
+        verify(weatherService).refreshInBackground(london, LEAD);
+        verify(weatherClient, never()).fetchCurrentWeatherGroup(anyCollection());
+    }
+
+    @Test
+    void prefetch_GroupQueryFails_NothingSaved() {
+        popular("London", 2643743L);
+        when(weatherClient.fetchCurrentWeatherGroup(anyCollection()))
+                .thenThrow(new UpstreamUnavailableException("Weather API circuit breaker is open"));
+        ReportPrefetcher prefetcher = new ReportPrefetcher(popularity, weatherService, weatherClient, LEAD, true);
+
+        assertEquals(0, prefetcher.prefetch());
+
+        verify(weatherService, never()).saveFetched(any(Location.class), any(CurrentWeather.class));
+    }
+}
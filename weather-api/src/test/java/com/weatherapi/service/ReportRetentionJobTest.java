@@ -0,0 +1,132 @@
+package com.weatherapi.service;
+
+import com.weatherapi.config.RetentionProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportRetentionJobTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ReportRetentionJob job;
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("""
+                CREATE TABLE weather_report (
+                    id BIGINT PRIMARY KEY,
+                    city VARCHAR(255),
+                    country VARCHAR(255),
+                    description VARCHAR(255),
+                    timestamp BIGINT
+                )""");
+        job = new ReportRetentionJob(jdbcTemplate,
+                new RetentionProperties(Duration.ofDays(7), Duration.ofHours(1), Duration.ofDays(90), 3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    private void insert(String city, Instant at) {
+        jdbcTemplate.update("INSERT INTO weather_report (id, city, country, description, timestamp) VALUES (?, ?, ?, ?, ?)",
+                nextId++, city, "XX", "Cloudy", at.getEpochSecond());
+    }
+
+    private List<Long> timestamps(String city) {
+        return jdbcTemplate.queryForList("SELECT timestamp FROM weather_report WHERE city = ? ORDER BY timestamp",
+                Long.class, city);
+    }
+
+    @Test
+    void compact_ReportsPastHistoryRetention_AreDeletedInBatches() {
+        for (int i = 0; i < 10; i++) {
+            insert("Oslo", NOW.minus(Duration.ofDays(100)).plusSeconds(i));
+        }
+        insert("Oslo", NOW.minus(Duration.ofDays(1)));
+
+        ReportRetentionJob.Result result = job.compact(NOW);
+
+        assertEquals(10, result.expired());
+        assertEquals(List.of(NOW.minus(Duration.ofDays(1)).getEpochSecond()), timestamps("Oslo"));
+    }
+
+    @Test
+    void compact_OldReports_KeepLatestPerLocationAndBucket() {
+        Instant hour = NOW.minus(Duration.ofDays(10)).truncatedTo(ChronoUnit.HOURS);
+        insert("Oslo", hour.plusSeconds(60));
+        insert("Oslo", hour.plusSeconds(1200));
+        insert("Oslo", hour.plusSeconds(3000));
+        insert("Oslo", hour.plusSeconds(3700));
+        insert("Bergen", hour.plusSeconds(100));
+        insert("Bergen", hour.plusSeconds(200));
+
+        ReportRetentionJob.Result result = job.compact(NOW);
+
+        assertEquals(3, result.downsampled());
+        assertEquals(List.of(hour.plusSeconds(3000).getEpochSecond(), hour.plusSeconds(3700).getEpochSecond()),
+                timestamps("Oslo"));
+        assertEquals(List.of(hour.plusSeconds(200).getEpochSecond()), timestamps("Bergen"));
+    }
+
+    @Test
+    void compact_RecentReports_AreKeptAsWritten() {
+        for (int i = 0; i < 5; i++) {
+            insert("Oslo", NOW.minus(Duration.ofDays(2)).plusSeconds(i * 60));
+        }
+
+        ReportRetentionJob.Result result = job.compact(NOW);
+
+        assertEquals(new ReportRetentionJob.Result(0, 0), result);
+        assertEquals(5, timestamps("Oslo").size());
+    }
+
+    @Test
+    void compact_LatestReportOfIdleLocation_Survives() {
+        Instant lastSeen = NOW.minus(Duration.ofDays(30)).minus(Duration.ofMinutes(10));
+        insert("Oslo", lastSeen.minus(Duration.ofMinutes(10)));
+        insert("Oslo", lastSeen);
+
+        job.compact(NOW);
+
+        assertEquals(List.of(lastSeen.getEpochSecond()), timestamps("Oslo"));
+    }
+
+    @Test
+    void compact_RepeatedRun_OnlyCompactsNewlyAgedReports() {
+        Instant hour = NOW.minus(Duration.ofDays(8)).truncatedTo(ChronoUnit.HOURS);
+        insert("Oslo", hour.plusSeconds(10));
+        insert("Oslo", hour.plusSeconds(20));
+        assertEquals(1, job.compact(NOW).downsampled());
+
+        Instant later = NOW.plus(Duration.ofDays(1));
+        Instant newlyAged = later.minus(Duration.ofDays(7)).minus(Duration.ofHours(2)).truncatedTo(
+                ChronoUnit.HOURS);
+        insert("Oslo", newlyAged.plusSeconds(10));
+        insert("Oslo", newlyAged.plusSeconds(20));
+
+        assertEquals(1, job.compact(later).downsampled());
+        assertEquals(2, timestamps("Oslo").size());
+    }
+}
@@ -0,0 +1,215 @@
+package com.weatherapi.service;
+
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportSnapshotJobTest {
+
+    private static final long NOW = Instant.now().getEpochSecond();
+
+    @TempDir
+    private Path directory;
+
+    private final List<EmbeddedDatabase> databases = new ArrayList<>();
+    private final List<WeatherReportWriter> writers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        writers.forEach(WeatherReportWriter::shutdown);
+        databases.forEach(EmbeddedDatabase::shutdown);
+    }
+
+    /**
+     * A fresh database, writer and cache, as after a restart.
+     */
+    private final class Instance {
+        final JdbcTemplate jdbcTemplate;
+        final WeatherReportWriter writer;
+        final WeatherReportCache cache = new WeatherReportCache(100, Duration.ofHours(1),
+                WeatherReportCache.EvictionPolicy.W_TINY_LFU);
+        final LocationGridIndex locationIndex = new LocationGridIndex(10);
+        final ReportSnapshotJob job;
+
+        Instance() {
+            EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build();
+            databases.add(database);
+            jdbcTemplate = new JdbcTemplate(database);
+            jdbcTemplate.execute("""
+                    CREATE TABLE weather_report (
+                        id BIGINT PRIMARY KEY,
+                        city VARCHAR(255),
+                        country VARCHAR(255),
+                        description VARCHAR(255),
+                        timestamp BIGINT,
+                        latitude DOUBLE PRECISION,
+                        longitude DOUBLE PRECISION
+                    )""");
+            jdbcTemplate.execute("CREATE SEQUENCE weather_report_seq INCREMENT BY " + WeatherReport.ID_BLOCK_SIZE);
+            writer = new WeatherReportWriter(jdbcTemplate, 100, 50, Duration.ofMillis(10), Duration.ofMillis(50));
+            writers.add(writer);
+            job = new ReportSnapshotJob(jdbcTemplate, writer, cache, locationIndex, directory.resolve("latest.snapshot").toString());
+        }
+
+        void insert(long id, String city, String description, long timestamp) {
+            jdbcTemplate.update("INSERT INTO weather_report (id, city, country, description, timestamp) VALUES (?, ?, ?, ?, ?)",
+                    id, city, "GB", description, timestamp);
+        }
+
+        void insertAt(long id, String city, double latitude, double longitude) {
+            jdbcTemplate.update("""
+                    INSERT INTO weather_report (id, city, country, description, timestamp, latitude, longitude)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)""", id, city, "GB", "Cloudy", NOW, latitude, longitude);
+        }
+
+        List<String> stored() {
+            return jdbcTemplate.queryForList(
+                    "SELECT id || ' ' || city || ' ' || description FROM weather_report ORDER BY id", String.class);
+        }
+    }
+
+    @Test
+    void save_ThenRestoreAfterRestart_LatestReportPerLocationStoredAndCached() throws Exception {
+        Instance before = new Instance();
+        before.insert(1, "London", "Rain", NOW - 7200);
+        before.insert(2, "London", "Cloudy", NOW - 60);
+        before.insert(3, "Zürich", "Snow", NOW - 30);
+        before.insert(4, "Leeds", "Fog", NOW - 86_400);
+
+        assertEquals(3, before.job.save());
+
+        Instance after = new Instance();
+        after.job.restore();
+        after.job.awaitRestore();
+
+        assertEquals(List.of("2 London Cloudy", "3 Zürich Snow", "4 Leeds Fog"), after.stored());
+        assertEquals("Cloudy", after.cache.peek(new Location("London", "GB")).orElseThrow().description());
+        assertEquals("Snow", after.cache.peek(new Location("Zürich", "GB")).orElseThrow().description());
+        // Past the cache TTL: only kept in the table, for the stale fallback.
+        assertTrue(after.cache.peek(new Location("Leeds", "GB")).isEmpty());
+    }
+
+    @Test
+    void restore_NewReportsWrittenAfterwards_GetIdsPastRestoredOnes() throws IOException {
+        Instance before = new Instance();
+        before.insert(500, "London", "Cloudy", NOW);
+        before.job.save();
+
+        Instance after = new Instance();
+        after.job.restore();
+        WeatherReport written = after.writer.write(new WeatherReport(null, "Paris", "FR", "Sunny", NOW));
+
+        assertTrue(written.id() > 500, "id " + written.id());
+    }
+
+    @Test
+    void restore_TableNotEmpty_LeavesTableAlone() throws IOException {
+        Instance before = new Instance();
+        before.insert(1, "London", "Cloudy", NOW);
+        before.job.save();
+
+        Instance after = new Instance();
+        after.insert(1, "Leeds", "Fog", NOW);
+        after.job.restore();
+
+        assertEquals(List.of("1 Leeds Fog"), after.stored());
+    }
+
+    @Test
+    void restore_DamagedSnapshot_Skipped() throws IOException {
+        Instance before = new Instance();
+        before.insert(1, "London", "Cloudy", NOW);
+        before.job.save();
+        Path snapshot = directory.resolve("latest.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[10] ^= 0x01;
+        Files.write(snapshot, bytes);
+
+        Instance after = new Instance();
+        after.job.restore();
+
+        assertTrue(after.stored().isEmpty());
+        assertThrows(IOException.class, () -> ReportSnapshotFile.read(snapshot));
+    }
+
+    @Test
+    void save_ThenRestore_CoordinatesKeptAndLocationsIndexed() throws Exception {
+        Instance before = new Instance();
+        before.insertAt(1, "London", 51.5085, -0.1257);
+        before.insert(2, "Leeds", "Fog", NOW);
+        before.job.save();
+
+        Instance after = new Instance();
+        after.job.restore();
+
+        WeatherReport london = after.cache.peek(new Location("London", "GB")).orElseThrow();
+        assertEquals(51.5085, london.latitude());
+        assertEquals(-0.1257, london.longitude());
+        assertNull(after.cache.peek(new Location("Leeds", "GB")).orElseThrow().latitude());
+        assertEquals(new Location("London", "GB"), after.locationIndex.nearest(51.52, -0.11));
+        assertEquals(1, after.locationIndex.size());
+    }
+
+    @Test
+    void read_UnknownLayout_Rejected() throws IOException {
+        Path snapshot = directory.resolve("latest.snapshot");
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(Files.newOutputStream(snapshot),
+                checksum))) {
+            out.writeInt(0x57525331);
+            out.writeLong(7);
+            out.writeLong(NOW);
+            for (String value : List.of("London", "GB", "Cloudy")) {
+                out.writeShort(value.length());
+                out.writeBytes(value);
+            }
+            out.writeInt(1);
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+        }
+
+        assertThrows(IOException.class, () -> ReportSnapshotFile.read(snapshot));
+    }
+
+    @Test
+    void save_WriterFails_PreviousSnapshotKept() throws IOException {
+        Path snapshot = directory.resolve("latest.snapshot");
+        Instance instance = new Instance();
+        instance.insert(1, "London", "Cloudy", NOW);
+        instance.job.save();
+
+        try (ReportSnapshotFile.Writer writer = new ReportSnapshotFile.Writer(snapshot)) {
+            writer.write(new WeatherReport(2L, "Paris", "FR", "Sunny", NOW));
+            // Closed without finish(), as when the query fails halfway.
+        }
+
+        assertEquals(List.of("London"), ReportSnapshotFile.read(snapshot).stream().map(WeatherReport::city).toList());
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(snapshot), files.toList());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.weatherapi.service;
+
+import com.weatherapi.exception.InvalidApiKeyException;
+import com.weatherapi.model.HistoryCursor;
+import com.weatherapi.model.HistoryPage;
+import com.weatherapi.model.WeatherReport;
+import com.weatherapi.util.ApiKeyManager;
+import com.weatherapi.util.LocationNormalizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import({WeatherHistoryService.class, LocationNormalizer.class})
+class WeatherHistoryServiceTest {
+
+    private static final String API_KEY = "valid_key";
+    private static final long BASE = 1_700_000_000L;
+
+    @Autowired
+    private WeatherHistoryService historyService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ApiKeyManager apiKeyManager;
+
+    @BeforeEach
+    void setUp() {
+        when(apiKeyManager.isValidApiKey(API_KEY)).thenReturn(true);
+        when(apiKeyManager.allowRequest(API_KEY)).thenReturn(true);
+    }
+
+    private void insert(long id, String city, long timestamp) {
+        jdbcTemplate.update("INSERT INTO weather_report (id, city, country, description, timestamp) VALUES (?, ?, ?, ?, ?)",
+                id, city, "NO", "Cloudy", timestamp);
+    }
+
+    private static List<Long> ids(List<WeatherReport> reports) {
+        return reports.stream().map(WeatherReport::id).toList();
+    }
+
+    @Test
+    void getHistory_WalksRangeNewestFirstAcrossPages() {
+        for (long i = 1; i <= 7; i++) {
+            insert(i, "Oslo", BASE + i * 60);
+        }
+        insert(8, "Bergen", BASE + 120);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            HistoryPage page = historyService.getHistory("Oslo", "NO", Instant.ofEpochSecond(BASE + 120),
+                    Instant.ofEpochSecond(BASE + 420), cursor, 2, API_KEY);
+            seen.addAll(ids(page.reports()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(6L, 5L, 4L, 3L, 2L), seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void getHistory_EqualTimestamps_OrderedById() {
+        insert(1, "Oslo", BASE);
+        insert(2, "Oslo", BASE);
+        insert(3, "Oslo", BASE);
+
+        HistoryPage first = historyService.getHistory("Oslo", "NO", Instant.ofEpochSecond(BASE),
+                Instant.ofEpochSecond(BASE + 1), null, 2, API_KEY);
+        HistoryPage second = historyService.getHistory("Oslo", "NO", Instant.ofEpochSecond(BASE),
+                Instant.ofEpochSecond(BASE + 1), first.nextCursor(), 2, API_KEY);
+
+        assertEquals(List.of(3L, 2L), ids(first.reports()));
+        assertEquals(new HistoryCursor(BASE, 2), HistoryCursor.decode(first.nextCursor()));
+        assertEquals(List.of(1L), ids(second.reports()));
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void getHistory_SubSecondTo_IncludesReportsOfItsSecond() {
+        insert(1, "Oslo", BASE);
+        insert(2, "Oslo", BASE + 1);
+
+        HistoryPage page = historyService.getHistory("Oslo", "NO", Instant.ofEpochSecond(BASE - 10),
+                Instant.ofEpochSecond(BASE, 500_000_000), null, 10, API_KEY);
+
+        assertEquals(List.of(1L), ids(page.reports()));
+    }
+
+    @Test
+    void getHistory_SubSecondFrom_ExcludesReportsOfItsSecond() {
+        insert(1, "Oslo", BASE);
+        insert(2, "Oslo", BASE + 1);
+
+        HistoryPage page = historyService.getHistory("Oslo", "NO", Instant.ofEpochSecond(BASE, 500_000_000),
+                Instant.ofEpochSecond(BASE + 10), null, 10, API_KEY);
+
+        assertEquals(List.of(2L), ids(page.reports()));
+    }
+
+    @Test
+    void exportHistory_SubSecondBounds_ExportsReportsWithinRange() {
+        insert(1, "Oslo", BASE);
+        insert(2, "Oslo", BASE + 1);
+        insert(3, "Oslo", BASE + 2);
+
+        List<WeatherReport> exported = new ArrayList<>();
+        historyService.exportHistory("Oslo", "NO", Instant.ofEpochSecond(BASE, 1), Instant.ofEpochSecond(BASE + 1, 1),
+                API_KEY).writeTo(exported::add);
+
+        assertEquals(List.of(2L), ids(exported));
+    }
+
+    @Test
+    void getHistory_InvalidCursor_ThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> historyService.getHistory("Oslo", "NO",
+                Instant.ofEpochSecond(BASE), Instant.ofEpochSecond(BASE + 1), "not-a-cursor", 2, API_KEY));
+    }
+
+    @Test
+    void getHistory_FromNotBeforeTo_ThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> historyService.getHistory("Oslo", "NO",
+                Instant.ofEpochSecond(BASE), Instant.ofEpochSecond(BASE), null, 2, API_KEY));
+    }
+
+    @Test
+    void getHistory_InvalidApiKey_ThrowsInvalidApiKeyException() {
+        assertThrows(InvalidApiKeyException.class, () -> historyService.getHistory("Oslo", "NO",
+                Instant.ofEpochSecond(BASE), Instant.ofEpochSecond(BASE + 1), null, 2, "invalid_key"));
+    }
+
+    @Test
+    void exportHistory_StreamsWholeRangeNewestFirst() {
+        for (long i = 1; i <= 1200; i++) {
+            insert(i, "Oslo", BASE + i);
+        }
+
+        List<WeatherReport> exported = new ArrayList<>();
+        historyService.exportHistory("Oslo", "NO", Instant.ofEpochSecond(BASE + 101), Instant.ofEpochSecond(BASE + 1101),
+                API_KEY).writeTo(exported::add);
+
+        assertEquals(1000, exported.size());
+        assertEquals(1100L, exported.get(0).id());
+        assertEquals(101L, exported.get(999).id());
+    }
+}
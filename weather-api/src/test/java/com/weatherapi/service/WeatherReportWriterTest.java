@@ -0,0 +1,162 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.WeatherReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherReportWriterTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private WeatherReportWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("""
+                CREATE TABLE weather_report (
+                    id BIGINT PRIMARY KEY,
+                    city VARCHAR(255),
+                    country VARCHAR(255),
+                    description VARCHAR(255),
+                    timestamp BIGINT,
+                    latitude DOUBLE PRECISION,
+                    longitude DOUBLE PRECISION
+                )""");
+        jdbcTemplate.execute("CREATE SEQUENCE weather_report_seq INCREMENT BY " + WeatherReport.ID_BLOCK_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+        database.shutdown();
+    }
+
+    private WeatherReport report(String city) {
+        return new WeatherReport(null, city, "XX", "Cloudy", 1_700_000_000L);
+    }
+
+    private int storedCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM weather_report", Integer.class);
+    }
+
+    @Test
+    void write_ReturnsReportWithIdBeforeInsert() {
+        writer = new WeatherReportWriter(jdbcTemplate, 100, 50, Duration.ofMinutes(1), Duration.ofMillis(50));
+
+        WeatherReport written = writer.write(report("Oslo"));
+
+        assertNotNull(written.id());
+        assertEquals("Oslo", written.city());
+        assertEquals(0, storedCount());
+    }
+
+    @Test
+    void write_FullBatch_FlushesWithoutWaitingForInterval() throws InterruptedException {
+        writer = new WeatherReportWriter(jdbcTemplate, 100, 10, Duration.ofMinutes(1), Duration.ofMillis(50));
+
+        for (int i = 0; i < 10; i++) {
+            writer.write(report("City" + i));
+        }
+
+        awaitStoredCount(10);
+    }
+
+    @Test
+    void write_PartialBatch_FlushesAfterInterval() throws InterruptedException {
+        writer = new WeatherReportWriter(jdbcTemplate, 100, 50, Duration.ofMillis(50), Duration.ofMillis(50));
+
+        writer.write(report("Oslo"));
+        writer.write(report("Bergen"));
+
+        awaitStoredCount(2);
+        assertEquals(List.of("Bergen", "Oslo"),
+                jdbcTemplate.queryForList("SELECT city FROM weather_report ORDER BY city", String.class));
+    }
+
+    @Test
+    void write_ConcurrentWriters_AssignDistinctIdsAcrossSequenceBlocks() throws Exception {
+        writer = new WeatherReportWriter(jdbcTemplate, 1000, 50, Duration.ofMillis(20), Duration.ofMillis(50));
+
+        List<Future<WeatherReport>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 500; i++) {
+                int n = i;
+                results.add(executor.submit(() -> writer.write(report("City" + n))));
+            }
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (Future<WeatherReport> result : results) {
+            ids.add(result.get().id());
+        }
+        assertEquals(500, ids.size());
+        awaitStoredCount(500);
+    }
+
+    @Test
+    void write_QueueFull_KeepsEveryReport() {
+        writer = new WeatherReportWriter(jdbcTemplate, 1, 50, Duration.ofMinutes(1), Duration.ofMillis(1));
+
+        for (int i = 0; i < 200; i++) {
+            writer.write(report("City" + i));
+        }
+        writer.shutdown();
+
+        assertEquals(200, storedCount());
+    }
+
+    @Test
+    void write_BatchRejected_InsertsOtherReportsOneByOne() {
+        writer = new WeatherReportWriter(jdbcTemplate, 100, 50, Duration.ofMinutes(1), Duration.ofMillis(50));
+        writer.write(report("Oslo"));
+        writer.write(report("X".repeat(300)));
+        writer.write(report("Bergen"));
+
+        writer.shutdown();
+
+        assertEquals(List.of("Bergen", "Oslo"),
+                jdbcTemplate.queryForList("SELECT city FROM weather_report ORDER BY city", String.class));
+        assertEquals(1, writer.droppedCount());
+    }
+
+    @Test
+    void shutdown_DrainsQueuedReports() {
+        writer = new WeatherReportWriter(jdbcTemplate, 100, 50, Duration.ofMinutes(1), Duration.ofMillis(50));
+        for (int i = 0; i < 5; i++) {
+            writer.write(report("City" + i));
+        }
+
+        writer.shutdown();
+
+        assertEquals(5, storedCount());
+        assertEquals(0, writer.pendingCount());
+    }
+
+    private void awaitStoredCount(int expected) throws InterruptedException {
+        for (int i = 0; i < 200 && storedCount() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, storedCount());
+    }
+}
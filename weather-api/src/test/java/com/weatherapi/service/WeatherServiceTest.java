@@ -1,23 +1,45 @@
 package com.weatherapi.service;
 
+import com.weatherapi.cache.LocationGridIndex;
+import com.weatherapi.cache.WeatherReportCache;
+import com.weatherapi.client.CurrentWeather;
+import com.weatherapi.client.OpenWeatherMapClient;
+import com.weatherapi.exception.ErrorCode;
 import com.weatherapi.exception.InvalidApiKeyException;
 import com.weatherapi.exception.RateLimitExceededException;
+import com.weatherapi.exception.UpstreamUnavailableException;
+import com.weatherapi.exception.WeatherApiException;
+import com.weatherapi.metrics.WeatherMetrics;
+import com.weatherapi.model.BatchWeatherResult;
+import com.weatherapi.model.Location;
 import com.weatherapi.model.WeatherReport;
 import com.weatherapi.repository.WeatherReportRepository;
 import com.weatherapi.util.ApiKeyManager;
+import com.weatherapi.util.LocationNormalizer;
+import com.weatherapi.util.LocationPopularity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
@@ -27,38 +49,63 @@ class WeatherServiceTest {
     private WeatherReportRepository repository;
 
     @Mock
-    private RestTemplate restTemplate;
+    private OpenWeatherMapClient weatherClient;
 
     @Mock
     private ApiKeyManager apiKeyManager;
 
+    @Mock
+    private WeatherReportWriter reportWriter;
+
+    @Mock
+    private WeatherUpdateBroadcaster updateBroadcaster;
+
+    private WeatherReportCache cache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReportRefreshExecutor refreshExecutor;
+
+    private LocationPopularity popularity;
+
     private WeatherService weatherService;
 
     @BeforeEach
     void setUp() {
         openMocks(this);
-        weatherService = new WeatherService(repository, restTemplate, apiKeyManager);
-        ReflectionTestUtils.setField(weatherService, "apiUrl", "http://api.openweathermap.org/data/2.5/weather");
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new WeatherReportCache(100, Duration.ofHours(1), WeatherReportCache.EvictionPolicy.W_TINY_LFU);
+        refreshExecutor = new ReportRefreshExecutor(2, 10);
+        popularity = new LocationPopularity(1024, 10);
+        weatherService = new WeatherService(repository, weatherClient, apiKeyManager, cache, refreshExecutor, reportWriter,
+                new WeatherMetrics(meterRegistry), new LocationNormalizer(100), updateBroadcaster, popularity,
+                new LocationGridIndex(10));
+        ReflectionTestUtils.setField(weatherService, "softTtl", Duration.ofMinutes(50));
+        ReflectionTestUtils.setField(weatherService, "hardTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(weatherService, "batchTimeout", Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        refreshExecutor.shutdown();
     }
 
     @Test
     void getWeatherReport_ValidApiKey_ReturnsWeatherReport() {
         String city = "London";
-        String country = "UK";
+        String country = "GB";
         String apiKey = "valid_key";
 
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
         when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
                 .thenReturn(Optional.empty());
 
-        Map<String, Object> weatherData = Map.of(
-                "weather", List.of(Map.of("description", "Cloudy"))
-        );
-        when(restTemplate.getForObject(anyString(), eq(Map.class))).thenReturn(weatherData);
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Cloudy"));
 
         // Mock the save operation
-        when(repository.save(any(WeatherReport.class))).thenAnswer(invocation -> {
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> {
             WeatherReport reportToSave = invocation.getArgument(0);
             return new WeatherReport(1L, reportToSave.city(), reportToSave.country(),
                     reportToSave.description(), reportToSave.timestamp());
@@ -78,17 +125,18 @@ class WeatherServiceTest {
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(false);
 
         assertThrows(InvalidApiKeyException.class,
-                () -> weatherService.getWeatherReport("London", "UK", apiKey));
+                () -> weatherService.getWeatherReport("London", "GB", apiKey));
     }
 
     @Test
     void getWeatherReport_RateLimitExceeded_ThrowsRateLimitExceededException() {
         String apiKey = "valid_key";
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(false);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(false);
 
         assertThrows(RateLimitExceededException.class,
-                () -> weatherService.getWeatherReport("London", "UK", apiKey));
+                () -> weatherService.getWeatherReport("London", "GB", apiKey));
+        assertEquals(1, requests("single", "rejected"));
     }
 
     @Test
@@ -100,7 +148,7 @@ class WeatherServiceTest {
         WeatherReport cachedReport = new WeatherReport(1L, city, country, "Sunny", currentTime - 1800); // 30 minutes old
 
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
         when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
                 .thenReturn(Optional.of(cachedReport));
 
@@ -113,15 +161,16 @@ class WeatherServiceTest {
     @Test
     void getWeatherReport_InvalidApiResponse_ThrowsRuntimeException() {
         String city = "InvalidCity";
-        String country = "IC";
+        String country = "FR";
         String apiKey = "valid_key";
 
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
         when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
                 .thenReturn(Optional.empty());
 
-        when(restTemplate.getForObject(anyString(), eq(Map.class))).thenReturn(null);
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "No response from weather API"));
 
         assertThrows(RuntimeException.class,
                 () -> weatherService.getWeatherReport(city, country, apiKey));
@@ -130,14 +179,15 @@ class WeatherServiceTest {
     @Test
     void getWeatherReport_ExternalApiReturnsNull_ThrowsRuntimeException() {
         String city = "London";
-        String country = "UK";
+        String country = "GB";
         String apiKey = "valid_key";
 
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
         when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
                 .thenReturn(Optional.empty());
-        when(restTemplate.getForObject(anyString(), eq(Map.class))).thenReturn(null);
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "No response from weather API"));
 
         assertThrows(RuntimeException.class, () -> weatherService.getWeatherReport(city, country, apiKey));
     }
@@ -145,15 +195,595 @@ class WeatherServiceTest {
     @Test
     void getWeatherReport_ExternalApiReturnsInvalidData_ThrowsRuntimeException() {
         String city = "London";
-        String country = "UK";
+        String country = "GB";
         String apiKey = "valid_key";
 
         when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
-        when(apiKeyManager.allowRequest(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
         when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
                 .thenReturn(Optional.empty());
-        when(restTemplate.getForObject(anyString(), eq(Map.class))).thenReturn(Map.of("invalid", "data"));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Invalid weather data format"));
 
         assertThrows(RuntimeException.class, () -> weatherService.getWeatherReport(city, country, apiKey));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getWeatherReport_RepeatedLookup_ServedFromCacheWithoutDatabase() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport storedReport = new WeatherReport(1L, city, country, "Sunny", Instant.now().getEpochSecond() - 60);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(storedReport));
+
+        assertEquals(storedReport, weatherService.getWeatherReport(city, country, apiKey));
+        assertEquals(storedReport, weatherService.getWeatherReport(city, country, apiKey));
+
+        verify(repository, times(1)).findFirstByCityAndCountryOrderByTimestampDesc(city, country);
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+        assertEquals(1, servedFrom("database"));
+        assertEquals(1, servedFrom("cache"));
+        assertEquals(2, requests("single", "success"));
+        assertEquals(2, meterRegistry.get("weather.report.age").summary().count());
+    }
+
+    @Test
+    void getWeatherReport_AfterFetch_PopulatesCache() {
+        String city = "London";
+        String country = "GB";
+        String apiKey = "valid_key";
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Cloudy"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.getWeatherReport(city, country, apiKey);
+        WeatherReport report = weatherService.getWeatherReport(city, country, apiKey);
+
+        assertEquals("Cloudy", report.description());
+        verify(weatherClient, times(1)).fetchCurrentWeather(anyString(), anyString());
+        verify(repository, times(1)).findFirstByCityAndCountryOrderByTimestampDesc(city, country);
+    }
+
+    @Test
+    void getWeatherReport_ConcurrentMisses_SingleUpstreamCall() throws Exception {
+        String city = "London";
+        String country = "GB";
+        String apiKey = "valid_key";
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new CurrentWeather("Cloudy");
+        });
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Future<WeatherReport>> results;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            results = IntStream.range(0, 20)
+                    .mapToObj(i -> executor.submit(() -> weatherService.getWeatherReport(city, country, apiKey)))
+                    .toList();
+        }
+
+        for (Future<WeatherReport> result : results) {
+            assertEquals("Cloudy", result.get().description());
+        }
+        verify(weatherClient, times(1)).fetchCurrentWeather(anyString(), anyString());
+        verify(reportWriter, times(1)).write(any(WeatherReport.class));
+    }
+
+    @Test
+    void getWeatherReport_PastSoftTtl_ReturnsExistingReportAndRefreshesInBackground() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport staleReport = new WeatherReport(1L, city, country, "Sunny",
+                Instant.now().getEpochSecond() - 55 * 60);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(staleReport));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Rain"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherReport report = weatherService.getWeatherReport(city, country, apiKey);
+
+        assertEquals(staleReport, report);
+        verify(reportWriter, timeout(2000)).write(any(WeatherReport.class));
+        awaitNoPendingRefresh();
+        assertEquals("Rain", weatherService.getWeatherReport(city, country, apiKey).description());
+    }
+
+    @Test
+    void getWeatherReport_FetchedReport_PublishedToSubscribers() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc("Paris", "FR")).thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Rain"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherReport report = weatherService.getWeatherReport("Paris", "FR", apiKey);
+
+        verify(updateBroadcaster).publish(report);
+    }
+
+    @Test
+    void getWeatherReports_RequestedLocations_CountedTowardsPopularity() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(eq(apiKey), anyInt())).thenReturn(true);
+        long now = Instant.now().getEpochSecond();
+        cache.put(new Location("Paris", "FR"), new WeatherReport(1L, "Paris", "FR", "Sunny", now));
+        cache.put(new Location("London", "GB"), new WeatherReport(2L, "London", "GB", "Rain", now));
+
+        weatherService.getWeatherReport("paris", "fr", apiKey);
+        weatherService.getWeatherReports(List.of(new Location("Paris", "FR"), new Location("London", "GB")), apiKey);
+
+        assertEquals(2, popularity.estimate(new Location("Paris", "FR")));
+        assertEquals(1, popularity.estimate(new Location("London", "GB")));
+    }
+
+    @Test
+    void getWeatherReport_FetchedReportWithCityId_CityIdKeptForPopularLocation() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc("Paris", "FR")).thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather("Paris", "FR")).thenReturn(new CurrentWeather("Rain", 2988507L));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.getWeatherReport("Paris", "FR", apiKey);
+
+        assertEquals(List.of(new LocationPopularity.PopularLocation(new Location("Paris", "FR"), 2988507L)),
+                popularity.topLocations());
+    }
+
+    @Test
+    void isDueForRefresh_ReportWithinLeadOfSoftTtl_Due() {
+        Location paris = new Location("Paris", "FR");
+        long now = Instant.now().getEpochSecond();
+        cache.put(paris, new WeatherReport(1L, "Paris", "FR", "Sunny", now - Duration.ofMinutes(46).toSeconds()));
+
+        assertFalse(weatherService.isDueForRefresh(paris, Duration.ZERO));
+        assertFalse(weatherService.isDueForRefresh(paris, Duration.ofMinutes(3)));
+        assertTrue(weatherService.isDueForRefresh(paris, Duration.ofMinutes(5)));
+        assertTrue(weatherService.isDueForRefresh(new Location("London", "GB"), Duration.ZERO));
+    }
+
+    @Test
+    void refreshInBackground_FreshReportCached_DoesNothing() {
+        Location paris = new Location("Paris", "FR");
+        cache.put(paris, new WeatherReport(1L, "Paris", "FR", "Sunny", Instant.now().getEpochSecond()));
+
+        weatherService.refreshInBackground(paris);
+
+        assertEquals(0, refreshExecutor.pendingCount());
+        verifyNoInteractions(weatherClient, apiKeyManager);
+    }
+
+    @Test
+    void refreshInBackground_NothingCached_FetchesWithoutChargingRateLimit() {
+        Location paris = new Location("Paris", "FR");
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Rain"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.refreshInBackground(paris);
+
+        verify(updateBroadcaster, timeout(2000)).publish(any(WeatherReport.class));
+        awaitNoPendingRefresh();
+        assertEquals("Rain", cache.peek(paris).orElseThrow().description());
+        verifyNoInteractions(apiKeyManager);
+    }
+
+    @Test
+    void getWeatherReport_PastHardTtl_FetchesSynchronously() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport expiredReport = new WeatherReport(1L, city, country, "Sunny",
+                Instant.now().getEpochSecond() - 2 * 3600);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(expiredReport));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Rain"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherReport report = weatherService.getWeatherReport(city, country, apiKey);
+
+        assertEquals("Rain", report.description());
+        assertEquals(0, refreshExecutor.pendingCount());
+    }
+
+    @Test
+    void getWeatherReport_UpstreamUnavailable_ServesLatestStoredReportAsStale() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport expiredReport = new WeatherReport(1L, city, country, "Sunny",
+                Instant.now().getEpochSecond() - 6 * 3600);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(expiredReport));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new UpstreamUnavailableException("Weather API circuit breaker is open"));
+
+        WeatherReport report = weatherService.getWeatherReport(city, country, apiKey);
+
+        assertTrue(report.stale());
+        assertEquals("Sunny", report.description());
+        assertEquals(expiredReport.timestamp(), report.timestamp());
+        assertTrue(cache.peek(new Location(city, country)).isEmpty());
+        verify(reportWriter, never()).write(any(WeatherReport.class));
+        assertEquals(1, servedFrom("stale"));
+        assertTrue(meterRegistry.get("weather.report.age").summary().max() >= 6 * 3600);
+    }
+
+    @Test
+    void getWeatherReport_UpstreamUnavailableAndNothingStored_ThrowsExternalApiError() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new UpstreamUnavailableException("Weather API circuit breaker is open"));
+
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> weatherService.getWeatherReport(city, country, apiKey));
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR, e.getErrorCode());
+    }
+
+    @Test
+    void getWeatherReport_UpstreamFailsWhileBreakerClosed_DoesNotFallBack() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport expiredReport = new WeatherReport(1L, city, country, "Sunny",
+                Instant.now().getEpochSecond() - 6 * 3600);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(expiredReport));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenThrow(new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "Weather API timed out"));
+
+        assertThrows(WeatherApiException.class, () -> weatherService.getWeatherReport(city, country, apiKey));
+    }
+
+    @Test
+    void getWeatherReport_WithinSoftTtl_DoesNotRefresh() {
+        String city = "Paris";
+        String country = "FR";
+        String apiKey = "valid_key";
+        WeatherReport report = new WeatherReport(1L, city, country, "Sunny", Instant.now().getEpochSecond() - 60);
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(city, country))
+                .thenReturn(Optional.of(report));
+
+        weatherService.getWeatherReport(city, country, apiKey);
+
+        verify(weatherClient, never()).fetchCurrentWeather(anyString(), anyString());
+    }
+
+    @Test
+    void getWeatherReports_MixedSources_ResolvesEachLocationInRequestOrder() {
+        String apiKey = "valid_key";
+        Location cached = new Location("Paris", "FR");
+        Location stored = new Location("Berlin", "DE");
+        Location missing = new Location("London", "GB");
+        long now = Instant.now().getEpochSecond();
+        cache.put(cached, new WeatherReport(1L, "Paris", "FR", "Sunny", now - 60));
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 3)).thenReturn(true);
+        when(repository.findByCityInAndCountryInAndTimestampGreaterThanEqual(anyCollection(), anyCollection(), anyLong()))
+                .thenReturn(List.of(
+                        new WeatherReport(2L, "Berlin", "DE", "Windy", now - 600),
+                        new WeatherReport(3L, "Berlin", "DE", "Snow", now - 120),
+                        new WeatherReport(4L, "London", "DE", "Fog", now - 60)));
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Cloudy"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchWeatherResult> results = weatherService.getWeatherReports(
+                List.of(cached, stored, missing, cached), apiKey);
+
+        assertEquals(3, results.size());
+        assertEquals("Sunny", results.get(0).report().description());
+        assertEquals("Snow", results.get(1).report().description());
+        assertEquals("Cloudy", results.get(2).report().description());
+        assertEquals("London", results.get(2).city());
+        verify(weatherClient, times(1)).fetchCurrentWeather(anyString(), anyString());
+        assertEquals(1, servedFrom("cache"));
+        assertEquals(1, servedFrom("database"));
+        assertEquals(1, servedFrom("upstream"));
+        assertEquals(1, requests("batch", "success"));
+    }
+
+    @Test
+    void getWeatherReports_UpstreamFailure_ReturnsPartialResults() {
+        String apiKey = "valid_key";
+        Location ok = new Location("Paris", "FR");
+        Location broken = new Location("Nowhere", "US");
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 2)).thenReturn(true);
+        when(repository.findByCityInAndCountryInAndTimestampGreaterThanEqual(anyCollection(), anyCollection(), anyLong()))
+                .thenReturn(List.of());
+        when(weatherClient.fetchCurrentWeather(eq("Paris"), anyString()))
+                .thenReturn(new CurrentWeather("Sunny"));
+        when(weatherClient.fetchCurrentWeather(eq("Nowhere"), anyString()))
+                .thenThrow(new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "No response from weather API"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchWeatherResult> results = weatherService.getWeatherReports(List.of(ok, broken), apiKey);
+
+        assertEquals("Sunny", results.get(0).report().description());
+        assertNull(results.get(0).errorCode());
+        assertNull(results.get(1).report());
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR.getCode(), results.get(1).errorCode());
+        assertEquals("No response from weather API", results.get(1).error());
+    }
+
+    @Test
+    void getWeatherReports_SlowUpstream_FailsItemAfterBatchTimeout() {
+        String apiKey = "valid_key";
+        Location slow = new Location("Paris", "FR");
+        ReflectionTestUtils.setField(weatherService, "batchTimeout", Duration.ofMillis(100));
+
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findByCityInAndCountryInAndTimestampGreaterThanEqual(anyCollection(), anyCollection(), anyLong()))
+                .thenReturn(List.of());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return new CurrentWeather("Sunny");
+        });
+
+        long start = System.nanoTime();
+        List<BatchWeatherResult> results = weatherService.getWeatherReports(List.of(slow), apiKey);
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 900);
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR.getCode(), results.get(0).errorCode());
+        assertEquals(1, weatherService.batchFetchThreadCount());
+    }
+
+    @Test
+    void getWeatherReports_RateLimitExceeded_RejectsWholeBatch() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 2)).thenReturn(false);
+
+        assertThrows(RateLimitExceededException.class, () -> weatherService.getWeatherReports(
+                List.of(new Location("Paris", "FR"), new Location("London", "GB")), apiKey));
+        verify(weatherClient, never()).fetchCurrentWeather(anyString(), anyString());
+    }
+
+    @Test
+    void getWeatherReport_VariantSpellings_ShareOneCanonicalLocation() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc(anyString(), anyString()))
+                .thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather(anyString(), anyString()))
+                .thenReturn(new CurrentWeather("Cloudy"));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherReport first = weatherService.getWeatherReport("London", "GB", apiKey);
+        WeatherReport second = weatherService.getWeatherReport(" london ", "gb", apiKey);
+        WeatherReport third = weatherService.getWeatherReport("LONDON", "UK", apiKey);
+
+        assertEquals("London", first.city());
+        assertEquals("GB", first.country());
+        assertSame(first, second);
+        assertSame(first, third);
+        verify(weatherClient, times(1)).fetchCurrentWeather("London", "GB");
+    }
+
+    @Test
+    void getWeatherReports_VariantSpellings_CollapsedIntoOneItem() {
+        String apiKey = "valid_key";
+        cache.put(new Location("New York", "US"), new WeatherReport(1L, "New York", "US", "Sunny",
+                Instant.now().getEpochSecond() - 60));
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+
+        List<BatchWeatherResult> results = weatherService.getWeatherReports(
+                List.of(new Location("new york", "us"), new Location("New  York", "USA")), apiKey);
+
+        assertEquals(1, results.size());
+        assertEquals("Sunny", results.get(0).report().description());
+    }
+
+    @Test
+    void getWeatherReport_UnknownCountry_ThrowsIllegalArgumentWithoutChargingRateLimit() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> weatherService.getWeatherReport("London", "XX", apiKey));
+        verify(apiKeyManager, never()).allowRequests(anyString(), anyInt());
+    }
+
+    @Test
+    void remainingFreshness_ReportWithinSoftTtl_ReturnsTimeUntilSoftTtl() {
+        WeatherReport report = new WeatherReport(1L, "Paris", "FR", "Sunny", Instant.now().getEpochSecond() - 1800);
+
+        long remaining = weatherService.remainingFreshness(report).toSeconds();
+
+        assertTrue(remaining > 1190 && remaining <= 1200, "remaining: " + remaining);
+    }
+
+    @Test
+    void remainingFreshness_PastSoftTtlOrStale_ReturnsZero() {
+        long now = Instant.now().getEpochSecond();
+
+        assertEquals(Duration.ZERO, weatherService.remainingFreshness(
+                new WeatherReport(1L, "Paris", "FR", "Sunny", now - 3300)));
+        assertEquals(Duration.ZERO, weatherService.remainingFreshness(
+                new WeatherReport(1L, "Paris", "FR", "Sunny", now).asStale()));
+    }
+
+    @Test
+    void getWeatherReportAt_NoLocationNearby_FetchesNamedPlaceAndSharesItWithNearbyCoordinates() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(weatherClient.fetchCurrentWeatherAt(anyDouble(), anyDouble()))
+                .thenReturn(new CurrentWeather("Cloudy", 2643743L, "london", "GB", 51.5085, -0.1257));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        WeatherReport first = weatherService.getWeatherReportAt(51.52, -0.11, apiKey);
+        WeatherReport second = weatherService.getWeatherReportAt(51.47, -0.2, apiKey);
+
+        assertEquals("London", first.city());
+        assertEquals(51.5085, first.latitude());
+        assertEquals(-0.1257, first.longitude());
+        assertSame(first, second);
+        verify(weatherClient, times(1)).fetchCurrentWeatherAt(anyDouble(), anyDouble());
+        assertEquals(1, servedFrom("upstream"));
+        assertEquals(1, servedFrom("cache"));
+        assertEquals(2, requests("coordinates", "success"));
+    }
+
+    @Test
+    void getWeatherReportAt_NamedPlaceBeyondRadius_RepeatedCoordinateStillResolvesToIt() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        // Reading is about 60 km from the requested coordinate.
+        when(weatherClient.fetchCurrentWeatherAt(anyDouble(), anyDouble()))
+                .thenReturn(new CurrentWeather("Rain", 2639577L, "Reading", "GB", 51.4542, -0.9731));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        weatherService.getWeatherReportAt(51.3, -1.8, apiKey);
+        WeatherReport again = weatherService.getWeatherReportAt(51.3, -1.8, apiKey);
+
+        assertEquals("Reading", again.city());
+        verify(weatherClient, times(1)).fetchCurrentWeatherAt(anyDouble(), anyDouble());
+    }
+
+    @Test
+    void getWeatherReportAt_LocationFetchedByName_ServedWithoutCoordinateQuery() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc("Paris", "FR")).thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather("Paris", "FR"))
+                .thenReturn(new CurrentWeather("Sunny", 2988507L, "Paris", "FR", 48.8534, 2.3488));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        WeatherReport byName = weatherService.getWeatherReport("Paris", "FR", apiKey);
+
+        WeatherReport byCoordinates = weatherService.getWeatherReportAt(48.86, 2.29, apiKey);
+
+        assertSame(byName, byCoordinates);
+        verify(weatherClient, never()).fetchCurrentWeatherAt(anyDouble(), anyDouble());
+        assertEquals(2, popularity.estimate(new Location("Paris", "FR")));
+    }
+
+    @Test
+    void getWeatherReportAt_NoNamedPlace_ThrowsExternalApiError() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(weatherClient.fetchCurrentWeatherAt(anyDouble(), anyDouble()))
+                .thenReturn(new CurrentWeather("Clear sky", 0L, "", null, -48.88, -123.39));
+
+        WeatherApiException e = assertThrows(WeatherApiException.class,
+                () -> weatherService.getWeatherReportAt(-48.88, -123.39, apiKey));
+
+        assertEquals(ErrorCode.EXTERNAL_API_ERROR, e.getErrorCode());
+        verify(reportWriter, never()).write(any(WeatherReport.class));
+    }
+
+    @Test
+    void getWeatherReportAt_CoordinateOutOfRange_ThrowsIllegalArgumentWithoutChargingRateLimit() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> weatherService.getWeatherReportAt(91, 0, apiKey));
+        assertThrows(IllegalArgumentException.class, () -> weatherService.getWeatherReportAt(0, Double.NaN, apiKey));
+        verify(apiKeyManager, never()).allowRequests(anyString(), anyInt());
+    }
+
+    @Test
+    void isServedFromCache_FreshCachedReport_TrueWithoutCountingLookup() {
+        Location london = new Location("London", "GB");
+        cache.put(london, new WeatherReport(1L, "London", "GB", "Cloudy", Instant.now().getEpochSecond(),
+                51.5085, -0.1257));
+
+        assertTrue(weatherService.isServedFromCache(" london ", "UK"));
+        assertFalse(weatherService.isServedFromCache("Paris", "FR"));
+        assertEquals(0, cache.stats().hitCount());
+        assertEquals(0, popularity.estimate(london));
+    }
+
+    @Test
+    void isServedFromCache_InvalidLocation_TrueAsRejectedBeforeLookup() {
+        assertTrue(weatherService.isServedFromCache(" ", "GB"));
+        assertTrue(weatherService.isServedFromCache("London", "ZZ"));
+        assertTrue(weatherService.isServedFromCache(null, "GB"));
+        assertTrue(weatherService.isServedFromCacheAt(91, 0));
+    }
+
+    @Test
+    void isServedFromCacheAt_IndexedLocationWithCachedReport_True() {
+        String apiKey = "valid_key";
+        when(apiKeyManager.isValidApiKey(apiKey)).thenReturn(true);
+        when(apiKeyManager.allowRequests(apiKey, 1)).thenReturn(true);
+        when(repository.findFirstByCityAndCountryOrderByTimestampDesc("Paris", "FR")).thenReturn(Optional.empty());
+        when(weatherClient.fetchCurrentWeather("Paris", "FR"))
+                .thenReturn(new CurrentWeather("Sunny", 2988507L, "Paris", "FR", 48.8534, 2.3488));
+        when(reportWriter.write(any(WeatherReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        assertFalse(weatherService.isServedFromCacheAt(48.86, 2.29));
+
+        weatherService.getWeatherReport("Paris", "FR", apiKey);
+
+        assertTrue(weatherService.isServedFromCacheAt(48.86, 2.29));
+        assertFalse(weatherService.isServedFromCacheAt(45.76, 4.84));
+    }
+
+    private double servedFrom(String source) {
+        return meterRegistry.get("weather.report.lookups").tag("source", source).counter().count();
+    }
+
+    private long requests(String endpoint, String outcome) {
+        return meterRegistry.get("weather.requests").tag("endpoint", endpoint).tag("outcome", outcome).timer().count();
+    }
+
+    private void awaitNoPendingRefresh() {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (refreshExecutor.pendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, refreshExecutor.pendingCount());
+    }
+}
@@ -0,0 +1,146 @@
+package com.weatherapi.service;
+
+import com.weatherapi.model.Location;
+import com.weatherapi.model.WeatherReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherUpdateBroadcasterTest {
+
+    private static final Location LONDON = new Location("London", "GB");
+    private static final Location PARIS = new Location("Paris", "FR");
+
+    private final WeatherUpdateBroadcaster broadcaster = new WeatherUpdateBroadcaster();
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void publish_SubscribedLocation_PushedToEverySubscriberOfIt() throws Exception {
+        RecordingSink first = new RecordingSink();
+        RecordingSink second = new RecordingSink();
+        RecordingSink other = new RecordingSink();
+        broadcaster.subscribe(List.of(LONDON), first);
+        broadcaster.subscribe(List.of(LONDON, PARIS), second);
+        broadcaster.subscribe(List.of(PARIS), other);
+
+        WeatherReport report = report(LONDON, 1L, 100L);
+        broadcaster.publish(report);
+
+        assertEquals(report, first.next());
+        assertEquals(report, second.next());
+        assertNull(other.reports.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(2, broadcaster.pushedCount());
+    }
+
+    @Test
+    void publish_SlowSubscriber_ReceivesOnlyLatestReportPerLocation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void send(WeatherReport report) throws IOException {
+                super.send(report);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        broadcaster.subscribe(List.of(LONDON), sink);
+
+        broadcaster.publish(report(LONDON, 1L, 100L));
+        assertEquals(1L, sink.next().id());
+        // The sink is stuck sending the first report; the next two meet in the pending slot.
+        broadcaster.publish(report(LONDON, 2L, 200L));
+        broadcaster.publish(report(LONDON, 3L, 300L));
+        release.countDown();
+
+        assertEquals(3L, sink.next().id());
+        assertNull(sink.reports.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, broadcaster.conflatedCount());
+    }
+
+    @Test
+    void offer_OlderThanLastSent_Dropped() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        WeatherUpdateBroadcaster.Subscription subscription = broadcaster.subscribe(List.of(LONDON), sink);
+
+        broadcaster.publish(report(LONDON, 2L, 200L));
+        assertEquals(2L, sink.next().id());
+        subscription.offer(report(LONDON, 1L, 100L));
+
+        assertNull(sink.reports.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void close_Subscription_UnregisteredAndSinkClosed() {
+        RecordingSink sink = new RecordingSink();
+        WeatherUpdateBroadcaster.Subscription subscription = broadcaster.subscribe(List.of(LONDON), sink);
+        assertEquals(Set.of(LONDON), broadcaster.subscribedLocations());
+
+        subscription.close();
+        subscription.close();
+
+        assertTrue(broadcaster.subscribedLocations().isEmpty());
+        assertEquals(0, broadcaster.activeCount());
+        assertEquals(1, sink.closes);
+    }
+
+    @Test
+    void publish_SinkFails_SubscriptionClosed() throws Exception {
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void send(WeatherReport report) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        broadcaster.subscribe(List.of(LONDON), sink);
+
+        broadcaster.publish(report(LONDON, 1L, 100L));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (broadcaster.activeCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, broadcaster.activeCount());
+        assertTrue(broadcaster.subscribedLocations().isEmpty());
+    }
+
+    private static WeatherReport report(Location location, long id, long timestamp) {
+        return new WeatherReport(id, location.city(), location.country(), "Cloudy", timestamp);
+    }
+
+    private static class RecordingSink implements WeatherUpdateBroadcaster.Sink {
+        final BlockingQueue<WeatherReport> reports = new LinkedBlockingQueue<>();
+        volatile int closes;
+
+        @Override
+        public void send(WeatherReport report) throws IOException {
+            reports.add(report);
+        }
+
+        @Override
+        public void close() {
+            closes++;
+        }
+
+        WeatherReport next() throws InterruptedException {
+            WeatherReport report = reports.poll(2, TimeUnit.SECONDS);
+            assertNotNull(report, "No report pushed");
+            return report;
+        }
+    }
+}
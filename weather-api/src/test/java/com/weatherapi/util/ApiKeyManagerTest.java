@@ -1,11 +1,17 @@
 package com.weatherapi.util;
 
+import com.weatherapi.config.RateLimitProperties;
+import com.weatherapi.ratelimit.InMemoryRateLimitStore;
+import com.weatherapi.ratelimit.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -13,11 +19,16 @@ class ApiKeyManagerTest {
 
     private ApiKeyManager apiKeyManager;
     private Clock clock;
+    private RateLimitProperties properties;
 
     @BeforeEach
     void setUp() {
         clock = Clock.fixed(Instant.parse("2023-01-01T00:00:00Z"), ZoneId.systemDefault());
-        apiKeyManager = new ApiKeyManager(clock);
+        RateLimitProperties.KeyLimit keyLimit = new RateLimitProperties.KeyLimit(5, null, null);
+        properties = new RateLimitProperties(RateLimiter.Algorithm.SLIDING_WINDOW, 5, Duration.ofHours(1), Map.of(
+                "API_KEY_1", keyLimit, "API_KEY_2", keyLimit, "API_KEY_3", keyLimit,
+                "API_KEY_4", keyLimit, "API_KEY_5", keyLimit), RateLimitProperties.StoreType.LOCAL, 0, 0, null);
+        apiKeyManager = new ApiKeyManager(properties, clock, new SimpleMeterRegistry());
     }
 
 
@@ -31,7 +42,7 @@ class ApiKeyManagerTest {
 
         // Move clock forward by 2 hours
         clock = Clock.fixed(Instant.parse("2023-01-01T02:00:00Z"), ZoneId.systemDefault());
-        apiKeyManager = new ApiKeyManager(clock);
+        apiKeyManager = new ApiKeyManager(properties, clock, new SimpleMeterRegistry());
 
         // Should allow requests again
         assertTrue(apiKeyManager.allowRequest(apiKey));
@@ -83,13 +94,142 @@ class ApiKeyManagerTest {
 
         // Move clock forward by exactly 1 hour
         clock = Clock.fixed(Instant.parse("2023-01-01T01:00:00Z"), ZoneId.systemDefault());
-        apiKeyManager = new ApiKeyManager(clock);
+        apiKeyManager = new ApiKeyManager(properties, clock, new SimpleMeterRegistry());
 
         // Should reset count and allow request
         assertTrue(apiKeyManager.allowRequest(apiKey));
         assertTrue(apiKeyManager.allowRequest(apiKey)); // additional request to check the new count is 2
     }
 
+    @Test
+    void allowRequests_BatchWithinLimit_ConsumesOnePermitPerItem() {
+        String apiKey = "API_KEY_1";
+        assertTrue(apiKeyManager.allowRequests(apiKey, 4));
+        assertTrue(apiKeyManager.allowRequest(apiKey));
+        assertFalse(apiKeyManager.allowRequest(apiKey));
+    }
 
-}
+    @Test
+    void allowRequests_BatchLargerThanLimit_ReturnsFalse() {
+        assertFalse(apiKeyManager.allowRequests("API_KEY_1", 6));
+    }
+
+    @Test
+    void allowRequest_PerKeyLimitOverride_AppliesOnlyToThatKey() {
+        properties = new RateLimitProperties(RateLimiter.Algorithm.TOKEN_BUCKET, 2, Duration.ofHours(1), Map.of(
+                "BASIC", new RateLimitProperties.KeyLimit(null, null, null),
+                "PREMIUM", new RateLimitProperties.KeyLimit(10, Duration.ofMinutes(1), null)),
+                RateLimitProperties.StoreType.LOCAL, 0, 0, null);
+        apiKeyManager = new ApiKeyManager(properties, clock, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(apiKeyManager.allowRequest("PREMIUM"));
+        }
+        assertFalse(apiKeyManager.allowRequest("PREMIUM"));
+        assertTrue(apiKeyManager.allowRequests("BASIC", 2));
+        assertFalse(apiKeyManager.allowRequest("BASIC"));
+    }
+
+    @Test
+    void allowRequest_SameManagerAfterWindowPasses_AllowsNewRequests() {
+        MutableClock mutableClock = new MutableClock(Instant.parse("2023-01-01T00:00:00Z"));
+        apiKeyManager = new ApiKeyManager(properties, mutableClock, new SimpleMeterRegistry());
+        String apiKey = "API_KEY_1";
+        for (int i = 0; i < 5; i++) {
+            assertTrue(apiKeyManager.allowRequest(apiKey));
+        }
+        assertFalse(apiKeyManager.allowRequest(apiKey));
+
+        mutableClock.advance(Duration.ofHours(2));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(apiKeyManager.allowRequest(apiKey));
+        }
+        assertFalse(apiKeyManager.allowRequest(apiKey));
+    }
+
+    @Test
+    void allowRequest_SharedStore_LimitHoldsAcrossInstances() {
+        properties = new RateLimitProperties(RateLimiter.Algorithm.SLIDING_WINDOW, 5, Duration.ofHours(1),
+                Map.of("API_KEY_1", new RateLimitProperties.KeyLimit(20, null, null)),
+                RateLimitProperties.StoreType.IN_MEMORY, 4, 0, null);
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore();
+        ApiKeyManager instanceA = new ApiKeyManager(properties, store, clock, Runnable::run, new SimpleMeterRegistry());
+        ApiKeyManager instanceB = new ApiKeyManager(properties, store, clock, Runnable::run, new SimpleMeterRegistry());
+
+        int admitted = 0;
+        for (int i = 0; i < 30; i++) {
+            admitted += instanceA.allowRequest("API_KEY_1") ? 1 : 0;
+            admitted += instanceB.allowRequest("API_KEY_1") ? 1 : 0;
+        }
 
+        assertEquals(20, admitted);
+    }
+
+    @Test
+    void allowRequest_SharedStoreLeaseLargerThanLimit_OtherInstanceStillServed() {
+        properties = new RateLimitProperties(RateLimiter.Algorithm.SLIDING_WINDOW, 5, Duration.ofHours(1),
+                Map.of("API_KEY_1", new RateLimitProperties.KeyLimit(5, null, null)),
+                RateLimitProperties.StoreType.IN_MEMORY, 10, 0, null);
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore();
+        ApiKeyManager instanceA = new ApiKeyManager(properties, store, clock, Runnable::run, new SimpleMeterRegistry());
+        ApiKeyManager instanceB = new ApiKeyManager(properties, store, clock, Runnable::run, new SimpleMeterRegistry());
+
+        assertTrue(instanceA.allowRequest("API_KEY_1"));
+
+        assertTrue(instanceB.allowRequests("API_KEY_1", 3));
+    }
+
+    @Test
+    void allowRequest_Rejected_CountsRejectionForKey() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        apiKeyManager = new ApiKeyManager(properties, clock, registry);
+
+        for (int i = 0; i < 7; i++) {
+            apiKeyManager.allowRequest("API_KEY_1");
+        }
+        apiKeyManager.allowRequest("API_KEY_2");
+
+        assertEquals(2, registry.get("weather.ratelimit.rejections").tag("key_id", ApiKeyManager.keyId("API_KEY_1"))
+                .counter().count());
+        assertEquals(0, registry.get("weather.ratelimit.rejections").tag("key_id", ApiKeyManager.keyId("API_KEY_2"))
+                .counter().count());
+    }
+
+    @Test
+    void keyId_DoesNotRevealKey() {
+        String id = ApiKeyManager.keyId("API_KEY_1");
+
+        assertEquals(12, id.length());
+        assertFalse(id.contains("API_KEY"));
+        assertEquals(id, ApiKeyManager.keyId("API_KEY_1"));
+        assertNotEquals(id, ApiKeyManager.keyId("API_KEY_2"));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.weatherapi.util;
+
+import com.weatherapi.model.Location;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationNormalizerTest {
+
+    private final LocationNormalizer normalizer = new LocationNormalizer(100);
+
+    @Test
+    void normalize_CaseAndWhitespaceVariants_SameCanonicalLocation() {
+        Location canonical = normalizer.normalize("London", "GB");
+
+        assertEquals(new Location("London", "GB"), canonical);
+        assertSame(canonical, normalizer.normalize("  lONDON ", "gb"));
+        assertSame(canonical, normalizer.normalize("london", " GB "));
+    }
+
+    @Test
+    void normalize_MultiWordCity_CollapsesWhitespaceAndCapitalizesEachWord() {
+        assertEquals(new Location("New York", "US"), normalizer.normalize("new \t  york", "us"));
+        assertEquals(new Location("Stratford-Upon-Avon", "GB"), normalizer.normalize("stratford-upon-avon", "GB"));
+    }
+
+    @Test
+    void normalize_CompatibilityCharacters_FoldedByNfkc() {
+        // Fullwidth letters, as typed with some East Asian input methods.
+        assertEquals(new Location("Paris", "FR"), normalizer.normalize("ＰＡＲＩＳ", "ＦＲ"));
+    }
+
+    @Test
+    void normalize_NonAsciiCity_KeepsLetters() {
+        assertEquals(new Location("Zürich", "CH"), normalizer.normalize("ZÜRICH", "ch"));
+    }
+
+    @Test
+    void normalize_Alpha3AndUkCountryCodes_MappedToAlpha2() {
+        assertEquals("GB", normalizer.normalize("London", "UK").country());
+        assertEquals("GB", normalizer.normalize("London", "GBR").country());
+        assertEquals("DE", normalizer.normalize("Berlin", "deu").country());
+    }
+
+    @Test
+    void normalize_UnknownCountry_ThrowsIllegalArgument() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> normalizer.normalize("Atlantis", "XX"));
+
+        assertEquals("Unknown country code: XX", e.getMessage());
+    }
+
+    @Test
+    void normalize_BlankCity_ThrowsIllegalArgument() {
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize("   ", "GB"));
+    }
+
+    @Test
+    void normalize_Location_SameAsCityAndCountry() {
+        assertSame(normalizer.normalize("oslo", "NOR"), normalizer.normalize(new Location("Oslo", "NO")));
+    }
+}
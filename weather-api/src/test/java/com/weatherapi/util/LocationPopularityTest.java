@@ -0,0 +1,91 @@
+package com.weatherapi.util;
+
+import com.weatherapi.model.Location;
+import com.weatherapi.util.LocationPopularity.PopularLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocationPopularityTest {
+
+    private static final Location LONDON = new Location("London", "GB");
+    private static final Location PARIS = new Location("Paris", "FR");
+    private static final Location BERLIN = new Location("Berlin", "DE");
+
+    private static void record(LocationPopularity popularity, Location location, int times) {
+        for (int i = 0; i < times; i++) {
+            popularity.record(location);
+        }
+    }
+
+    private static List<Location> locations(List<PopularLocation> popular) {
+        return popular.stream().map(PopularLocation::location).toList();
+    }
+
+    @Test
+    void topLocations_MostRequestedFirst_LimitedToTopN() {
+        LocationPopularity popularity = new LocationPopularity(1024, 2);
+        record(popularity, PARIS, 5);
+        record(popularity, LONDON, 9);
+        record(popularity, BERLIN, 2);
+
+        assertEquals(List.of(LONDON, PARIS), locations(popularity.topLocations()));
+        assertEquals(9, popularity.estimate(LONDON));
+    }
+
+    @Test
+    void record_ManyDistinctLocations_EstimatesNeverBelowTrueCount() {
+        LocationPopularity popularity = new LocationPopularity(64, 10);
+        for (int i = 0; i < 1000; i++) {
+            popularity.record(new Location("City " + i, "GB"));
+        }
+        record(popularity, LONDON, 50);
+
+        assertTrue(popularity.estimate(LONDON) >= 50);
+        assertEquals(LONDON, popularity.topLocations().get(0).location());
+    }
+
+    @Test
+    void record_AfterRanking_LocationBelowTopNNotTracked() {
+        LocationPopularity popularity = new LocationPopularity(1024, 1);
+        record(popularity, LONDON, 5);
+        record(popularity, PARIS, 3);
+        assertEquals(List.of(LONDON), locations(popularity.topLocations()));
+
+        record(popularity, BERLIN, 4);
+        // Only tracked locations keep their city id.
+        popularity.rememberCityId(BERLIN, 2950159L);
+        record(popularity, BERLIN, 6);
+
+        assertEquals(List.of(new PopularLocation(BERLIN, null)), popularity.topLocations());
+    }
+
+    @Test
+    void decay_HalvesCounts_RecentRequestsOvertake() {
+        LocationPopularity popularity = new LocationPopularity(1024, 1);
+        record(popularity, LONDON, 10);
+        record(popularity, PARIS, 1);
+
+        popularity.decay();
+        popularity.decay();
+        record(popularity, PARIS, 4);
+
+        assertEquals(2, popularity.estimate(LONDON));
+        assertEquals(List.of(PARIS), locations(popularity.topLocations()));
+    }
+
+    @Test
+    void rememberCityId_TrackedLocation_ReturnedWithIt() {
+        LocationPopularity popularity = new LocationPopularity(1024, 2);
+        record(popularity, LONDON, 2);
+        record(popularity, PARIS, 1);
+
+        popularity.rememberCityId(LONDON, 2643743L);
+        popularity.rememberCityId(BERLIN, 2950159L);
+
+        assertEquals(List.of(new PopularLocation(LONDON, 2643743L), new PopularLocation(PARIS, null)),
+                popularity.topLocations());
+    }
+}
@@ -0,0 +1,106 @@
+package com.weatherapi.util;
+
+import com.weatherapi.exception.ErrorCode;
+import com.weatherapi.exception.WeatherApiException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 50;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void execute_ConcurrentCallersSameKey_LoaderRunsOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("London", () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "Cloudy";
+        }), release);
+
+        for (Future<String> result : results) {
+            assertEquals("Cloudy", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void execute_LoaderFails_FailurePropagatedToAllWaiters() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> singleFlight.execute("London", () -> {
+            loads.incrementAndGet();
+            await(release);
+            throw new WeatherApiException(ErrorCode.EXTERNAL_API_ERROR, "No response from weather API");
+        }), release);
+
+        for (Future<String> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            WeatherApiException cause = assertInstanceOf(WeatherApiException.class, e.getCause());
+            assertEquals(ErrorCode.EXTERNAL_API_ERROR, cause.getErrorCode());
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void execute_AfterCompletion_NextCallLoadsAgain() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("1", singleFlight.execute("London", () -> String.valueOf(loads.incrementAndGet())));
+        assertEquals("2", singleFlight.execute("London", () -> String.valueOf(loads.incrementAndGet())));
+    }
+
+    @Test
+    void execute_DifferentKeyWhileInFlight_LoadsIndependently() {
+        String result = singleFlight.execute("London", () -> "Cloudy/" + singleFlight.execute("Paris", () -> "Sunny"));
+
+        assertEquals("Cloudy/Sunny", result);
+    }
+
+    private List<Future<String>> runConcurrently(Callable<String> call, CountDownLatch release)
+            throws InterruptedException {
+        CountDownLatch arrived = new CountDownLatch(CALLERS);
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    arrived.countDown();
+                    return call.call();
+                }));
+            }
+            assertTrue(arrived.await(5, TimeUnit.SECONDS));
+            // Give the last arrivals time to join the in-flight call before it completes.
+            Thread.sleep(200);
+            release.countDown();
+        }
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}